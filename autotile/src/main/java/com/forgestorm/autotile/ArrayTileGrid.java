@@ -0,0 +1,51 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+/**
+ * The {@link ArrayTileGrid} class is an in-memory {@link TileGrid} that stores packed tile IDs in a single row-major
+ * int array. It also implements {@link IntTileGetterSetter}, so the same map can be edited with an {@link AutoTiler}
+ * and processed in bulk. Cells outside the grid read as {@link TileId#EMPTY} and writes to them are ignored.
+ *
+ * @author unenergizer
+ */
+public class ArrayTileGrid implements TileGrid, IntTileGetterSetter {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    /**
+     * The packed tile IDs of the grid, indexed by {@code y * width + x}.
+     */
+    @Getter
+    private final int[] tiles;
+
+    public ArrayTileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tiles = new int[width * height];
+    }
+
+    @Override
+    public int getTileId(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return TileId.EMPTY;
+        return tiles[y * width + x];
+    }
+
+    @Override
+    public void setTileId(int tileId, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        tiles[y * width + x] = tileId;
+    }
+
+    @Override
+    public void readRow(int y, int[] destination, int offset) {
+        System.arraycopy(tiles, y * width, destination, offset, width);
+    }
+
+    @Override
+    public void writeRow(int y, int[] source, int offset) {
+        System.arraycopy(source, offset, tiles, y * width, width);
+    }
+}
@@ -0,0 +1,49 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link AutoTileEvents} class emits Java Flight Recorder events for the operations of an {@link AutoTiler}.
+ * <p>
+ * This is the version used on Java 8 and GWT, where there is no Flight Recorder: every method does nothing and is
+ * inlined away. On Java 11 and later, the multi-release jar replaces it with the version in {@code src/main/java11},
+ * which emits the {@code AutoTileEvent}, {@code EraseTileEvent}, {@code NeighborFixEvent} and
+ * {@code BatchCommitEvent} events. The events are disabled by default, and have to be enabled in the recording
+ * settings.
+ * <p>
+ * A {@code begin} method returns null when its event is disabled, and callers skip the matching {@code commit}
+ * method, so a disabled event costs a single check.
+ *
+ * @author unenergizer
+ */
+final class AutoTileEvents {
+
+    private AutoTileEvents() {
+    }
+
+    static Object beginAutoTile() {
+        return null;
+    }
+
+    static void commitAutoTile(Object event, int x, int y, BitmaskingType bitmaskingType, String brush, int cellsTouched) {
+    }
+
+    static Object beginEraseTile() {
+        return null;
+    }
+
+    static void commitEraseTile(Object event, int x, int y, boolean removed) {
+    }
+
+    static Object beginNeighborFix() {
+        return null;
+    }
+
+    static void commitNeighborFix(Object event, int x, int y, BitmaskingType bitmaskingType, int cellsTouched) {
+    }
+
+    static Object beginBatchCommit() {
+        return null;
+    }
+
+    static void commitBatchCommit(Object event, int cellsTouched) {
+    }
+}
@@ -0,0 +1,295 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link AutoTileMetrics} class counts the work done by an {@link AutoTiler}, so the cost of edits can be
+ * observed in production. Attach it with {@link AutoTiler#setMetrics(AutoTileMetrics)}. An auto tiler without
+ * metrics (the default) only pays for a null check.
+ * <p>
+ * The metrics keep running totals of tiles read and written, writes skipped because the tile was unchanged,
+ * neighbor tiles fixed, reads served without calling the tile getter, and cells touched by operations. Every
+ * operation also records its latency in a
+ * {@link LatencyHistogram}, one per kind of {@link Operation}, and is reported to the {@link OperationListener} if
+ * one is set, which can be used to find pathological brushes.
+ * <p>
+ * Totals are always exact. The counts of a single {@link OperationSample} are the change in the totals while the
+ * operation ran, so when the auto tiler is shared between threads they also include the work of operations
+ * running at the same time.
+ *
+ * @author unenergizer
+ */
+public class AutoTileMetrics {
+
+    /**
+     * The operations of an {@link AutoTiler} that are measured.
+     */
+    public enum Operation {
+        AUTO_TILE,
+        AUTO_TILE_REGION,
+        FLOOD_FILL,
+        ERASE_TILE,
+        REMOVE_TILE,
+        COMMIT,
+        RE_TILE_LAYERS
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong suppressedWrites = new AtomicLong();
+    private final AtomicLong neighborFixes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cellsTouched = new AtomicLong();
+    private final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+
+    /**
+     * Told about every operation when it completes. Null (the default) tells no one.
+     */
+    @Getter
+    @Setter
+    private volatile OperationListener operationListener;
+
+    public AutoTileMetrics() {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    /**
+     * @return The number of tiles read from the tile getter.
+     */
+    public long getReads() {
+        return reads.get();
+    }
+
+    /**
+     * @return The number of tiles written to the tile setter.
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return The number of writes skipped because the tile was already on the map, not included in {@link #getWrites()}.
+     */
+    public long getSuppressedWrites() {
+        return suppressedWrites.get();
+    }
+
+    /**
+     * @return The number of tiles written because a neighbor changed, included in {@link #getWrites()}.
+     */
+    public long getNeighborFixes() {
+        return neighborFixes.get();
+    }
+
+    /**
+     * @return The number of tile reads served without calling the tile getter.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return The number of cells placed, filled, erased, re-tiled or committed by operations.
+     */
+    public long getCellsTouched() {
+        return cellsTouched.get();
+    }
+
+    /**
+     * Gets the latencies recorded for one kind of operation.
+     *
+     * @param operation The kind of operation.
+     * @return The latency histogram of the operation.
+     */
+    public LatencyHistogram getHistogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    /**
+     * Sets every total and histogram back to zero.
+     */
+    public void reset() {
+        reads.set(0);
+        writes.set(0);
+        suppressedWrites.set(0);
+        neighborFixes.set(0);
+        cacheHits.set(0);
+        cellsTouched.set(0);
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+    }
+
+    void countRead() {
+        reads.incrementAndGet();
+    }
+
+    void countWrite() {
+        writes.incrementAndGet();
+    }
+
+    void countSuppressedWrite() {
+        suppressedWrites.incrementAndGet();
+    }
+
+    void countNeighborFix() {
+        neighborFixes.incrementAndGet();
+    }
+
+    void countCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    /**
+     * Starts measuring an operation.
+     *
+     * @param operation The kind of operation.
+     * @return The sample to pass to {@link #endOperation(OperationSample, int)} when the operation completes.
+     */
+    OperationSample beginOperation(Operation operation) {
+        OperationSample operationSample = new OperationSample(operation);
+        operationSample.reads = reads.get();
+        operationSample.writes = writes.get();
+        operationSample.suppressedWrites = suppressedWrites.get();
+        operationSample.neighborFixes = neighborFixes.get();
+        operationSample.cacheHits = cacheHits.get();
+        operationSample.nanos = System.nanoTime();
+        return operationSample;
+    }
+
+    /**
+     * Completes the measure of an operation, records its latency and reports it to the listener.
+     *
+     * @param operationSample The sample returned by {@link #beginOperation(Operation)}.
+     * @param cellsTouched    The number of cells placed, filled, erased, re-tiled or committed by the operation.
+     */
+    void endOperation(OperationSample operationSample, int cellsTouched) {
+        operationSample.nanos = System.nanoTime() - operationSample.nanos;
+        operationSample.reads = reads.get() - operationSample.reads;
+        operationSample.writes = writes.get() - operationSample.writes;
+        operationSample.suppressedWrites = suppressedWrites.get() - operationSample.suppressedWrites;
+        operationSample.neighborFixes = neighborFixes.get() - operationSample.neighborFixes;
+        operationSample.cacheHits = cacheHits.get() - operationSample.cacheHits;
+        operationSample.cellsTouched = cellsTouched;
+        this.cellsTouched.addAndGet(cellsTouched);
+        histograms[operationSample.operation.ordinal()].record(operationSample.nanos);
+
+        OperationListener listener = operationListener;
+        if (listener != null) listener.operationCompleted(operationSample);
+    }
+
+    /**
+     * Told about every operation measured by an {@link AutoTileMetrics}. Called on the thread that ran the operation.
+     */
+    public interface OperationListener {
+        void operationCompleted(OperationSample operationSample);
+    }
+
+    /**
+     * The work done by a single operation.
+     */
+    @Getter
+    public static final class OperationSample {
+        private final Operation operation;
+        private long reads;
+        private long writes;
+        private long suppressedWrites;
+        private long neighborFixes;
+        private long cacheHits;
+        private int cellsTouched;
+        /**
+         * How long the operation took, in nanoseconds.
+         */
+        private long nanos;
+
+        private OperationSample(Operation operation) {
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * A histogram of latencies with a bucket for every power of two nanoseconds. Bucket {@code i} counts the
+     * latencies from {@code 2^i} up to {@code 2^(i + 1)} nanoseconds, so percentiles are accurate to a factor of two
+     * while recording stays cheap and the memory used stays fixed.
+     */
+    public static final class LatencyHistogram {
+        private final long[] buckets = new long[64];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets[63 - Long.numberOfLeadingZeros(nanos | 1)]++;
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+        }
+
+        /**
+         * @return The number of latencies recorded.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of every latency recorded, in nanoseconds.
+         */
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return The highest latency recorded, in nanoseconds.
+         */
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return The average latency, in nanoseconds, or 0 if nothing was recorded.
+         */
+        public synchronized long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Gets an upper bound of a percentile of the recorded latencies.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return The upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded.
+         */
+        public synchronized long getPercentileNanos(double percentile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) return Math.min(maxNanos, (2L << i) - 1);
+            }
+            return maxNanos;
+        }
+
+        /**
+         * Gets the number of latencies in a bucket.
+         *
+         * @param bucket The bucket, from 0 to 63.
+         * @return The number of latencies from {@code 2^bucket} up to {@code 2^(bucket + 1)} nanoseconds.
+         */
+        public synchronized long getBucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        synchronized void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+    }
+}
@@ -3,9 +3,6 @@ package com.forgestorm.autotile;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * An auto-tiler is a tool used in video game development to automate
  * the process of selecting and placing tiles in a game world. A tile
@@ -25,15 +22,28 @@ import java.util.List;
  * preferences, such as ensuring that certain tiles are not placed
  * too close to each other or prioritizing the use of certain tiles
  * in certain areas of the game world.
+ * <p>
+ * Single threaded operations reuse scratch arrays kept by the auto tiler, so they do not allocate. An operation
+ * started while they are in use, such as from inside the tile setter, allocates its own, so the auto tiler is still
+ * re-entrant. To share one auto tiler between
+ * threads, enable {@link #setThreadSafe(boolean) thread safety} and finish configuring it before it is shared.
+ * Operations on cells far enough apart then run in parallel, while operations whose neighborhoods overlap are
+ * serialized. The supplied getter and setter must support concurrent access to different cells.
  *
  * @author unenergizer
  */
 public class AutoTiler {
 
     /**
-     * Tile getter and setter implementation supplied by the library user.
+     * Tile getter and setter implementation supplied by the library user. When the auto tiler
+     * is created with a name based {@link TileGetterSetter}, it is wrapped in a {@link TileNameGetterSetter}.
+     */
+    private final IntTileGetterSetter intTileGetterSetter;
+    /**
+     * Parses and caches tile names, so names are only converted to family IDs once.
      */
-    private final TileGetterSetter tileGetterSetter;
+    @Getter
+    private final TileNameRegistry tileNameRegistry;
     /**
      * The {@link Bitmask4Bit} class provides an implementation of
      * auto-tiling based on the 4-bit variant. This implementation
@@ -47,17 +57,74 @@ public class AutoTiler {
      */
     private final Bitmask8Bit bitmask8Bit;
     /**
-     * The list of {@link TileLocations} to be updated after setting the initial auto-tile.
+     * Every neighbor location, cached because {@link TileLocations#values()} copies the array on each call.
+     */
+    private static final TileLocations[] NEIGHBOR_LOCATIONS = TileLocations.values();
+    /**
+     * The number of lock stripes. Must be 64, as the stripes an operation needs are collected in a {@code long}.
+     */
+    private static final int LOCK_STRIPES = 64;
+    /**
+     * Cells are grouped into square blocks of {@code 1 << LOCK_BLOCK_SHIFT} cells, and each block is guarded by a stripe.
+     */
+    private static final int LOCK_BLOCK_SHIFT = 4;
+    /**
+     * How far from the cells it places an operation may read. Neighbors are rewritten, and their bitmasks read their own neighbors.
      */
-    private final List<TileLocations> locationUpdateList = new LinkedList<>();
+    private static final int LOCK_MARGIN = 2;
     /**
-     * The list of {@link TileLocations} to be updated after editing an auto-tile.
+     * The stripe locks guarding blocks of cells when {@link #threadSafe} is enabled.
      */
-    private final List<TileLocations> fixNeighborList = new LinkedList<>();
+    private final Object[] stripeLocks = new Object[LOCK_STRIPES];
+    /**
+     * The changes recorded while a batch is open. Also the lock guarding them.
+     */
+    private final TileBatch tileBatch = new TileBatch();
+    /**
+     * True while a batch is open, see {@link #beginBatch()}.
+     */
+    @Getter
+    private volatile boolean batching = false;
+
+    /**
+     * The window and arrays reused by operations while {@link #threadSafe} is disabled, grown as needed.
+     * {@link #scratchInUse} is true while an operation holds them.
+     */
+    private final TileWindow scratchWindow = new TileWindow(this, 0, 0, 4, 4);
+    private int[] scratchInteriorTileIds = new int[0];
+    private int[] scratchEdgeTileIds = new int[0];
+    private int[] scratchEdgeBitmasks = new int[0];
+    private boolean[] scratchFamilies = new boolean[0];
+    private boolean scratchInUse = false;
+
+    /**
+     * If true, operations lock the blocks of cells they read and write, so the auto tiler can be used from
+     * several threads at once. Disabled by default, as single threaded use does not need to pay for locking.
+     */
+    @Getter
+    @Setter
+    private boolean threadSafe = false;
+
+    /**
+     * Records every tile written, so operations can be undone. Null (the default) records nothing.
+     * The journal is meant for single threaded editors, and should not be used while {@link #threadSafe} is enabled.
+     */
+    @Getter
+    @Setter
+    private EditJournal editJournal;
+
+    /**
+     * Counts the tiles read and written and measures the latency of every operation. Null (the default)
+     * measures nothing, and costs a null check.
+     */
+    @Getter
+    @Setter
+    private AutoTileMetrics metrics;
 
     /**
      * If true, neighboring tiles will be fixed when setting a new auto-tile over
-     * an existing one or when erasing an auto-tile.
+     * an existing one or when erasing an auto-tile. Tiles whose rules name other families
+     * (see {@link RuleTable#isCrossFamily()}) are fixed when a tile is set next to them either way.
      */
     @Getter
     @Setter
@@ -83,19 +150,146 @@ public class AutoTiler {
      * Let the developer choose the tile prefix for their own tileset.
      */
     @Getter
-    @Setter
     private String prefixType4 = BitmaskingType.TYPE_4.getPrefix();
     /**
      * Let the developer choose the tile prefix for their own tileset.
      */
     @Getter
-    @Setter
     private String prefixType8 = BitmaskingType.TYPE_8.getPrefix();
 
+    /**
+     * The {@link BitmaskingType} of each registered tile family, indexed by family ID.
+     * Index 0 is reserved for empty tiles (see {@link TileId#EMPTY}).
+     */
+    private volatile BitmaskingType[] familyTypes = new BitmaskingType[16];
+    /**
+     * The {@link TileBitmasking} of each tile family registered with its own {@link RuleTable}, indexed by family ID.
+     * Null for the families using the built-in tiles of their {@link BitmaskingType}.
+     */
+    private volatile TileBitmasking[] familyBitmaskings = new TileBitmasking[16];
+    /**
+     * The number of family IDs handed out so far, including the reserved empty family.
+     */
+    private volatile int familyCount = 1;
+
     public AutoTiler(TileGetterSetter tileGetterSetter) {
-        this.tileGetterSetter = tileGetterSetter;
-        this.bitmask4Bit = new Bitmask4Bit(this);
-        this.bitmask8Bit = new Bitmask8Bit(this);
+        this.tileNameRegistry = new TileNameRegistry(this);
+        this.intTileGetterSetter = new TileNameGetterSetter(tileGetterSetter, tileNameRegistry);
+        this.bitmask4Bit = new Bitmask4Bit(this, RuleTable.TYPE_4);
+        this.bitmask8Bit = new Bitmask8Bit(this, RuleTable.TYPE_8);
+        for (int i = 0; i < LOCK_STRIPES; i++) stripeLocks[i] = new Object();
+    }
+
+    public AutoTiler(IntTileGetterSetter intTileGetterSetter) {
+        this.tileNameRegistry = new TileNameRegistry(this);
+        this.intTileGetterSetter = intTileGetterSetter;
+        this.bitmask4Bit = new Bitmask4Bit(this, RuleTable.TYPE_4);
+        this.bitmask8Bit = new Bitmask8Bit(this, RuleTable.TYPE_8);
+        for (int i = 0; i < LOCK_STRIPES; i++) stripeLocks[i] = new Object();
+    }
+
+    /**
+     * Sets the tile prefix used to detect 4-bit auto tiles. Previously parsed tile names are parsed again, but the
+     * families they registered are kept, so existing tile IDs still convert back to their names.
+     *
+     * @param prefixType4 The new tile prefix.
+     */
+    public void setPrefixType4(String prefixType4) {
+        this.prefixType4 = prefixType4;
+        tileNameRegistry.clear();
+    }
+
+    /**
+     * Sets the tile prefix used to detect 8-bit auto tiles. Previously parsed tile names are parsed again, but the
+     * families they registered are kept, so existing tile IDs still convert back to their names.
+     *
+     * @param prefixType8 The new tile prefix.
+     */
+    public void setPrefixType8(String prefixType8) {
+        this.prefixType8 = prefixType8;
+        tileNameRegistry.clear();
+    }
+
+    /**
+     * Registers a new tile family for use with an {@link IntTileGetterSetter}.
+     *
+     * @param bitmaskingType The {@link BitmaskingType} used to auto tile this family, or null for a plain tile.
+     * @return The family ID to use with {@link #autoTile(int, int, int)} and {@link TileId#pack(int, int)}.
+     */
+    public int registerFamily(BitmaskingType bitmaskingType) {
+        return registerFamily(bitmaskingType, null);
+    }
+
+    /**
+     * Registers a new tile family for use with an {@link IntTileGetterSetter}, auto tiled with compiled rules
+     * instead of the built-in tiles. The family is 4-bit if no tile of the table depends on corners. Use
+     * {@link #setRuleTable(int, RuleTable)} instead when the rules need the family ID of a family registered later.
+     *
+     * @param ruleTable The {@link RuleTable} used to auto tile this family, see {@link TileRules#compile()}.
+     * @return The family ID to use with {@link #autoTile(int, int, int)} and {@link TileId#pack(int, int)}.
+     */
+    public int registerRuleFamily(RuleTable ruleTable) {
+        return registerFamily(ruleTable.getBitmaskingType(), createTileBitmasking(ruleTable));
+    }
+
+    /**
+     * Changes the rules of a registered tile family. Rules naming other families need their family IDs, so two
+     * families whose rules name each other are registered first and given their rules afterwards. Tiles already on
+     * the map are not re-tiled.
+     *
+     * @param familyId  The family ID of the tile.
+     * @param ruleTable The {@link RuleTable} used to auto tile this family from now on.
+     * @throws IllegalArgumentException if the family is not registered or is a plain tile
+     */
+    public synchronized void setRuleTable(int familyId, RuleTable ruleTable) {
+        if (getFamilyType(familyId) == null) {
+            throw new IllegalArgumentException("The family " + familyId + " is not an auto tile family.");
+        }
+        BitmaskingType[] types = familyTypes;
+        TileBitmasking[] bitmaskings = familyBitmaskings;
+        types[familyId] = ruleTable.getBitmaskingType();
+        bitmaskings[familyId] = createTileBitmasking(ruleTable);
+        familyTypes = types;
+        familyBitmaskings = bitmaskings;
+    }
+
+    private TileBitmasking createTileBitmasking(RuleTable ruleTable) {
+        return ruleTable.getBitmaskingType() == BitmaskingType.TYPE_4
+                ? new Bitmask4Bit(this, ruleTable)
+                : new Bitmask8Bit(this, ruleTable);
+    }
+
+    private synchronized int registerFamily(BitmaskingType bitmaskingType, TileBitmasking tileBitmasking) {
+        int familyId = familyCount;
+        BitmaskingType[] types = familyTypes;
+        TileBitmasking[] bitmaskings = familyBitmaskings;
+        if (familyId == types.length) {
+            BitmaskingType[] newFamilyTypes = new BitmaskingType[types.length * 2];
+            System.arraycopy(types, 0, newFamilyTypes, 0, types.length);
+            types = newFamilyTypes;
+            TileBitmasking[] newFamilyBitmaskings = new TileBitmasking[bitmaskings.length * 2];
+            System.arraycopy(bitmaskings, 0, newFamilyBitmaskings, 0, bitmaskings.length);
+            bitmaskings = newFamilyBitmaskings;
+        }
+        types[familyId] = bitmaskingType;
+        bitmaskings[familyId] = tileBitmasking;
+        familyTypes = types;
+        familyBitmaskings = bitmaskings;
+        // Publish the count last, so readers that see the new family also see its type
+        familyCount = familyId + 1;
+        return familyId;
+    }
+
+    /**
+     * Gets the {@link BitmaskingType} of a registered tile family.
+     *
+     * @param familyId The family ID of the tile.
+     * @return The {@link BitmaskingType} of the family, or null if the family is not registered.
+     */
+    public BitmaskingType getFamilyType(int familyId) {
+        if (familyId <= 0 || familyId >= familyCount) return null;
+        BitmaskingType[] types = familyTypes;
+        return familyId < types.length ? types[familyId] : null;
     }
 
     /**
@@ -107,40 +301,600 @@ public class AutoTiler {
      * @return True if auto tiling worked, false otherwise.
      */
     public boolean autoTile(String tileName, int x, int y) {
+        return autoTile(tileNameRegistry.getFamilyId(tileName), x, y);
+    }
+
+    /**
+     * Attempts to perform an auto tile on the supplied tile family. This is the primitive
+     * variant of {@link #autoTile(String, int, int)}.
+     *
+     * @param familyId The family ID we want to auto tile (see {@link #registerFamily(BitmaskingType)}).
+     * @param x        The X location of the map.
+     * @param y        The Y location of the map.
+     * @return True if auto tiling worked, false otherwise.
+     */
+    public boolean autoTile(int familyId, int x, int y) {
+        return autoTile(familyId, x, y, brushType.getBrush());
+    }
+
+    /**
+     * Stamps a {@link Brush} of the supplied tile name and auto tiles it.
+     *
+     * @param tileName The tile we want to auto tile.
+     * @param x        The X location of the map.
+     * @param y        The Y location of the map.
+     * @param brush    The brush to stamp at the location.
+     * @return True if auto tiling worked, false otherwise.
+     * @see #autoTile(int, int, int, Brush)
+     */
+    public boolean autoTile(String tileName, int x, int y, Brush brush) {
+        return autoTile(tileNameRegistry.getFamilyId(tileName), x, y, brush);
+    }
+
+    /**
+     * Stamps a {@link Brush} of the supplied tile family and auto tiles it.
+     * <p>
+     * Interior tiles of the brush always get the full bitmask, so they are only read to skip the ones that already
+     * have it. Edge tiles only read their neighbors outside the brush, and then the ring of tiles around the brush is
+     * fixed. Every cell is read once, and only the tiles that change are written.
+     *
+     * @param familyId The family ID we want to auto tile (see {@link #registerFamily(BitmaskingType)}).
+     * @param x        The X location of the map.
+     * @param y        The Y location of the map.
+     * @param brush    The brush to stamp at the location.
+     * @return True if auto tiling worked, false otherwise.
+     */
+    public boolean autoTile(int familyId, int x, int y, Brush brush) {
         // Detect the type of bitmask tile we are working with.
-        BitmaskingType bitmaskingType = detectBitmaskingType(tileName);
+        BitmaskingType bitmaskingType = getFamilyType(familyId);
         if (bitmaskingType == null) return false; // Type not detected
 
-        // Strip the image id from the tile name. Good for tile comparisons.
-        String strippedTileName = stripImageId(tileName);
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.AUTO_TILE);
+        Object event = AutoTileEvents.beginAutoTile();
+        if (threadSafe) {
+            // Lock the bounding box of the brush and every cell it can affect
+            runLocked(x + brush.getMinX() - LOCK_MARGIN, y + brush.getMinY() - LOCK_MARGIN,
+                    x + brush.getMaxX() + LOCK_MARGIN, y + brush.getMaxY() + LOCK_MARGIN,
+                    () -> stampBrush(bitmaskingType, familyId, brush, x, y));
+        } else {
+            stampBrush(bitmaskingType, familyId, brush, x, y);
+        }
+        endJournalOperation();
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, brush.getCellCount());
+        if (event != null) AutoTileEvents.commitAutoTile(event, x, y, bitmaskingType, brush.toString(), brush.getCellCount());
+        return true;
+    }
+
+    private void stampBrush(BitmaskingType bitmaskingType, int familyId, Brush brush, int x, int y) {
+        Brush.Outline outline = brush.getOutline(bitmaskingType);
+        if (batching) {
+            synchronized (tileBatch) {
+                for (int i = 0; i < outline.interiorX.length; i++) {
+                    tileBatch.setFamily(familyId, x + outline.interiorX[i], y + outline.interiorY[i]);
+                }
+                for (int i = 0; i < outline.edgeX.length; i++) {
+                    tileBatch.setFamily(familyId, x + outline.edgeX[i], y + outline.edgeY[i]);
+                }
+                for (int i = 0; i < brush.ringX.length; i++) {
+                    markDirty(familyId, x + brush.ringX[i], y + brush.ringY[i]);
+                }
+            }
+            return;
+        }
 
-        // Set each tile for the brush.
-        for (BrushType.BrushTileInfo brushTileInfo : brushType.getBrushTileInfo()) {
-            tileGetterSetter.setTile(strippedTileName + brushTileInfo.getTileId(), x + brushTileInfo.getAddX(), y + brushTileInfo.getAddY());
+        // Single threaded stamps reuse the scratch arrays, anything else allocates its own
+        boolean reuseScratch = !threadSafe && !scratchInUse;
+        if (reuseScratch) scratchInUse = true;
+        try {
+            stampBrush(bitmaskingType, familyId, brush, outline, x, y, reuseScratch);
+        } finally {
+            if (reuseScratch) scratchInUse = false;
+        }
+    }
+
+    private void stampBrush(BitmaskingType bitmaskingType, int familyId, Brush brush, Brush.Outline outline, int x, int y, boolean reuseScratch) {
+        // Every cell the operation reads is read once, into a window covering the brush and two cells around it
+        int minX = x + brush.getMinX() - 2;
+        int minY = y + brush.getMinY() - 2;
+        int maxX = x + brush.getMaxX() + 2;
+        int maxY = y + brush.getMaxY() + 2;
+        TileWindow tileWindow;
+        int[] replacedInteriorTileIds;
+        int[] replacedTileIds;
+        int[] edgeBitmasks;
+        boolean[] replacedFamilies = null;
+        if (reuseScratch) {
+            tileWindow = scratchWindow;
+            tileWindow.reset(minX, minY, maxX, maxY);
+            replacedInteriorTileIds = scratchInteriorTileIds = ensureCapacity(scratchInteriorTileIds, outline.interiorX.length);
+            replacedTileIds = scratchEdgeTileIds = ensureCapacity(scratchEdgeTileIds, outline.edgeX.length);
+            edgeBitmasks = scratchEdgeBitmasks = ensureCapacity(scratchEdgeBitmasks, outline.edgeX.length);
+            if (fixNeighborTiles) {
+                // The flags set by the last stamp were cleared when it finished
+                if (scratchFamilies.length < familyCount) scratchFamilies = new boolean[familyCount];
+                replacedFamilies = scratchFamilies;
+            }
+        } else {
+            tileWindow = new TileWindow(this, minX, minY, maxX, maxY);
+            replacedInteriorTileIds = new int[outline.interiorX.length];
+            replacedTileIds = new int[outline.edgeX.length];
+            edgeBitmasks = new int[outline.edgeX.length];
+            if (fixNeighborTiles) replacedFamilies = new boolean[familyCount];
+        }
+
+        // Remember the tiles replaced by the brush, so unchanged tiles are not written again. The ring is fixed
+        // afterwards from the families replaced by edge tiles, as interior tiles do not touch the ring.
+        for (int i = 0; i < outline.interiorX.length; i++) {
+            replacedInteriorTileIds[i] = tileWindow.getTileId(x + outline.interiorX[i], y + outline.interiorY[i]);
+        }
+        boolean replacedEmpty = false;
+        for (int i = 0; i < outline.edgeX.length; i++) {
+            replacedTileIds[i] = tileWindow.getTileId(x + outline.edgeX[i], y + outline.edgeY[i]);
+            if (replacedFamilies == null) continue;
+            int previousFamilyId = TileId.getFamilyId(replacedTileIds[i]);
+            if (previousFamilyId == TileId.EMPTY) replacedEmpty = true;
+            else if (previousFamilyId < replacedFamilies.length) replacedFamilies[previousFamilyId] = true;
         }
 
-        // Now auto tile around these tiles
-        for (BrushType.BrushTileInfo brushTileInfo : brushType.getBrushTileInfo()) {
-            performAutoTile(bitmaskingType, strippedTileName, x + brushTileInfo.getAddX(), y + brushTileInfo.getAddY());
+        // Place the brush in the window, so its cells are known without being read
+        int placedTileId = TileId.pack(familyId, 0);
+        for (int i = 0; i < outline.interiorX.length; i++) {
+            tileWindow.setTileId(placedTileId, x + outline.interiorX[i], y + outline.interiorY[i]);
+        }
+        for (int i = 0; i < outline.edgeX.length; i++) {
+            tileWindow.setTileId(placedTileId, x + outline.edgeX[i], y + outline.edgeY[i]);
+        }
+
+        // Edge tiles only read their neighbors outside the brush
+        for (int i = 0; i < outline.edgeX.length; i++) {
+            edgeBitmasks[i] = tileWindow.calculateBitmask(bitmaskingType, familyId, x + outline.edgeX[i], y + outline.edgeY[i]);
+        }
+
+        // Interior tiles always have the full bitmask
+        TileBitmasking tileBitmasking = getTileBitmasking(familyId);
+        int interiorTileId = TileId.pack(familyId, tileBitmasking.calculateBitmask(true, true, true, true, true, true, true, true));
+        for (int i = 0; i < outline.interiorX.length; i++) {
+            writeTile(replacedInteriorTileIds[i], interiorTileId, x + outline.interiorX[i], y + outline.interiorY[i]);
+        }
+        for (int i = 0; i < outline.edgeX.length; i++) {
+            writeTile(replacedTileIds[i], TileId.pack(familyId, edgeBitmasks[i]), x + outline.edgeX[i], y + outline.edgeY[i]);
+        }
+
+        // Fix the ring. Tiles of the same family always connect to the brush, and tiles whose rules name other
+        // families always see it. Other tiles only need fixing if they were connected to a tile the brush replaced.
+        Object event = AutoTileEvents.beginNeighborFix();
+        int tilesFixed = 0;
+        for (int i = 0; i < brush.ringX.length; i++) {
+            int ringX = x + brush.ringX[i];
+            int ringY = y + brush.ringY[i];
+            int ringTileId = tileWindow.getTileId(ringX, ringY);
+            int ringFamilyId = TileId.getFamilyId(ringTileId);
+            if (ringFamilyId == TileId.EMPTY) continue;
+            if (ringFamilyId != familyId && !isCrossFamily(ringFamilyId)) {
+                if (replacedFamilies == null) continue;
+                if (!replacedEmpty && (ringFamilyId >= replacedFamilies.length || !replacedFamilies[ringFamilyId])) continue;
+            }
+
+            BitmaskingType ringType = getFamilyType(ringFamilyId);
+            if (ringType == null) continue;
+            int bitmask = tileWindow.calculateBitmask(ringType, ringFamilyId, ringX, ringY);
+            fixTile(ringTileId, TileId.pack(ringFamilyId, bitmask), ringX, ringY);
+            tilesFixed++;
         }
+        if (event != null) AutoTileEvents.commitNeighborFix(event, x, y, bitmaskingType, tilesFixed);
 
+        // Clear the replaced families, so the scratch flags can be used again without clearing all of them
+        if (replacedFamilies != null) {
+            for (int i = 0; i < outline.edgeX.length; i++) {
+                int previousFamilyId = TileId.getFamilyId(replacedTileIds[i]);
+                if (previousFamilyId < replacedFamilies.length) replacedFamilies[previousFamilyId] = false;
+            }
+        }
+    }
+
+    /**
+     * Fills a rectangle with the supplied tile name and auto tiles it in a single sweep.
+     *
+     * @param tileName The tile we want to fill the region with.
+     * @param x        The X location of the first corner of the region.
+     * @param y        The Y location of the first corner of the region.
+     * @param width    The width of the region in tiles.
+     * @param height   The height of the region in tiles.
+     * @return True if auto tiling worked, false otherwise.
+     * @see #autoTileRegion(int, int, int, int, int)
+     */
+    public boolean autoTileRegion(String tileName, int x, int y, int width, int height) {
+        return autoTileRegion(tileNameRegistry.getFamilyId(tileName), x, y, width, height);
+    }
+
+    /**
+     * Fills a rectangle with the supplied tile family and auto tiles it in a single sweep.
+     * <p>
+     * Rather than auto tiling each cell on its own, the bitmask of every cell in the region
+     * and its one tile border is computed in one row-major pass over a sliding window of three
+     * rows. Every cell is read once, so the cost is linear in the area of the region, and each
+     * tile that changes is written once. The brush type is not used by this operation.
+     * <p>
+     * Because cells inside the region are assumed to hold the new family, the region should lie inside the map.
+     *
+     * @param familyId The family ID we want to fill the region with.
+     * @param x        The X location of the first corner of the region.
+     * @param y        The Y location of the first corner of the region.
+     * @param width    The width of the region in tiles.
+     * @param height   The height of the region in tiles.
+     * @return True if auto tiling worked, false otherwise.
+     */
+    public boolean autoTileRegion(int familyId, int x, int y, int width, int height) {
+        BitmaskingType bitmaskingType = getFamilyType(familyId);
+        if (bitmaskingType == null || width <= 0 || height <= 0) return false;
+
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.AUTO_TILE_REGION);
+        Object event = AutoTileEvents.beginAutoTile();
+        if (threadSafe) {
+            runLocked(x - LOCK_MARGIN, y - LOCK_MARGIN, x + width - 1 + LOCK_MARGIN, y + height - 1 + LOCK_MARGIN,
+                    () -> fillRegion(bitmaskingType, familyId, x, y, width, height));
+        } else {
+            fillRegion(bitmaskingType, familyId, x, y, width, height);
+        }
+        endJournalOperation();
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, width * height);
+        if (event != null) AutoTileEvents.commitAutoTile(event, x, y, bitmaskingType, "region " + width + "x" + height, width * height);
         return true;
     }
 
-    private void performAutoTile(BitmaskingType bitmaskingType, String strippedTileName, int x, int y) {
+    private void fillRegion(BitmaskingType bitmaskingType, int familyId, int x, int y, int width, int height) {
+        if (batching) {
+            synchronized (tileBatch) {
+                for (int cellY = y; cellY < y + height; cellY++) {
+                    for (int cellX = x; cellX < x + width; cellX++) tileBatch.setFamily(familyId, cellX, cellY);
+                }
+                for (int cellX = x - 1; cellX <= x + width; cellX++) {
+                    markDirty(familyId, cellX, y - 1);
+                    markDirty(familyId, cellX, y + height);
+                }
+                for (int cellY = y; cellY < y + height; cellY++) {
+                    markDirty(familyId, x - 1, cellY);
+                    markDirty(familyId, x + width, cellY);
+                }
+            }
+            return;
+        }
+
+        // Columns cover the region plus two cells on each side, the outer ones are only read.
+        // Each row keeps the families of its cells, and the tiles read from the map outside the region.
+        int startX = x - 2;
+        int columns = width + 4;
+        int[] previousRow = new int[columns];
+        int[] currentRow = new int[columns];
+        int[] nextRow = new int[columns];
+        int[] previousRowTiles = new int[columns];
+        int[] currentRowTiles = new int[columns];
+        int[] nextRowTiles = new int[columns];
+        loadRegionRow(familyId, x, y, width, height, y - 2, startX, previousRow, previousRowTiles);
+        loadRegionRow(familyId, x, y, width, height, y - 1, startX, currentRow, currentRowTiles);
+
+        for (int rowY = y - 1; rowY <= y + height; rowY++) {
+            loadRegionRow(familyId, x, y, width, height, rowY + 1, startX, nextRow, nextRowTiles);
+            int[] northRow = yUp ? nextRow : previousRow;
+            int[] southRow = yUp ? previousRow : nextRow;
+            boolean borderRow = rowY < y || rowY >= y + height;
+
+            for (int i = 1; i < columns - 1; i++) {
+                int cellFamily = currentRow[i];
+                boolean borderCell = borderRow || i < 2 || i >= columns - 2;
+
+                // Border cells are neighbors, only fix the ones the region can affect
+                if (borderCell && cellFamily != familyId && !fixNeighborTiles && !isCrossFamily(cellFamily)) continue;
+
+                BitmaskingType cellType = borderCell ? getFamilyType(cellFamily) : bitmaskingType;
+                if (cellType == null) continue;
+
+                int bitmask = calculateBitmask(northRow, currentRow, southRow, i);
+                if (borderCell) {
+                    fixTile(currentRowTiles[i], TileId.pack(cellFamily, bitmask), startX + i, rowY);
+                } else {
+                    writeTile(currentRowTiles[i], TileId.pack(cellFamily, bitmask), startX + i, rowY);
+                }
+            }
+
+            // Slide the window down a row
+            int[] recycledRow = previousRow;
+            previousRow = currentRow;
+            currentRow = nextRow;
+            nextRow = recycledRow;
+            int[] recycledRowTiles = previousRowTiles;
+            previousRowTiles = currentRowTiles;
+            currentRowTiles = nextRowTiles;
+            nextRowTiles = recycledRowTiles;
+        }
+    }
+
+    /**
+     * Loads the families and tiles of one row of a region sweep. Cells inside the region are
+     * known to be the region family, their tiles are only kept to skip unchanged writes.
+     */
+    private void loadRegionRow(int familyId, int x, int y, int width, int height, int rowY, int startX, int[] row, int[] rowTiles) {
+        boolean insideRows = rowY >= y && rowY < y + height;
+        for (int i = 0; i < row.length; i++) {
+            int cellX = startX + i;
+            rowTiles[i] = getTileId(cellX, rowY);
+            row[i] = insideRows && cellX >= x && cellX < x + width ? familyId : TileId.getFamilyId(rowTiles[i]);
+        }
+    }
+
+    /**
+     * Flood fills the area of connected tiles at a location with the supplied tile name and auto tiles it.
+     *
+     * @param tileName The tile we want to fill the area with.
+     * @param x        The X location the fill starts at.
+     * @param y        The Y location the fill starts at.
+     * @param limit    The maximum number of tiles to fill.
+     * @return The number of tiles filled.
+     * @see #floodFill(int, int, int, int)
+     */
+    public int floodFill(String tileName, int x, int y, int limit) {
+        return floodFill(tileNameRegistry.getFamilyId(tileName), x, y, limit);
+    }
+
+    /**
+     * Flood fills the area of connected tiles at a location with the supplied tile family and auto tiles it.
+     * <p>
+     * The area is every tile of the same family as the starting tile (empty tiles included) that can be reached
+     * through its north, south, west and east neighbors. It is found with a scanline fill, one span of a row at a
+     * time, before anything is written. Then the bitmask of every filled tile is calculated and written once, and
+     * finally the ring of tiles around the area is fixed. Neighbors outside the area are only read, so the cost is
+     * linear in the size of the area.
+     * <p>
+     * The limit stops the fill once that many tiles are filled. It is what bounds the fill of an open area, for
+     * example empty tiles on a map that reads empty tiles past its edges.
+     *
+     * @param familyId The family ID we want to fill the area with.
+     * @param x        The X location the fill starts at.
+     * @param y        The Y location the fill starts at.
+     * @param limit    The maximum number of tiles to fill.
+     * @return The number of tiles filled.
+     */
+    public int floodFill(int familyId, int x, int y, int limit) {
+        BitmaskingType bitmaskingType = getFamilyType(familyId);
+        if (bitmaskingType == null || limit <= 0) return 0;
+
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.FLOOD_FILL);
+        Object event = AutoTileEvents.beginAutoTile();
+        int tilesFilled;
+        if (threadSafe) {
+            // The size of the area is not known up front, so every stripe is locked
+            int[] lockedTilesFilled = new int[1];
+            lockStripes(-1L, () -> lockedTilesFilled[0] = floodFillUnlocked(bitmaskingType, familyId, x, y, limit));
+            tilesFilled = lockedTilesFilled[0];
+        } else {
+            tilesFilled = floodFillUnlocked(bitmaskingType, familyId, x, y, limit);
+        }
+        endJournalOperation();
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, tilesFilled);
+        if (event != null) AutoTileEvents.commitAutoTile(event, x, y, bitmaskingType, "flood fill", tilesFilled);
+        return tilesFilled;
+    }
+
+    private int floodFillUnlocked(BitmaskingType bitmaskingType, int familyId, int x, int y, int limit) {
+        int targetFamilyId = TileId.getFamilyId(readTileId(x, y));
+        if (targetFamilyId == familyId) return 0;
+
+        // Find the area. Each span is stored as its row, first and last column.
+        CellSet filledCells = new CellSet();
+        int[] spans = new int[48];
+        int spanCount = 0;
+        int[] seeds = new int[32];
+        int seedCount = 0;
+        seeds[seedCount++] = x;
+        seeds[seedCount++] = y;
+        while (seedCount > 0 && filledCells.size() < limit) {
+            int seedY = seeds[--seedCount];
+            int seedX = seeds[--seedCount];
+            if (!isFloodTarget(targetFamilyId, filledCells, seedX, seedY)) continue;
+
+            // Grow the span west and east
+            int spanStart = seedX;
+            int spanEnd = seedX;
+            filledCells.add(seedX, seedY);
+            while (filledCells.size() < limit && isFloodTarget(targetFamilyId, filledCells, spanStart - 1, seedY)) {
+                filledCells.add(--spanStart, seedY);
+            }
+            while (filledCells.size() < limit && isFloodTarget(targetFamilyId, filledCells, spanEnd + 1, seedY)) {
+                filledCells.add(++spanEnd, seedY);
+            }
+            spans = ensureCapacity(spans, spanCount + 3);
+            spans[spanCount++] = seedY;
+            spans[spanCount++] = spanStart;
+            spans[spanCount++] = spanEnd;
+
+            // Seed each run of unfilled tiles in the rows above and below the span
+            for (int rowY = seedY - 1; rowY <= seedY + 1; rowY += 2) {
+                boolean inRun = false;
+                for (int cellX = spanStart; cellX <= spanEnd; cellX++) {
+                    boolean target = isFloodTarget(targetFamilyId, filledCells, cellX, rowY);
+                    if (target && !inRun) {
+                        seeds = ensureCapacity(seeds, seedCount + 2);
+                        seeds[seedCount++] = cellX;
+                        seeds[seedCount++] = rowY;
+                    }
+                    inRun = target;
+                }
+            }
+        }
+
+        if (batching) {
+            synchronized (tileBatch) {
+                for (int i = 0; i < spanCount; i += 3) {
+                    for (int cellX = spans[i + 1]; cellX <= spans[i + 2]; cellX++) tileBatch.setFamily(familyId, cellX, spans[i]);
+                }
+                forEachFloodRingCell(spans, spanCount, filledCells, (ringX, ringY) -> {
+                    int ringFamilyId = TileId.getFamilyId(readTileId(ringX, ringY));
+                    if (ringFamilyId == familyId || fixNeighborTiles && ringFamilyId == targetFamilyId
+                            || isCrossFamily(ringFamilyId)) {
+                        tileBatch.markDirty(ringX, ringY);
+                    }
+                });
+            }
+            return filledCells.size();
+        }
 
-        // If enabled, prepare neighbor tiles fix.
-        prepareNeighborTilesFix(strippedTileName, x, y);
+        // Auto tile the area. Filled tiles are known to be of the new family, even before they are written.
+        TileBitmasking tileBitmasking = getTileBitmasking(familyId);
+        boolean corners = bitmaskingType == BitmaskingType.TYPE_8;
+        boolean crossFamily = tileBitmasking.getRuleTable().isCrossFamily();
+        int north = yUp ? 1 : -1;
+        for (int i = 0; i < spanCount; i += 3) {
+            int cellY = spans[i];
+            for (int cellX = spans[i + 1]; cellX <= spans[i + 2]; cellX++) {
+                if (crossFamily) {
+                    int bitmask = tileBitmasking.calculateBitmask(familyId,
+                            getFloodFamilyId(familyId, filledCells, cellX, cellY + north),
+                            getFloodFamilyId(familyId, filledCells, cellX, cellY - north),
+                            getFloodFamilyId(familyId, filledCells, cellX - 1, cellY),
+                            getFloodFamilyId(familyId, filledCells, cellX + 1, cellY),
+                            getFloodFamilyId(familyId, filledCells, cellX - 1, cellY + north),
+                            getFloodFamilyId(familyId, filledCells, cellX + 1, cellY + north),
+                            getFloodFamilyId(familyId, filledCells, cellX - 1, cellY - north),
+                            getFloodFamilyId(familyId, filledCells, cellX + 1, cellY - north));
+                    writeTile(TileId.pack(familyId, bitmask), cellX, cellY);
+                    continue;
+                }
+                boolean northTile = isFloodFamily(familyId, filledCells, cellX, cellY + north);
+                boolean southTile = isFloodFamily(familyId, filledCells, cellX, cellY - north);
+                boolean westTile = isFloodFamily(familyId, filledCells, cellX - 1, cellY);
+                boolean eastTile = isFloodFamily(familyId, filledCells, cellX + 1, cellY);
+                int bitmask = tileBitmasking.calculateBitmask(northTile, southTile, westTile, eastTile,
+                        corners && northTile && westTile && isFloodFamily(familyId, filledCells, cellX - 1, cellY + north),
+                        corners && northTile && eastTile && isFloodFamily(familyId, filledCells, cellX + 1, cellY + north),
+                        corners && southTile && westTile && isFloodFamily(familyId, filledCells, cellX - 1, cellY - north),
+                        corners && southTile && eastTile && isFloodFamily(familyId, filledCells, cellX + 1, cellY - north));
+                writeTile(TileId.pack(familyId, bitmask), cellX, cellY);
+            }
+        }
 
-        // Perform bitmasking auto tile operations based on tile type
-        if (bitmaskingType == BitmaskingType.TYPE_4) {
-            initAutoTile(bitmask4Bit, strippedTileName, x, y);
-        } else if (bitmaskingType == BitmaskingType.TYPE_8) {
-            initAutoTile(bitmask8Bit, strippedTileName, x, y);
+        // Fix the ring around the area. Only tiles of the new family, of the replaced one, or whose rules name other
+        // families can be affected.
+        Object event = AutoTileEvents.beginNeighborFix();
+        int[] tilesFixed = new int[1];
+        forEachFloodRingCell(spans, spanCount, filledCells, (ringX, ringY) -> {
+            int ringTileId = readTileId(ringX, ringY);
+            int ringFamilyId = TileId.getFamilyId(ringTileId);
+            if (ringFamilyId != familyId && !(fixNeighborTiles && ringFamilyId == targetFamilyId)
+                    && !isCrossFamily(ringFamilyId)) {
+                return;
+            }
+            if (getFamilyType(ringFamilyId) == null) return;
+            int bitmask = getTileBitmasking(ringFamilyId).calculateBitmask(ringFamilyId, ringX, ringY);
+            fixTile(ringTileId, TileId.pack(ringFamilyId, bitmask), ringX, ringY);
+            tilesFixed[0]++;
+        });
+        if (event != null) AutoTileEvents.commitNeighborFix(event, x, y, bitmaskingType, tilesFixed[0]);
+        return filledCells.size();
+    }
+
+    /**
+     * Visits each tile touching a flood filled area once, not counting the tiles of the area itself.
+     */
+    private void forEachFloodRingCell(int[] spans, int spanCount, CellSet filledCells, CellVisitor cellVisitor) {
+        CellSet visitedCells = new CellSet();
+        for (int i = 0; i < spanCount; i += 3) {
+            int cellY = spans[i];
+            int spanStart = spans[i + 1] - 1;
+            int spanEnd = spans[i + 2] + 1;
+            for (int rowY = cellY - 1; rowY <= cellY + 1; rowY++) {
+                for (int cellX = spanStart; cellX <= spanEnd; cellX++) {
+                    // The inside of the span's own row is filled
+                    if (rowY == cellY && cellX != spanStart && cellX != spanEnd) continue;
+                    if (filledCells.contains(cellX, rowY) || !visitedCells.add(cellX, rowY)) continue;
+                    cellVisitor.visit(cellX, rowY);
+                }
+            }
         }
+    }
+
+    private boolean isFloodTarget(int targetFamilyId, CellSet filledCells, int x, int y) {
+        return !filledCells.contains(x, y) && TileId.getFamilyId(readTileId(x, y)) == targetFamilyId;
+    }
+
+    private boolean isFloodFamily(int familyId, CellSet filledCells, int x, int y) {
+        return filledCells.contains(x, y) || TileId.getFamilyId(readTileId(x, y)) == familyId;
+    }
+
+    private int getFloodFamilyId(int familyId, CellSet filledCells, int x, int y) {
+        return filledCells.contains(x, y) ? familyId : TileId.getFamilyId(readTileId(x, y));
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+        if (length <= array.length) return array;
+        int[] newArray = new int[Math.max(length, array.length * 2)];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * Visits a cell by its coordinates.
+     */
+    private interface CellVisitor {
+        void visit(int x, int y);
+    }
+
+    /**
+     * Calculates the bitmask of a cell from rows of family IDs. The cell is at index {@code i}
+     * of {@code row}, and its neighbors are at {@code i - 1} and {@code i + 1} of each row.
+     *
+     * @param northRow the families of the row north of the cell
+     * @param row      the families of the cell's row
+     * @param southRow the families of the row south of the cell
+     * @param i        the index of the cell in the rows
+     * @return the calculated bitmask for the cell
+     */
+    int calculateBitmask(int[] northRow, int[] row, int[] southRow, int i) {
+        int familyId = row[i];
+        TileBitmasking tileBitmasking = getTileBitmasking(familyId);
+        if (tileBitmasking.getRuleTable().isCrossFamily()) {
+            return tileBitmasking.calculateBitmask(familyId, northRow[i], southRow[i], row[i - 1], row[i + 1],
+                    northRow[i - 1], northRow[i + 1], southRow[i - 1], southRow[i + 1]);
+        }
+        return tileBitmasking.calculateBitmask(
+                northRow[i] == familyId, southRow[i] == familyId,
+                row[i - 1] == familyId, row[i + 1] == familyId,
+                northRow[i - 1] == familyId, northRow[i + 1] == familyId,
+                southRow[i - 1] == familyId, southRow[i + 1] == familyId);
+    }
+
+    /**
+     * Gets the {@link TileBitmasking} implementation of a registered tile family.
+     *
+     * @param familyId the family ID of the auto tile
+     * @return the bitmasking implementation, from the {@link RuleTable} of the family if it has one
+     */
+    TileBitmasking getTileBitmasking(int familyId) {
+        TileBitmasking[] bitmaskings = familyBitmaskings;
+        if (familyId > 0 && familyId < bitmaskings.length && bitmaskings[familyId] != null) return bitmaskings[familyId];
+        return getFamilyType(familyId) == BitmaskingType.TYPE_4 ? bitmask4Bit : bitmask8Bit;
+    }
 
-        // If enabled, do neighbor tiles fix.
-        initNeighborTileFix(x, y);
+    /**
+     * Gets the {@link RuleTable} of a registered tile family.
+     *
+     * @param familyId The family ID of the tile.
+     * @return The table the family was registered with, or the table of its built-in {@link BitmaskingType}.
+     */
+    public RuleTable getRuleTable(int familyId) {
+        return getTileBitmasking(familyId).getRuleTable();
+    }
+
+    /**
+     * Checks if a family is tiled with rules naming other families, so its tiles can change whenever a neighbor of
+     * any family does.
+     */
+    private boolean isCrossFamily(int familyId) {
+        TileBitmasking[] bitmaskings = familyBitmaskings;
+        return familyId > 0 && familyId < bitmaskings.length && bitmaskings[familyId] != null
+                && bitmaskings[familyId].getRuleTable().isCrossFamily();
     }
 
     /**
@@ -150,152 +904,483 @@ public class AutoTiler {
      * @param y the y-coordinate of the tile in the game world
      */
     public void eraseTile(int x, int y) {
-        if (!fixNeighborTiles) return;
-        prepareNeighborTilesFix("", x, y);
-        initNeighborTileFix(x, y);
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.ERASE_TILE);
+        Object event = AutoTileEvents.beginEraseTile();
+        if (threadSafe) {
+            runLocked(x - LOCK_MARGIN, y - LOCK_MARGIN, x + LOCK_MARGIN, y + LOCK_MARGIN, () -> eraseTileUnlocked(x, y));
+        } else {
+            eraseTileUnlocked(x, y);
+        }
+        endJournalOperation();
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, 1);
+        if (event != null) AutoTileEvents.commitEraseTile(event, x, y, false);
     }
 
     /**
-     * Prepares a list of neighboring tiles to be fixed after the auto-tiling operation.
-     * This method is only used when the fixNeighborTiles option is enabled.
+     * Clears the tile at the specified coordinates and updates its neighbors. Unlike {@link #eraseTile(int, int)},
+     * the tile is cleared through the tile setter, so an {@link EditJournal} can record and restore it.
      *
-     * @param strippedTileName the name of the stripped tile to compare with neighboring tiles
-     * @param x                the x-coordinate of the tile in the game world
-     * @param y                the y-coordinate of the tile in the game world
+     * @param x the x-coordinate of the tile in the game world
+     * @param y the y-coordinate of the tile in the game world
      */
-    private void prepareNeighborTilesFix(String strippedTileName, int x, int y) {
-        if (!fixNeighborTiles) return;
+    public void removeTile(int x, int y) {
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.REMOVE_TILE);
+        Object event = AutoTileEvents.beginEraseTile();
+        if (threadSafe) {
+            runLocked(x - LOCK_MARGIN, y - LOCK_MARGIN, x + LOCK_MARGIN, y + LOCK_MARGIN, () -> {
+                writeTile(TileId.EMPTY, x, y);
+                eraseTileUnlocked(x, y);
+            });
+        } else {
+            writeTile(TileId.EMPTY, x, y);
+            eraseTileUnlocked(x, y);
+        }
+        endJournalOperation();
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, 1);
+        if (event != null) AutoTileEvents.commitEraseTile(event, x, y, true);
+    }
 
-        // See if we are currently replacing a blob tile
-        String neighborName = tileGetterSetter.getTile(x, y);
+    private void eraseTileUnlocked(int x, int y) {
+        if (batching) {
+            synchronized (tileBatch) {
+                // The caller has already cleared the cell, make sure an earlier pending tile does not hide that.
+                long cellKey = TileBatch.cellKey(x, y);
+                if (tileBatch.hasPendingTile(cellKey)) tileBatch.setFamily(TileId.EMPTY, x, y);
+                if (fixNeighborTiles) markNeighborsDirty(TileId.EMPTY, x, y);
+            }
+            return;
+        }
+        fixNeighbors(x, y);
+    }
 
-        // If the neighbor
-        String strippedNeighborName = null;
-        if (neighborName != null) {
-            strippedNeighborName = stripImageId(neighborName);
+    /**
+     * Re-tiles a cell on every layer of a layered map in a single call.
+     * <p>
+     * On each layer, the neighborhood of the cell is read once into a small window, every bitmask is calculated from
+     * the window, and only the tiles whose bitmask changed are written, each once. If fixNeighborTiles is enabled the
+     * neighbors of the cell are re-tiled as well, from a 5x5 window, otherwise only the cell is, from a 3x3 window.
+     * <p>
+     * This operation works on the supplied map instead of the map of the auto tiler, so it is not batched, locked or
+     * recorded by the {@link EditJournal}.
+     *
+     * @param layeredTileGetterSetter The layered map to re-tile.
+     * @param x                       The X location of the map.
+     * @param y                       The Y location of the map.
+     * @return The number of tiles written, across all layers.
+     */
+    public int reTileLayers(LayeredTileGetterSetter layeredTileGetterSetter, int x, int y) {
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.RE_TILE_LAYERS);
+        Object event = AutoTileEvents.beginAutoTile();
+        int radius = fixNeighborTiles ? 2 : 1;
+        int size = radius * 2 + 1;
+        int[] window = new int[size * size];
+        int written = 0;
+
+        int layerCount = layeredTileGetterSetter.getLayerCount();
+        for (int layer = 0; layer < layerCount; layer++) {
+            for (int windowY = 0; windowY < size; windowY++) {
+                for (int windowX = 0; windowX < size; windowX++) {
+                    window[windowY * size + windowX] = layeredTileGetterSetter.getTileId(layer, x + windowX - radius, y + windowY - radius);
+                    if (autoTileMetrics != null) autoTileMetrics.countRead();
+                }
+            }
 
-            // If the stripped tile names are the same, skip
-            if (strippedNeighborName.equals(strippedTileName)) return;
+            // Only bitmasks change, never families, so every cell can be calculated from the window as it was read
+            for (int windowY = 1; windowY < size - 1; windowY++) {
+                for (int windowX = 1; windowX < size - 1; windowX++) {
+                    int tileId = window[windowY * size + windowX];
+                    int familyId = TileId.getFamilyId(tileId);
+                    BitmaskingType bitmaskingType = getFamilyType(familyId);
+                    if (bitmaskingType == null) continue; // Empty or type not detected
+
+                    int bitmask = calculateBitmask(window, size, familyId, windowX, windowY);
+                    int newTileId = TileId.pack(familyId, bitmask);
+                    if (newTileId == tileId) {
+                        if (autoTileMetrics != null) autoTileMetrics.countSuppressedWrite();
+                        continue;
+                    }
+                    layeredTileGetterSetter.setTileId(layer, newTileId, x + windowX - radius, y + windowY - radius);
+                    written++;
+                    if (autoTileMetrics != null) {
+                        autoTileMetrics.countWrite();
+                        if (windowX != radius || windowY != radius) autoTileMetrics.countNeighborFix();
+                    }
+                }
+            }
         }
+        // Every layer re-tiles the cells inside the border of its window
+        int cellsTouched = layerCount * (size - 2) * (size - 2);
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, cellsTouched);
+        if (event != null) AutoTileEvents.commitAutoTile(event, x, y, null, "layers " + layerCount, cellsTouched);
+        return written;
+    }
 
-        // Now loop through and find tiles that need to be fixed
-        for (TileLocations tileLocation : TileLocations.values()) {
-            int locationX = tileLocation.getX(x);
-            int locationY = tileLocation.getY(y, yUp);
-            String neighborsNeighborName = tileGetterSetter.getTile(locationX, locationY);
-            if (neighborsNeighborName == null) continue;
-            if (strippedNeighborName != null && !(neighborsNeighborName.contains(strippedNeighborName))) continue;
-            fixNeighborList.add(tileLocation);
+    /**
+     * Calculates the bitmask of a cell from a square window of tile IDs, indexed by {@code windowY * size + windowX}.
+     */
+    private int calculateBitmask(int[] window, int size, int familyId, int windowX, int windowY) {
+        TileBitmasking tileBitmasking = getTileBitmasking(familyId);
+        if (tileBitmasking.getRuleTable().isCrossFamily()) {
+            return tileBitmasking.calculateBitmask(familyId,
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.NORTH),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.SOUTH),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.WEST),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.EAST),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.NORTH_WEST),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.NORTH_EAST),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.SOUTH_WEST),
+                    getWindowFamilyId(window, size, windowX, windowY, TileLocations.SOUTH_EAST));
         }
+        return tileBitmasking.calculateBitmask(
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.NORTH),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.SOUTH),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.WEST),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.EAST),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.NORTH_WEST),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.NORTH_EAST),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.SOUTH_WEST),
+                isWindowFamily(window, size, familyId, windowX, windowY, TileLocations.SOUTH_EAST));
+    }
+
+    private boolean isWindowFamily(int[] window, int size, int familyId, int windowX, int windowY, TileLocations tileLocation) {
+        return getWindowFamilyId(window, size, windowX, windowY, tileLocation) == familyId;
+    }
+
+    private int getWindowFamilyId(int[] window, int size, int windowX, int windowY, TileLocations tileLocation) {
+        return TileId.getFamilyId(window[tileLocation.getY(windowY, yUp) * size + tileLocation.getX(windowX)]);
     }
 
     /**
-     * Initializes an auto tile at the specified coordinates, using the given stripped tile name
-     * and game world location.
+     * Opens a batch. Until {@link #commit()} is called, auto tile and erase operations only record
+     * the families they place and the cells they affect. On commit, the bitmask of every affected cell
+     * is calculated and written exactly once, no matter how many operations touched it.
+     * <p>
+     * This is meant for brush strokes, large brushes and scripted edits, where overlapping operations
+     * would otherwise re-tile the same neighbors over and over again.
      *
-     * @param strippedTileName the name of the stripped tile to use for the auto tile
-     * @param x                the x-coordinate of the auto tile in the game world
-     * @param y                the y-coordinate of the auto tile in the game world
+     * @throws IllegalStateException if a batch is already open
      */
-    private void initAutoTile(TileBitmasking tileBitmasking, String strippedTileName, int x, int y) {
-        // Set target location first
-        int bitmask = tileBitmasking.calculateBitmask(strippedTileName, x, y, true, locationUpdateList);
-        tileGetterSetter.setTile(strippedTileName + bitmask, x, y);
+    public void beginBatch() {
+        synchronized (tileBatch) {
+            if (batching) throw new IllegalStateException("A batch is already open.");
+            batching = true;
+        }
+    }
 
-        // Update surrounding tiles
-        for (TileLocations tileLocation : locationUpdateList) {
-            int locationX = tileLocation.getX(x);
-            int locationY = tileLocation.getY(y, yUp);
+    /**
+     * Closes the open batch, calculating and writing the bitmask of every cell affected by it.
+     *
+     * @return The number of tiles written.
+     * @throws IllegalStateException if no batch is open
+     */
+    public int commit() {
+        AutoTileMetrics autoTileMetrics = metrics;
+        AutoTileMetrics.OperationSample operationSample = autoTileMetrics == null ? null : autoTileMetrics.beginOperation(AutoTileMetrics.Operation.COMMIT);
+        Object event = AutoTileEvents.beginBatchCommit();
+        int tilesWritten;
+        if (threadSafe) {
+            // The dirty cells can be anywhere, so every stripe is locked
+            int[] lockedTilesWritten = new int[1];
+            lockStripes(-1L, () -> lockedTilesWritten[0] = commitUnlocked());
+            tilesWritten = lockedTilesWritten[0];
+        } else {
+            tilesWritten = commitUnlocked();
+        }
+        if (autoTileMetrics != null) autoTileMetrics.endOperation(operationSample, tilesWritten);
+        if (event != null) AutoTileEvents.commitBatchCommit(event, tilesWritten);
+        return tilesWritten;
+    }
 
-            // These are tiles that are of the same type
-            bitmask = tileBitmasking.calculateBitmask(strippedTileName, locationX, locationY, false, locationUpdateList);
-            String tileName = strippedTileName + bitmask;
-            tileGetterSetter.setTile(tileName, locationX, locationY);
+    private int commitUnlocked() {
+        synchronized (tileBatch) {
+            if (!batching) throw new IllegalStateException("No batch is open.");
+            int tilesWritten = writeDirtyCells();
+            batching = false;
+            tileBatch.clear();
+            endJournalOperation();
+            return tilesWritten;
         }
-        locationUpdateList.clear();
+    }
+
+    private int writeDirtyCells() {
+        int tilesWritten = 0;
+        LongIntMap dirtyCells = tileBatch.getDirtyCells();
+        for (int slot = 0; slot < dirtyCells.getCapacity(); slot++) {
+            if (!dirtyCells.isOccupied(slot)) continue;
+            long cellKey = dirtyCells.getKeyAt(slot);
+            int cellX = TileBatch.getCellX(cellKey);
+            int cellY = TileBatch.getCellY(cellKey);
+
+            // Reads still see the pending tiles of the batch
+            int tileId = readTileId(cellX, cellY);
+            int familyId = TileId.getFamilyId(tileId);
+            BitmaskingType bitmaskingType = getFamilyType(familyId);
+            if (bitmaskingType == null) continue;
+
+            int bitmask = getTileBitmasking(familyId).calculateBitmask(familyId, cellX, cellY);
+            int newTileId = TileId.pack(familyId, bitmask);
+            if (tileBatch.hasPendingTile(cellKey)) {
+                // The map still holds the tile from before the batch
+                writeTile(newTileId, cellX, cellY);
+            } else if (!writeTile(tileId, newTileId, cellX, cellY)) {
+                continue;
+            }
+            tilesWritten++;
+        }
+        return tilesWritten;
+    }
+
+    /**
+     * Undoes the newest operation recorded by the {@link EditJournal}.
+     *
+     * @return True if an operation was undone, false if there was nothing to undo or no journal is attached.
+     * @throws IllegalStateException if a batch or a stroke is open
+     */
+    public boolean undo() {
+        EditJournal journal = editJournal;
+        if (journal == null) return false;
+        if (batching) throw new IllegalStateException("Can not undo while a batch is open.");
+        return journal.undo(intTileGetterSetter);
     }
 
     /**
-     * Fixes the neighbor tiles affected by the auto-tiling or erase operation.
-     * This method is only used when the fixNeighborTiles option is enabled.
+     * Redoes the newest operation undone by {@link #undo()}.
+     *
+     * @return True if an operation was redone, false if there was nothing to redo or no journal is attached.
+     * @throws IllegalStateException if a batch or a stroke is open
+     */
+    public boolean redo() {
+        EditJournal journal = editJournal;
+        if (journal == null) return false;
+        if (batching) throw new IllegalStateException("Can not redo while a batch is open.");
+        return journal.redo(intTileGetterSetter);
+    }
+
+    /**
+     * Writes a tile to the map, recording it in the {@link EditJournal} if one is attached. The tile it replaces is
+     * only read for the journal, and the write is then skipped if the tile is unchanged.
+     */
+    private void writeTile(int tileId, int x, int y) {
+        EditJournal journal = editJournal;
+        if (journal != null) {
+            writeTile(getTileId(x, y), tileId, x, y);
+            return;
+        }
+        AutoTileMetrics autoTileMetrics = metrics;
+        if (autoTileMetrics != null) autoTileMetrics.countWrite();
+        intTileGetterSetter.setTileId(tileId, x, y);
+    }
+
+    /**
+     * Writes a tile to the map when the tile it replaces is already known. The write is skipped if the tile is
+     * unchanged, so the tile setter, and whatever it triggers downstream, only sees real changes.
+     *
+     * @return True if the tile was written, false if it was unchanged.
+     */
+    private boolean writeTile(int previousTileId, int tileId, int x, int y) {
+        AutoTileMetrics autoTileMetrics = metrics;
+        if (previousTileId == tileId) {
+            if (autoTileMetrics != null) autoTileMetrics.countSuppressedWrite();
+            return false;
+        }
+        EditJournal journal = editJournal;
+        if (journal != null) journal.record(x, y, previousTileId, tileId);
+        if (autoTileMetrics != null) autoTileMetrics.countWrite();
+        intTileGetterSetter.setTileId(tileId, x, y);
+        return true;
+    }
+
+    /**
+     * Writes a tile whose bitmask may have changed because one of its neighbors did. The write is skipped if the
+     * tile is unchanged.
+     */
+    private void fixTile(int previousTileId, int tileId, int x, int y) {
+        if (!writeTile(previousTileId, tileId, x, y)) return;
+        AutoTileMetrics autoTileMetrics = metrics;
+        if (autoTileMetrics != null) autoTileMetrics.countNeighborFix();
+    }
+
+    /**
+     * Ends an operation in the {@link EditJournal}. Everything written while a batch is open is one operation,
+     * which ends when the batch is committed.
+     */
+    private void endJournalOperation() {
+        EditJournal journal = editJournal;
+        if (journal != null && !batching) journal.endOperation();
+    }
+
+    /**
+     * Marks the neighbors of a cell dirty in the open batch.
+     *
+     * @param familyId the family placed at the cell, or {@link TileId#EMPTY} if it was erased
+     * @param x        the x-coordinate of the tile in the game world
+     * @param y        the y-coordinate of the tile in the game world
+     */
+    private void markNeighborsDirty(int familyId, int x, int y) {
+        for (TileLocations tileLocation : NEIGHBOR_LOCATIONS) {
+            markDirty(familyId, tileLocation.getX(x), tileLocation.getY(y, yUp));
+        }
+    }
+
+    /**
+     * Marks a neighbor dirty in the open batch, if its bitmask can be affected by a change of the given family.
+     */
+    private void markDirty(int familyId, int x, int y) {
+        if (fixNeighborTiles) {
+            tileBatch.markDirty(x, y);
+            return;
+        }
+        int cellFamilyId = readFamilyId(x, y);
+        if (cellFamilyId == familyId || isCrossFamily(cellFamilyId)) tileBatch.markDirty(x, y);
+    }
+
+    /**
+     * Fixes the neighbor tiles of an erased tile.
+     * This method does nothing unless the fixNeighborTiles option is enabled.
      *
      * @param x the x-coordinate of the tile in the game world
      * @param y the y-coordinate of the tile in the game world
      */
-    private void initNeighborTileFix(int x, int y) {
+    private void fixNeighbors(int x, int y) {
         if (!fixNeighborTiles) return;
-        for (TileLocations blobLocation : fixNeighborList) {
-            int locationX = blobLocation.getX(x);
-            int locationY = blobLocation.getY(y, yUp);
 
-            // These are surrounding tiles that are not the same type
-            String neighborName = tileGetterSetter.getTile(locationX, locationY);
-            if (neighborName == null) continue;
+        // The neighbors and their own neighbors are read once, into a 5x5 window
+        boolean reuseScratch = !threadSafe && !scratchInUse;
+        if (!reuseScratch) {
+            fixNeighbors(new TileWindow(this, x - 2, y - 2, x + 2, y + 2), x, y);
+            return;
+        }
+        scratchInUse = true;
+        try {
+            scratchWindow.reset(x - 2, y - 2, x + 2, y + 2);
+            fixNeighbors(scratchWindow, x, y);
+        } finally {
+            scratchInUse = false;
+        }
+    }
 
-            String strippedNeighborName = stripImageId(neighborName);
+    private void fixNeighbors(TileWindow tileWindow, int x, int y) {
+        Object event = AutoTileEvents.beginNeighborFix();
+        int tilesFixed = 0;
+        for (TileLocations tileLocation : NEIGHBOR_LOCATIONS) {
+            int locationX = tileLocation.getX(x);
+            int locationY = tileLocation.getY(y, yUp);
 
             // Detect bitmasking type for this tile
-            BitmaskingType bitmaskingType = detectBitmaskingType(strippedNeighborName);
-            if (bitmaskingType == null) return; // Type not detected
+            int neighborTileId = tileWindow.getTileId(locationX, locationY);
+            int neighborFamily = TileId.getFamilyId(neighborTileId);
+            BitmaskingType bitmaskingType = getFamilyType(neighborFamily);
+            if (bitmaskingType == null) continue; // Empty or type not detected
 
             // Apply bitmasking operations
-            int bitmask = 0;
-            if (bitmaskingType == BitmaskingType.TYPE_4) {
-                bitmask = bitmask4Bit.calculateBitmask(strippedNeighborName, locationX, locationY, false, locationUpdateList);
-            } else if (bitmaskingType == BitmaskingType.TYPE_8) {
-                bitmask = bitmask8Bit.calculateBitmask(strippedNeighborName, locationX, locationY, false, locationUpdateList);
+            int bitmask = tileWindow.calculateBitmask(bitmaskingType, neighborFamily, locationX, locationY);
+            fixTile(neighborTileId, TileId.pack(neighborFamily, bitmask), locationX, locationY);
+            tilesFixed++;
+        }
+        if (event != null) AutoTileEvents.commitNeighborFix(event, x, y, null, tilesFixed);
+    }
+
+    /**
+     * Runs an operation while holding the stripe locks of every block overlapping a rectangle of cells.
+     */
+    private void runLocked(int minX, int minY, int maxX, int maxY, Runnable operation) {
+        long stripes = 0;
+        int minBlockX = minX >> LOCK_BLOCK_SHIFT;
+        int minBlockY = minY >> LOCK_BLOCK_SHIFT;
+        int maxBlockX = maxX >> LOCK_BLOCK_SHIFT;
+        int maxBlockY = maxY >> LOCK_BLOCK_SHIFT;
+        for (int blockY = minBlockY; blockY <= maxBlockY && stripes != -1L; blockY++) {
+            for (int blockX = minBlockX; blockX <= maxBlockX && stripes != -1L; blockX++) {
+                stripes |= 1L << getStripe(blockX, blockY);
             }
-            tileGetterSetter.setTile(strippedNeighborName + bitmask, locationX, locationY);
         }
-        fixNeighborList.clear();
+        lockStripes(stripes, operation);
     }
 
     /**
-     * Compares the supplied tile name to the one at the X/Y location.
-     *
-     * @param strippedTileName A tile name with the image id removed.
-     * @param x                The X location of the map.
-     * @param y                The Y location of the map.
-     * @return True if the names match, false if they do not match or are null.
+     * Locks a set of stripes, one bit per stripe, then runs the operation. Stripes are always locked
+     * in ascending order, so operations locking overlapping sets can not deadlock.
      */
-    boolean compareTile(String strippedTileName, int x, int y) {
-        String targetTile = tileGetterSetter.getTile(x, y);
+    private void lockStripes(long stripes, Runnable operation) {
+        if (stripes == 0) {
+            operation.run();
+            return;
+        }
+        synchronized (stripeLocks[Long.numberOfTrailingZeros(stripes)]) {
+            lockStripes(stripes & stripes - 1, operation);
+        }
+    }
 
-        if (targetTile == null) return false;
+    /**
+     * Gets the lock stripe of a block of cells.
+     */
+    private static int getStripe(int blockX, int blockY) {
+        return (blockX * 0x9E3779B1 ^ blockY * 0x85EBCA6B) >>> 26;
+    }
 
-        targetTile = stripImageId(targetTile);
-        return strippedTileName.equals(targetTile);
+    /**
+     * Compares the supplied family ID to the family of the tile at the X/Y location.
+     *
+     * @param familyId The family ID to compare with.
+     * @param x        The X location of the map.
+     * @param y        The Y location of the map.
+     * @return True if the families match, false if they do not match or the tile is empty.
+     */
+    boolean compareTile(int familyId, int x, int y) {
+        return readFamilyId(x, y) == familyId;
     }
 
     /**
-     * Converts a boolean to a numerical value.
+     * Reads the family of the tile at the X/Y location, including tiles still pending in an open batch.
      *
-     * @param b the boolean to test.
-     * @return 1 if true or 0 if false.
+     * @param x The X location of the map.
+     * @param y The Y location of the map.
+     * @return The family ID of the tile, or {@link TileId#EMPTY} if the tile is empty.
      */
-    int boolToInt(boolean b) {
-        return b ? 1 : 0;
+    int readFamilyId(int x, int y) {
+        return TileId.getFamilyId(readTileId(x, y));
     }
 
     /**
-     * Gets the texture name and strips out its wang image id.
+     * Reads the tile at the X/Y location, including tiles still pending in an open batch.
      *
-     * @param textureName The name of the texture.
-     * @return A texture name with the numbers stripped out.
+     * @param x The X location of the map.
+     * @param y The Y location of the map.
+     * @return The packed tile ID at the location.
      */
-    public String stripImageId(String textureName) {
-        return textureName.replaceAll("\\d*$", "");
+    int readTileId(int x, int y) {
+        if (batching) {
+            long cellKey = TileBatch.cellKey(x, y);
+            synchronized (tileBatch) {
+                if (tileBatch.hasPendingTile(cellKey)) {
+                    AutoTileMetrics autoTileMetrics = metrics;
+                    if (autoTileMetrics != null) autoTileMetrics.countCacheHit();
+                    return tileBatch.getPendingTile(cellKey);
+                }
+            }
+        }
+        return getTileId(x, y);
+    }
+
+    /**
+     * Reads the tile at the X/Y location from the tile getter.
+     */
+    private int getTileId(int x, int y) {
+        AutoTileMetrics autoTileMetrics = metrics;
+        if (autoTileMetrics != null) autoTileMetrics.countRead();
+        return intTileGetterSetter.getTileId(x, y);
     }
 
     /**
-     * Detects if the supplied texture name is a wang tile.
+     * Gets the texture name and strips out its wang image id.
      *
-     * @param textureName The name of the texture to check.
-     * @return Returns the {@link BitmaskingType} if it is detected.
+     * @param textureName The name of the texture.
+     * @return A texture name with the numbers stripped out.
      */
-    private BitmaskingType detectBitmaskingType(String textureName) {
-        if (textureName.startsWith(prefixType4)) return BitmaskingType.TYPE_4;
-        if (textureName.startsWith(prefixType8)) return BitmaskingType.TYPE_8;
-        return null;
+    public String stripImageId(String textureName) {
+        return TileNameRegistry.stripImageId(textureName);
     }
 }
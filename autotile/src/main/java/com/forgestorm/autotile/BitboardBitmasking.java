@@ -0,0 +1,163 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link BitboardBitmasking} class calculates bitmasks for 64 cells at a time from a {@link FamilyBitplane}.
+ * <p>
+ * For one word of a row, the north and south neighbors are the same word of the rows above and below, and the west
+ * and east neighbors are the row shifted by one bit, carrying the edge bit over from the adjacent word. Diagonals are
+ * the north and south rows shifted the same way. The 8-bit corner rule, where a corner only counts when both of its
+ * sides match, is a single AND per corner. Only the final assembly of each cell's neighbors, and the lookup of its
+ * tile in the {@link RuleTable} of the family, is done per cell.
+ * <p>
+ * The masks are identical to the ones calculated by {@link Bitmask4Bit} and {@link Bitmask8Bit}. A bitplane only tells
+ * whether a neighbor is of the same family, so families whose rules name other families are tiled one cell at a time
+ * by {@link #retileAll(BitplaneStore, TileGrid)}, from the families of the store.
+ *
+ * @author unenergizer
+ * @see BitplaneStore
+ */
+public class BitboardBitmasking {
+
+    /**
+     * The {@link AutoTiler} that provides family types and the coordinate system orientation.
+     */
+    private final AutoTiler autoTiler;
+
+    public BitboardBitmasking(AutoTiler autoTiler) {
+        this.autoTiler = autoTiler;
+    }
+
+    /**
+     * Calculates the bitmasks of every cell of a row that belongs to the bitplane's family.
+     * Cells that do not belong to the family are left untouched in the masks array.
+     *
+     * @param bitplane       The bitplane of the family.
+     * @param bitmaskingType The built-in {@link BitmaskingType} of the family.
+     * @param y              The row to calculate.
+     * @param masks          The array receiving the bitmasks, indexed by X.
+     */
+    public void calculateRow(FamilyBitplane bitplane, BitmaskingType bitmaskingType, int y, int[] masks) {
+        calculateRow(bitplane, RuleTable.of(bitmaskingType), y, masks);
+    }
+
+    /**
+     * Calculates the bitmasks of every cell of a row that belongs to the bitplane's family.
+     * Cells that do not belong to the family are left untouched in the masks array.
+     *
+     * @param bitplane  The bitplane of the family.
+     * @param ruleTable The {@link RuleTable} of the family.
+     * @param y         The row to calculate.
+     * @param masks     The array receiving the bitmasks, indexed by X.
+     * @throws IllegalArgumentException if the rules of the table name other families
+     */
+    public void calculateRow(FamilyBitplane bitplane, RuleTable ruleTable, int y, int[] masks) {
+        if (ruleTable.isCrossFamily()) {
+            throw new IllegalArgumentException("A bitplane can not tell the other families named by the rules apart.");
+        }
+        int northY = autoTiler.isYUp() ? y + 1 : y - 1;
+        int southY = autoTiler.isYUp() ? y - 1 : y + 1;
+        boolean corners = ruleTable.getBitmaskingType() == BitmaskingType.TYPE_8;
+
+        for (int word = 0; word < bitplane.getWordsPerRow(); word++) {
+            long center = bitplane.getWord(y, word);
+            if (center == 0L) continue;
+
+            long north = bitplane.getWord(northY, word);
+            long south = bitplane.getWord(southY, word);
+            long west = shiftWest(center, bitplane.getWord(y, word - 1));
+            long east = shiftEast(center, bitplane.getWord(y, word + 1));
+
+            // Corners only count when both of their sides match, and are not read when the table ignores them
+            long northWest = 0L, northEast = 0L, southWest = 0L, southEast = 0L;
+            if (corners) {
+                northWest = shiftWest(north, bitplane.getWord(northY, word - 1)) & north & west;
+                northEast = shiftEast(north, bitplane.getWord(northY, word + 1)) & north & east;
+                southWest = shiftWest(south, bitplane.getWord(southY, word - 1)) & south & west;
+                southEast = shiftEast(south, bitplane.getWord(southY, word + 1)) & south & east;
+            }
+
+            int baseX = word << 6;
+            for (long bits = center; bits != 0L; bits &= bits - 1) {
+                int i = Long.numberOfTrailingZeros(bits);
+                masks[baseX + i] = ruleTable.getTile((int) (northWest >>> i & 1L)
+                        | (int) (north >>> i & 1L) << 1
+                        | (int) (northEast >>> i & 1L) << 2
+                        | (int) (west >>> i & 1L) << 3
+                        | (int) (east >>> i & 1L) << 4
+                        | (int) (southWest >>> i & 1L) << 5
+                        | (int) (south >>> i & 1L) << 6
+                        | (int) (southEast >>> i & 1L) << 7);
+            }
+        }
+    }
+
+    /**
+     * Writes the packed tile ID of every auto tile in the store to a grid of the same size. Cells that are not
+     * auto tiles keep the tile ID they already have in the grid.
+     *
+     * @param bitplaneStore The families of the map.
+     * @param tileGrid      The grid to write the tiles to.
+     */
+    public void retileAll(BitplaneStore bitplaneStore, TileGrid tileGrid) {
+        int width = tileGrid.getWidth();
+        int[] tileRow = new int[width];
+        int[] masks = new int[width];
+
+        for (int y = 0; y < tileGrid.getHeight(); y++) {
+            tileGrid.readRow(y, tileRow, 0);
+
+            for (int familyId = 1; familyId < bitplaneStore.getFamilyBound(); familyId++) {
+                FamilyBitplane bitplane = bitplaneStore.getBitplane(familyId);
+                if (bitplane == null || autoTiler.getFamilyType(familyId) == null) continue;
+
+                RuleTable ruleTable = autoTiler.getRuleTable(familyId);
+                if (ruleTable.isCrossFamily()) {
+                    calculateCrossFamilyRow(bitplaneStore, bitplane, familyId, ruleTable, y, masks);
+                } else {
+                    calculateRow(bitplane, ruleTable, y, masks);
+                }
+                for (int word = 0; word < bitplane.getWordsPerRow(); word++) {
+                    for (long bits = bitplane.getWord(y, word); bits != 0L; bits &= bits - 1) {
+                        int x = word << 6 | Long.numberOfTrailingZeros(bits);
+                        tileRow[x] = TileId.pack(familyId, masks[x]);
+                    }
+                }
+            }
+            tileGrid.writeRow(y, tileRow, 0);
+        }
+    }
+
+    /**
+     * Calculates the bitmasks of the cells of a row that belong to a family whose rules name other families, from
+     * the family of every neighbor.
+     */
+    private void calculateCrossFamilyRow(BitplaneStore bitplaneStore, FamilyBitplane bitplane, int familyId,
+                                         RuleTable ruleTable, int y, int[] masks) {
+        int northY = autoTiler.isYUp() ? y + 1 : y - 1;
+        int southY = autoTiler.isYUp() ? y - 1 : y + 1;
+        for (int word = 0; word < bitplane.getWordsPerRow(); word++) {
+            for (long bits = bitplane.getWord(y, word); bits != 0L; bits &= bits - 1) {
+                int x = word << 6 | Long.numberOfTrailingZeros(bits);
+                masks[x] = ruleTable.getTile(familyId,
+                        bitplaneStore.getFamilyId(x, northY), bitplaneStore.getFamilyId(x, southY),
+                        bitplaneStore.getFamilyId(x - 1, y), bitplaneStore.getFamilyId(x + 1, y),
+                        bitplaneStore.getFamilyId(x - 1, northY), bitplaneStore.getFamilyId(x + 1, northY),
+                        bitplaneStore.getFamilyId(x - 1, southY), bitplaneStore.getFamilyId(x + 1, southY));
+            }
+        }
+    }
+
+    /**
+     * Moves every cell one bit towards higher X, so each bit holds its west neighbor.
+     */
+    private static long shiftWest(long word, long previousWord) {
+        return word << 1 | previousWord >>> 63;
+    }
+
+    /**
+     * Moves every cell one bit towards lower X, so each bit holds its east neighbor.
+     */
+    private static long shiftEast(long word, long nextWord) {
+        return word >>> 1 | nextWord << 63;
+    }
+}
@@ -1,19 +1,18 @@
 package com.forgestorm.autotile;
 
-import java.util.List;
+import lombok.Getter;
 
 /**
  * The Bitmask4Bit class provides an implementation of tile bitmasking using the 4-bit variant. This class is designed
  * to be used in conjunction with an {@link AutoTiler} object and a {@link TileGetterSetter} object to automatically
  * select and place tiles in a 2D or 3D game environment.
  * <p>
- * The `initAutoTile` method initializes an auto-tile at the specified coordinates, using the given stripped tile name
- * and game world location. This method calculates the bitmask for the auto-tile using the `calculateBitmask` method,
- * sets the tile at the specified location, and updates the surrounding tiles as necessary.
+ * Placing tiles is left to the {@link AutoTiler}, which calls `calculateBitmask` for each tile it places and for
+ * the neighbors around it, then writes the resulting tile IDs to the map.
  * <p>
  * The `calculateBitmask` method calculates the bitmask for the auto-tile at the specified coordinates, using the given
- * stripped tile name and optional flag to populate a list of neighboring auto-tiles. This method performs a directional
- * check on the surrounding tiles and calculates the bitmask value using the 4-bit bitmasking calculation.
+ * family ID. This method performs a directional
+ * check on the surrounding tiles and looks the bitmask value up in the {@link RuleTable} of the family.
  *
  * @author unenergizer
  * @see TileBitmasking
@@ -25,35 +24,60 @@ class Bitmask4Bit implements TileBitmasking {
      * The {@link AutoTiler} object used by the bitmasking implementation.
      */
     private final AutoTiler autoTiler;
+    /**
+     * The {@link RuleTable} that turns the matching neighbors into a tile. Its tiles must not depend on corners.
+     */
+    @Getter
+    private final RuleTable ruleTable;
 
     /**
      * Constructs a new {@link Bitmask4Bit} object with the specified {@link AutoTiler}
-     * and {@link TileGetterSetter} objects.
+     * and {@link RuleTable} objects.
      *
      * @param autoTiler the {@link AutoTiler} object to be used by the bitmasking implementation
+     * @param ruleTable the {@link RuleTable} of the family, {@link RuleTable#TYPE_4} for the built-in tiles
      */
-    public Bitmask4Bit(AutoTiler autoTiler) {
+    public Bitmask4Bit(AutoTiler autoTiler, RuleTable ruleTable) {
         this.autoTiler = autoTiler;
+        this.ruleTable = ruleTable;
     }
 
     @Override
-    public int calculateBitmask(String strippedTileName, int x, int y, boolean populateList, List<TileLocations> locationUpdateList) {
+    public int calculateBitmask(int familyId, int x, int y) {
+        if (ruleTable.isCrossFamily()) {
+            boolean yUp = autoTiler.isYUp();
+            return ruleTable.getTile(familyId,
+                    autoTiler.readFamilyId(TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, yUp)),
+                    TileId.EMPTY, TileId.EMPTY, TileId.EMPTY, TileId.EMPTY);
+        }
+
         // Directional check
-        boolean northTile = autoTiler.compareTile(strippedTileName, TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, autoTiler.isYUp()));
-        boolean westTile = autoTiler.compareTile(strippedTileName, TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, autoTiler.isYUp()));
-        boolean eastTile = autoTiler.compareTile(strippedTileName, TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, autoTiler.isYUp()));
-        boolean southTile = autoTiler.compareTile(strippedTileName, TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, autoTiler.isYUp()));
-
-        // If true, these tile locations will need to be updated
-        if (northTile && populateList) locationUpdateList.add(TileLocations.NORTH);
-        if (westTile && populateList) locationUpdateList.add(TileLocations.WEST);
-        if (eastTile && populateList) locationUpdateList.add(TileLocations.EAST);
-        if (southTile && populateList) locationUpdateList.add(TileLocations.SOUTH);
-
-        // Perform 4 bit Bitmasking calculation
-        return autoTiler.boolToInt(northTile) // 1 * northTile
-                + 2 * autoTiler.boolToInt(westTile)
-                + 4 * autoTiler.boolToInt(eastTile)
-                + 8 * autoTiler.boolToInt(southTile);
+        boolean northTile = autoTiler.compareTile(familyId, TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, autoTiler.isYUp()));
+        boolean westTile = autoTiler.compareTile(familyId, TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, autoTiler.isYUp()));
+        boolean eastTile = autoTiler.compareTile(familyId, TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, autoTiler.isYUp()));
+        boolean southTile = autoTiler.compareTile(familyId, TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, autoTiler.isYUp()));
+
+        return calculateBitmask(northTile, southTile, westTile, eastTile, false, false, false, false);
+    }
+
+    @Override
+    public int calculateBitmask(boolean northTile, boolean southTile, boolean westTile, boolean eastTile,
+                                boolean northWestTile, boolean northEastTile, boolean southWestTile, boolean southEastTile) {
+        // Corners are ignored
+        return ruleTable.getTile((northTile ? RuleTable.NORTH : 0)
+                | (westTile ? RuleTable.WEST : 0)
+                | (eastTile ? RuleTable.EAST : 0)
+                | (southTile ? RuleTable.SOUTH : 0));
+    }
+
+    @Override
+    public int calculateBitmask(int familyId, int northFamily, int southFamily, int westFamily, int eastFamily,
+                                int northWestFamily, int northEastFamily, int southWestFamily, int southEastFamily) {
+        // Corners are ignored
+        return ruleTable.getTile(familyId, northFamily, southFamily, westFamily, eastFamily,
+                TileId.EMPTY, TileId.EMPTY, TileId.EMPTY, TileId.EMPTY);
     }
 }
@@ -1,19 +1,18 @@
 package com.forgestorm.autotile;
 
-import java.util.List;
+import lombok.Getter;
 
 /**
  * The {@link Bitmask8Bit} class provides an implementation of tile bitmasking using the 8-bit variant. This class is designed
  * to be used in conjunction with an {@link AutoTiler} object and a {@link TileGetterSetter} object to automatically
  * select and place tiles in a 2D or 3D game environment.
  * <p>
- * The `initAutoTile` method initializes an auto-tile at the specified coordinates, using the given stripped tile name
- * and game world location. This method calculates the bitmask for the auto-tile using the `calculateBitmask` method,
- * sets the tile at the specified location, and updates the surrounding tiles as necessary.
+ * Placing tiles is left to the {@link AutoTiler}, which calls `calculateBitmask` for each tile it places and for
+ * the neighbors around it, then writes the resulting tile IDs to the map.
  * <p>
  * The `calculateBitmask` method calculates the bitmask for the auto-tile at the specified coordinates, using the given
- * stripped tile name and optional flag to populate a list of neighboring auto-tiles. This method performs a directional
- * check on the surrounding tiles and calculates the bitmask value using the 8-bit bitmasking calculation.
+ * family ID. This method performs a directional
+ * check on the surrounding tiles and looks the bitmask value up in the {@link RuleTable} of the family.
  *
  * @author unenergizer
  * @see TileBitmasking
@@ -25,47 +24,72 @@ class Bitmask8Bit implements TileBitmasking {
      * The {@link AutoTiler} object used by the bitmasking implementation.
      */
     private final AutoTiler autoTiler;
+    /**
+     * The {@link RuleTable} that turns the matching neighbors into a tile.
+     */
+    @Getter
+    private final RuleTable ruleTable;
 
     /**
      * Constructs a new {@link Bitmask8Bit} object with the specified {@link AutoTiler}
-     * and {@link TileGetterSetter} objects.
+     * and {@link RuleTable} objects.
      *
      * @param autoTiler the {@link AutoTiler} object to be used by the bitmasking implementation
+     * @param ruleTable the {@link RuleTable} of the family, {@link RuleTable#TYPE_8} for the built-in tiles
      */
-    public Bitmask8Bit(AutoTiler autoTiler) {
+    public Bitmask8Bit(AutoTiler autoTiler, RuleTable ruleTable) {
         this.autoTiler = autoTiler;
+        this.ruleTable = ruleTable;
     }
 
     @Override
-    public int calculateBitmask(String strippedTileName, int x, int y, boolean populateList, List<TileLocations> locationUpdateList) {
-        // Directional Check, including corners, returns Boolean
-        boolean northTile = autoTiler.compareTile(strippedTileName, TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, autoTiler.isYUp()));
-        boolean southTile = autoTiler.compareTile(strippedTileName, TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, autoTiler.isYUp()));
-        boolean westTile = autoTiler.compareTile(strippedTileName, TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, autoTiler.isYUp()));
-        boolean eastTile = autoTiler.compareTile(strippedTileName, TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, autoTiler.isYUp()));
-        boolean northWestTile = autoTiler.compareTile(strippedTileName, TileLocations.NORTH_WEST.getX(x), TileLocations.NORTH_WEST.getY(y, autoTiler.isYUp())) && westTile && northTile;
-        boolean northEastTile = autoTiler.compareTile(strippedTileName, TileLocations.NORTH_EAST.getX(x), TileLocations.NORTH_EAST.getY(y, autoTiler.isYUp())) && northTile && eastTile;
-        boolean southWestTile = autoTiler.compareTile(strippedTileName, TileLocations.SOUTH_WEST.getX(x), TileLocations.SOUTH_WEST.getY(y, autoTiler.isYUp())) && southTile && westTile;
-        boolean southEastTile = autoTiler.compareTile(strippedTileName, TileLocations.SOUTH_EAST.getX(x), TileLocations.SOUTH_EAST.getY(y, autoTiler.isYUp())) && southTile && eastTile;
+    public int calculateBitmask(int familyId, int x, int y) {
+        if (ruleTable.isCrossFamily()) {
+            // Named families count at the corners too, so every neighbor is read
+            boolean yUp = autoTiler.isYUp();
+            return ruleTable.getTile(familyId,
+                    autoTiler.readFamilyId(TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.NORTH_WEST.getX(x), TileLocations.NORTH_WEST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.NORTH_EAST.getX(x), TileLocations.NORTH_EAST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.SOUTH_WEST.getX(x), TileLocations.SOUTH_WEST.getY(y, yUp)),
+                    autoTiler.readFamilyId(TileLocations.SOUTH_EAST.getX(x), TileLocations.SOUTH_EAST.getY(y, yUp)));
+        }
+
+        // Directional Check, including corners, returns Boolean. Corners are only read when both sides match.
+        boolean northTile = autoTiler.compareTile(familyId, TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, autoTiler.isYUp()));
+        boolean southTile = autoTiler.compareTile(familyId, TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, autoTiler.isYUp()));
+        boolean westTile = autoTiler.compareTile(familyId, TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, autoTiler.isYUp()));
+        boolean eastTile = autoTiler.compareTile(familyId, TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, autoTiler.isYUp()));
+        boolean northWestTile = westTile && northTile && autoTiler.compareTile(familyId, TileLocations.NORTH_WEST.getX(x), TileLocations.NORTH_WEST.getY(y, autoTiler.isYUp()));
+        boolean northEastTile = northTile && eastTile && autoTiler.compareTile(familyId, TileLocations.NORTH_EAST.getX(x), TileLocations.NORTH_EAST.getY(y, autoTiler.isYUp()));
+        boolean southWestTile = southTile && westTile && autoTiler.compareTile(familyId, TileLocations.SOUTH_WEST.getX(x), TileLocations.SOUTH_WEST.getY(y, autoTiler.isYUp()));
+        boolean southEastTile = southTile && eastTile && autoTiler.compareTile(familyId, TileLocations.SOUTH_EAST.getX(x), TileLocations.SOUTH_EAST.getY(y, autoTiler.isYUp()));
+
+        return calculateBitmask(northTile, southTile, westTile, eastTile, northWestTile, northEastTile, southWestTile, southEastTile);
+    }
 
-        // If true, these tile locations will need to be updated
-        if (northTile && populateList) locationUpdateList.add(TileLocations.NORTH);
-        if (southTile && populateList) locationUpdateList.add(TileLocations.SOUTH);
-        if (westTile && populateList) locationUpdateList.add(TileLocations.WEST);
-        if (eastTile && populateList) locationUpdateList.add(TileLocations.EAST);
-        if (northWestTile && populateList) locationUpdateList.add(TileLocations.NORTH_WEST);
-        if (northEastTile && populateList) locationUpdateList.add(TileLocations.NORTH_EAST);
-        if (southWestTile && populateList) locationUpdateList.add(TileLocations.SOUTH_WEST);
-        if (southEastTile && populateList) locationUpdateList.add(TileLocations.SOUTH_EAST);
+    @Override
+    public int calculateBitmask(boolean northTile, boolean southTile, boolean westTile, boolean eastTile,
+                                boolean northWestTile, boolean northEastTile, boolean southWestTile, boolean southEastTile) {
+        // Corners only count when both of their sides match
+        int neighbors = (northTile ? RuleTable.NORTH : 0)
+                | (westTile ? RuleTable.WEST : 0)
+                | (eastTile ? RuleTable.EAST : 0)
+                | (southTile ? RuleTable.SOUTH : 0);
+        if (northWestTile && northTile && westTile) neighbors |= RuleTable.NORTH_WEST;
+        if (northEastTile && northTile && eastTile) neighbors |= RuleTable.NORTH_EAST;
+        if (southWestTile && southTile && westTile) neighbors |= RuleTable.SOUTH_WEST;
+        if (southEastTile && southTile && eastTile) neighbors |= RuleTable.SOUTH_EAST;
+        return ruleTable.getTile(neighbors);
+    }
 
-        // 8 bit Bitmasking calculation using Directional check booleans values
-        return autoTiler.boolToInt(northWestTile) // 1 * northWestTile
-            + 2 * autoTiler.boolToInt(northTile)
-            + 4 * autoTiler.boolToInt(northEastTile)
-            + 8 * autoTiler.boolToInt(westTile)
-            + 16 * autoTiler.boolToInt(eastTile)
-            + 32 * autoTiler.boolToInt(southWestTile)
-            + 64 * autoTiler.boolToInt(southTile)
-            + 128 * autoTiler.boolToInt(southEastTile);
+    @Override
+    public int calculateBitmask(int familyId, int northFamily, int southFamily, int westFamily, int eastFamily,
+                                int northWestFamily, int northEastFamily, int southWestFamily, int southEastFamily) {
+        return ruleTable.getTile(familyId, northFamily, southFamily, westFamily, eastFamily,
+                northWestFamily, northEastFamily, southWestFamily, southEastFamily);
     }
 }
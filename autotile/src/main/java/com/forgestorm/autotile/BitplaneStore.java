@@ -0,0 +1,110 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+/**
+ * The {@link BitplaneStore} class keeps one {@link FamilyBitplane} per tile family for a bounded map. A cell belongs
+ * to at most one family, so setting a family clears the cell from every other bitplane.
+ *
+ * @author unenergizer
+ * @see BitboardBitmasking
+ */
+public class BitplaneStore {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    /**
+     * The bitplanes indexed by family ID. Entries are created the first time a family is set.
+     */
+    private FamilyBitplane[] bitplanes = new FamilyBitplane[16];
+
+    public BitplaneStore(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates a store holding the families of every cell in a grid.
+     *
+     * @param tileGrid The grid to read.
+     * @return A new bitplane store of the same size as the grid.
+     */
+    public static BitplaneStore fromGrid(TileGrid tileGrid) {
+        BitplaneStore bitplaneStore = new BitplaneStore(tileGrid.getWidth(), tileGrid.getHeight());
+        int[] row = new int[tileGrid.getWidth()];
+        for (int y = 0; y < tileGrid.getHeight(); y++) {
+            tileGrid.readRow(y, row, 0);
+            for (int x = 0; x < row.length; x++) {
+                int familyId = TileId.getFamilyId(row[x]);
+                if (familyId != TileId.EMPTY) bitplaneStore.getOrCreateBitplane(familyId).set(x, y, true);
+            }
+        }
+        return bitplaneStore;
+    }
+
+    /**
+     * Gets the bitplane of a family.
+     *
+     * @param familyId The family ID.
+     * @return The bitplane, or null if no cell was ever set to this family.
+     */
+    public FamilyBitplane getBitplane(int familyId) {
+        if (familyId <= 0 || familyId >= bitplanes.length) return null;
+        return bitplanes[familyId];
+    }
+
+    /**
+     * Gets the highest family ID that may have a bitplane, plus one.
+     *
+     * @return The bound to use when iterating family IDs.
+     */
+    public int getFamilyBound() {
+        return bitplanes.length;
+    }
+
+    /**
+     * Gets the family of a cell.
+     *
+     * @param x The X location of the map.
+     * @param y The Y location of the map.
+     * @return The family ID, or {@link TileId#EMPTY} if the cell is empty.
+     */
+    public int getFamilyId(int x, int y) {
+        for (int familyId = 1; familyId < bitplanes.length; familyId++) {
+            FamilyBitplane bitplane = bitplanes[familyId];
+            if (bitplane != null && bitplane.get(x, y)) return familyId;
+        }
+        return TileId.EMPTY;
+    }
+
+    /**
+     * Sets the family of a cell, removing it from its previous family.
+     *
+     * @param familyId The family ID, or {@link TileId#EMPTY} to clear the cell.
+     * @param x        The X location of the map.
+     * @param y        The Y location of the map.
+     */
+    public void setFamilyId(int familyId, int x, int y) {
+        for (int id = 1; id < bitplanes.length; id++) {
+            FamilyBitplane bitplane = bitplanes[id];
+            if (bitplane != null && id != familyId) bitplane.set(x, y, false);
+        }
+        if (familyId != TileId.EMPTY) getOrCreateBitplane(familyId).set(x, y, true);
+    }
+
+    private FamilyBitplane getOrCreateBitplane(int familyId) {
+        if (familyId >= bitplanes.length) {
+            FamilyBitplane[] newBitplanes = new FamilyBitplane[Math.max(bitplanes.length * 2, familyId + 1)];
+            System.arraycopy(bitplanes, 0, newBitplanes, 0, bitplanes.length);
+            bitplanes = newBitplanes;
+        }
+        FamilyBitplane bitplane = bitplanes[familyId];
+        if (bitplane == null) {
+            bitplane = new FamilyBitplane(width, height);
+            bitplanes[familyId] = bitplane;
+        }
+        return bitplane;
+    }
+}
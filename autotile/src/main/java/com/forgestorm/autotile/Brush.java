@@ -0,0 +1,249 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Brush} is a shape of tiles placed by a single {@link AutoTiler#autoTile(int, int, int, Brush)} call.
+ * Brushes are generated at runtime, as squares of any size, circles of any radius or stamps of any shape.
+ * <p>
+ * When a brush is created, its cells are split into interior cells, whose neighbors are all part of the brush, and
+ * edge cells. The ring of cells just outside the brush is collected as well. The bitmask of an interior cell is
+ * always the full bitmask, so it is never calculated, and the neighbors of an edge cell that are part of the brush
+ * are known up front. Only the neighbors outside the brush are read to calculate bitmasks when it is stamped, so a
+ * large brush costs bitmask work in proportion to its perimeter rather than its area.
+ * <p>
+ * Brushes are immutable. Square and circle brushes are cached, so asking for the same size twice returns the same
+ * brush.
+ *
+ * @author unenergizer
+ * @see BrushType
+ */
+public final class Brush {
+
+    /**
+     * The neighbors that decide a 4-bit bitmask. Cells with all of them inside the brush are interior cells.
+     */
+    private static final TileLocations[] LOCATIONS_4 = {
+            TileLocations.NORTH, TileLocations.WEST, TileLocations.EAST, TileLocations.SOUTH
+    };
+    /**
+     * The neighbors that decide an 8-bit bitmask.
+     */
+    private static final TileLocations[] LOCATIONS_8 = TileLocations.values();
+
+    private static final Map<Integer, Brush> squares = new ConcurrentHashMap<>();
+    private static final Map<Integer, Brush> circles = new ConcurrentHashMap<>();
+
+    /**
+     * A short description of the shape of the brush, such as {@code square 3}.
+     */
+    private final String name;
+    /**
+     * The number of cells in the brush.
+     */
+    @Getter
+    private final int cellCount;
+    /**
+     * The bounding box of the brush, as offsets from the location it is stamped at.
+     */
+    @Getter
+    private final int minX, minY, maxX, maxY;
+    /**
+     * The interior and edge cells for 4-bit auto tiles.
+     */
+    private final Outline outline4;
+    /**
+     * The interior and edge cells for 8-bit auto tiles.
+     */
+    private final Outline outline8;
+    /**
+     * The offsets of every cell touching the brush, including diagonally, that is not part of it.
+     */
+    final int[] ringX, ringY;
+
+    private Brush(String name, boolean[][] cells, int originX, int originY) {
+        this.name = name;
+        int height = cells.length;
+        int width = 0;
+        for (boolean[] row : cells) width = Math.max(width, row.length);
+
+        // Copy the stamp into a grid with a one cell margin, so neighbors can be tested without bounds checks
+        boolean[][] grid = new boolean[height + 2][width + 2];
+        int count = 0;
+        int cellMinX = Integer.MAX_VALUE, cellMinY = Integer.MAX_VALUE;
+        int cellMaxX = Integer.MIN_VALUE, cellMaxY = Integer.MIN_VALUE;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < cells[y].length; x++) {
+                if (!cells[y][x]) continue;
+                grid[y + 1][x + 1] = true;
+                count++;
+                cellMinX = Math.min(cellMinX, x - originX);
+                cellMinY = Math.min(cellMinY, y - originY);
+                cellMaxX = Math.max(cellMaxX, x - originX);
+                cellMaxY = Math.max(cellMaxY, y - originY);
+            }
+        }
+        if (count == 0) throw new IllegalArgumentException("A brush needs at least one cell.");
+
+        this.cellCount = count;
+        this.minX = cellMinX;
+        this.minY = cellMinY;
+        this.maxX = cellMaxX;
+        this.maxY = cellMaxY;
+        this.outline4 = new Outline(grid, originX, originY, count, LOCATIONS_4);
+        this.outline8 = new Outline(grid, originX, originY, count, LOCATIONS_8);
+
+        int ringCount = 0;
+        for (int y = 0; y < height + 2; y++) {
+            for (int x = 0; x < width + 2; x++) {
+                if (isRing(grid, x, y)) ringCount++;
+            }
+        }
+        ringX = new int[ringCount];
+        ringY = new int[ringCount];
+        int ring = 0;
+        for (int y = 0; y < height + 2; y++) {
+            for (int x = 0; x < width + 2; x++) {
+                if (!isRing(grid, x, y)) continue;
+                ringX[ring] = x - 1 - originX;
+                ringY[ring] = y - 1 - originY;
+                ring++;
+            }
+        }
+    }
+
+    /**
+     * Gets a square brush. The stamped location is the corner of the square with the lowest X and Y.
+     *
+     * @param size The width and height of the square, in tiles.
+     * @return The square brush.
+     */
+    public static Brush square(int size) {
+        if (size <= 0) throw new IllegalArgumentException("The size of a brush must be positive.");
+        Brush brush = squares.get(size);
+        if (brush == null) {
+            boolean[][] cells = new boolean[size][size];
+            for (boolean[] row : cells) Arrays.fill(row, true);
+            brush = new Brush("square " + size, cells, 0, 0);
+            squares.put(size, brush);
+        }
+        return brush;
+    }
+
+    /**
+     * Gets a circle brush. The stamped location is the center of the circle.
+     *
+     * @param radius The radius of the circle, in tiles. A radius of 0 is a single tile.
+     * @return The circle brush.
+     */
+    public static Brush circle(int radius) {
+        if (radius < 0) throw new IllegalArgumentException("The radius of a brush can not be negative.");
+        Brush brush = circles.get(radius);
+        if (brush == null) {
+            int size = radius * 2 + 1;
+            boolean[][] cells = new boolean[size][size];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int dx = x - radius;
+                    int dy = y - radius;
+                    // Cells whose center is within half a tile of the radius
+                    cells[y][x] = dx * dx + dy * dy <= radius * radius + radius;
+                }
+            }
+            brush = new Brush("circle " + radius, cells, radius, radius);
+            circles.put(radius, brush);
+        }
+        return brush;
+    }
+
+    /**
+     * Creates a brush of any shape. The stamped location is the first cell of the first row,
+     * and each row of the stamp is the next row of the map.
+     *
+     * @param cells The cells of the brush, indexed by row and then by column. Rows may differ in length.
+     * @return The new brush.
+     * @throws IllegalArgumentException if the stamp has no cells
+     */
+    public static Brush stamp(boolean[][] cells) {
+        return new Brush("stamp", cells, 0, 0);
+    }
+
+    /**
+     * Gets the interior and edge cells of the brush for a {@link BitmaskingType}.
+     */
+    Outline getOutline(BitmaskingType bitmaskingType) {
+        return bitmaskingType == BitmaskingType.TYPE_4 ? outline4 : outline8;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static boolean isRing(boolean[][] grid, int x, int y) {
+        if (isCell(grid, x, y)) return false;
+        for (TileLocations tileLocation : LOCATIONS_8) {
+            if (isCell(grid, tileLocation.getX(x), tileLocation.getY(y, false))) return true;
+        }
+        return false;
+    }
+
+    private static boolean isCell(boolean[][] grid, int x, int y) {
+        return y >= 0 && y < grid.length && x >= 0 && x < grid[y].length && grid[y][x];
+    }
+
+    /**
+     * The cells of a brush split into interior and edge cells, for the neighbors of one {@link BitmaskingType}.
+     */
+    static final class Outline {
+        /**
+         * The offsets of the cells whose neighbors are all part of the brush.
+         */
+        final int[] interiorX, interiorY;
+        /**
+         * The offsets of the cells with at least one neighbor outside the brush.
+         */
+        final int[] edgeX, edgeY;
+
+        private Outline(boolean[][] grid, int originX, int originY, int count, TileLocations[] locations) {
+            int edgeCount = 0;
+            for (int y = 0; y < grid.length; y++) {
+                for (int x = 0; x < grid[y].length; x++) {
+                    if (grid[y][x] && !isInterior(grid, x, y, locations)) edgeCount++;
+                }
+            }
+            interiorX = new int[count - edgeCount];
+            interiorY = new int[count - edgeCount];
+            edgeX = new int[edgeCount];
+            edgeY = new int[edgeCount];
+
+            int interior = 0;
+            int edge = 0;
+            for (int y = 0; y < grid.length; y++) {
+                for (int x = 0; x < grid[y].length; x++) {
+                    if (!grid[y][x]) continue;
+                    if (isInterior(grid, x, y, locations)) {
+                        interiorX[interior] = x - 1 - originX;
+                        interiorY[interior] = y - 1 - originY;
+                        interior++;
+                        continue;
+                    }
+                    edgeX[edge] = x - 1 - originX;
+                    edgeY[edge] = y - 1 - originY;
+                    edge++;
+                }
+            }
+        }
+
+        private static boolean isInterior(boolean[][] grid, int x, int y, TileLocations[] locations) {
+            for (TileLocations tileLocation : locations) {
+                if (!isCell(grid, tileLocation.getX(x), tileLocation.getY(y, false))) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link CellSet} class is a sparse set of cells, stored as bitmaps of 64 by 64 cell blocks. Each block row is
+ * a single long, and blocks are kept in a {@link LongMap}, so a set of a few hundred thousand clustered cells takes
+ * a few kilobytes and adding or testing a cell is a bit operation. The block used last is cached, as cells are
+ * usually visited in runs.
+ *
+ * @author unenergizer
+ */
+class CellSet {
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    /**
+     * The block bitmaps, keyed by {@link ChunkedTileMap#chunkKey(int, int)} and indexed by the row in the block.
+     */
+    private final LongMap<long[]> blocks = new LongMap<>();
+    private long lastBlockKey;
+    private long[] lastBlock;
+    private int size;
+
+    /**
+     * Adds a cell to the set.
+     *
+     * @return True if the cell was added, false if it was already in the set.
+     */
+    boolean add(int x, int y) {
+        long[] block = findBlock(x, y);
+        if (block == null) {
+            block = new long[1 << BLOCK_SHIFT];
+            blocks.put(lastBlockKey, block);
+            lastBlock = block;
+        }
+        long bit = 1L << (x & BLOCK_MASK);
+        int row = y & BLOCK_MASK;
+        if ((block[row] & bit) != 0) return false;
+        block[row] |= bit;
+        size++;
+        return true;
+    }
+
+    boolean contains(int x, int y) {
+        long[] block = findBlock(x, y);
+        return block != null && (block[y & BLOCK_MASK] & 1L << (x & BLOCK_MASK)) != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        blocks.clear();
+        lastBlock = null;
+        size = 0;
+    }
+
+    /**
+     * Finds the block of a cell. If there is none, the key of the block is still remembered for {@link #add(int, int)}.
+     */
+    private long[] findBlock(int x, int y) {
+        long blockKey = ChunkedTileMap.chunkKey(x >> BLOCK_SHIFT, y >> BLOCK_SHIFT);
+        if (lastBlock != null && blockKey == lastBlockKey) return lastBlock;
+        lastBlockKey = blockKey;
+        lastBlock = blocks.get(blockKey);
+        return lastBlock;
+    }
+}
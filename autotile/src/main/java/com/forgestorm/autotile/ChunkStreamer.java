@@ -0,0 +1,396 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The {@link ChunkStreamer} class streams the chunks of a {@link ChunkedTileMap} in the background, for open worlds
+ * that are loaded from disk or generated as the player moves.
+ * <p>
+ * A requested chunk goes through these stages:
+ * <ol>
+ *     <li>A worker thread loads the families of the chunk from the {@link ChunkSource}.</li>
+ *     <li>The same worker calculates the bitmask of every cell of the chunk. Cells outside the chunk are not known
+ *     yet, so they are treated as empty.</li>
+ *     <li>The finished chunk is queued, and installed in the map the next time the main thread calls
+ *     {@link #publish(int)}.</li>
+ *     <li>When a chunk is installed, its border cells and the facing border cells of the chunks around it are
+ *     resolved against each other. This is the only part done on the main thread, and it only touches the ring of
+ *     cells where the chunks meet.</li>
+ * </ol>
+ * The {@link ChunkListener} is told about every chunk installed or changed by border resolution, so a renderer
+ * can rebuild them.
+ * <p>
+ * Workers run on virtual threads when the JVM supports them, and on a small pool of daemon threads otherwise.
+ * The map is only touched on the main thread, so it does not need to be thread safe. Workers read the registered
+ * families of the {@link AutoTiler}, which is safe from any thread, and use the orientation it had when the chunk was
+ * requested. Every method of this class must be called from the main thread.
+ * <p>
+ * This class uses {@code java.util.concurrent} and is not part of the GWT module.
+ *
+ * @author unenergizer
+ * @see ChunkedTileMap
+ */
+public class ChunkStreamer implements Closeable {
+
+    /**
+     * The {@link AutoTiler} that provides family types and the coordinate system orientation.
+     */
+    private final AutoTiler autoTiler;
+    /**
+     * The map the chunks are installed in.
+     */
+    private final ChunkedTileMap chunkedTileMap;
+    private final ChunkSource chunkSource;
+    private final ExecutorService executorService;
+    /**
+     * True if the executor was created by this streamer, and must be shut down with it.
+     */
+    private final boolean ownsExecutor;
+    /**
+     * Chunks finished by the workers, waiting for the main thread.
+     */
+    private final Queue<LoadedChunk> loadedChunks = new ConcurrentLinkedQueue<>();
+    /**
+     * The request number of every chunk being loaded, keyed by {@link ChunkedTileMap#chunkKey(int, int)}. A loaded
+     * chunk is only installed if it is still the latest request for its location.
+     */
+    private final LongIntMap pendingChunks = new LongIntMap();
+    private int requestCount = 0;
+    /**
+     * The chunks changed while publishing a chunk. There are at most nine: the chunk and its neighbors.
+     */
+    private final long[] changedChunks = new long[9];
+    private int changedChunkCount;
+
+    /**
+     * Told about every chunk installed or changed by {@link #publish(int)}. Can be null.
+     */
+    @Getter
+    @Setter
+    private ChunkListener chunkListener;
+
+    public ChunkStreamer(AutoTiler autoTiler, ChunkedTileMap chunkedTileMap, ChunkSource chunkSource) {
+        this(autoTiler, chunkedTileMap, chunkSource, createWorkerPool(), true);
+    }
+
+    /**
+     * @param executorService The executor the workers run on. It is not shut down by {@link #close()}.
+     */
+    public ChunkStreamer(AutoTiler autoTiler, ChunkedTileMap chunkedTileMap, ChunkSource chunkSource, ExecutorService executorService) {
+        this(autoTiler, chunkedTileMap, chunkSource, executorService, false);
+    }
+
+    private ChunkStreamer(AutoTiler autoTiler, ChunkedTileMap chunkedTileMap, ChunkSource chunkSource,
+                          ExecutorService executorService, boolean ownsExecutor) {
+        this.autoTiler = autoTiler;
+        this.chunkedTileMap = chunkedTileMap;
+        this.chunkSource = chunkSource;
+        this.executorService = executorService;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts loading a chunk in the background.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     * @return True if the chunk will be loaded, false if it is already loaded or being loaded.
+     * @throws RejectedExecutionException if the executor rejects the worker. The chunk is not left pending, so it
+     *                                    can be requested again.
+     */
+    public boolean requestChunk(int chunkX, int chunkY) {
+        long chunkKey = ChunkedTileMap.chunkKey(chunkX, chunkY);
+        if (pendingChunks.containsKey(chunkKey) || chunkedTileMap.getChunk(chunkX, chunkY) != null) return false;
+
+        int request = ++requestCount;
+        boolean yUp = autoTiler.isYUp();
+        executorService.execute(() -> loadedChunks.add(loadChunk(chunkX, chunkY, request, yUp)));
+        // Only registered once the worker is accepted. Loaded chunks are not installed before the next publish.
+        pendingChunks.put(chunkKey, request);
+        return true;
+    }
+
+    /**
+     * Removes a chunk from the map, or cancels it if it is still being loaded. The border cells of the chunks
+     * around it keep their bitmasks.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     */
+    public void unloadChunk(int chunkX, int chunkY) {
+        pendingChunks.remove(ChunkedTileMap.chunkKey(chunkX, chunkY));
+        chunkedTileMap.removeChunk(chunkX, chunkY);
+    }
+
+    /**
+     * Installs chunks finished by the workers. Call this once per frame from the main thread.
+     *
+     * @param maxChunks The most chunks to install, to spread the work of a burst of chunks over several frames.
+     * @return The number of chunks installed.
+     * @throws UncheckedIOException if the {@link ChunkSource} failed to load a chunk
+     * @throws IllegalStateException if the {@link ChunkSource} threw an unchecked exception or returned a chunk
+     *                               of the wrong size. The chunk can be requested again.
+     */
+    public int publish(int maxChunks) {
+        int published = 0;
+        while (published < maxChunks) {
+            LoadedChunk loadedChunk = loadedChunks.poll();
+            if (loadedChunk == null) break;
+
+            // Skip chunks that were unloaded or requested again while they were loading
+            long chunkKey = ChunkedTileMap.chunkKey(loadedChunk.chunkX, loadedChunk.chunkY);
+            if (pendingChunks.get(chunkKey, 0) != loadedChunk.request) continue;
+            pendingChunks.remove(chunkKey);
+            if (loadedChunk.exception instanceof IOException) {
+                throw new UncheckedIOException((IOException) loadedChunk.exception);
+            }
+            if (loadedChunk.exception != null) {
+                throw new IllegalStateException("Chunk " + loadedChunk.chunkX + ", " + loadedChunk.chunkY
+                        + " could not be loaded.", loadedChunk.exception);
+            }
+            if (loadedChunk.tiles == null) continue; // Nothing at this location
+
+            chunkedTileMap.setChunk(loadedChunk.chunkX, loadedChunk.chunkY, loadedChunk.tiles);
+            changedChunkCount = 0;
+            markChanged(chunkKey);
+            resolveBorders(loadedChunk.chunkX, loadedChunk.chunkY);
+            if (chunkListener != null) {
+                for (int i = 0; i < changedChunkCount; i++) {
+                    long changedChunk = changedChunks[i];
+                    chunkListener.chunkChanged((int) (changedChunk >> 32), (int) changedChunk);
+                }
+            }
+            published++;
+        }
+        return published;
+    }
+
+    /**
+     * Gets the number of chunks requested but not installed yet.
+     *
+     * @return The number of chunks being loaded.
+     */
+    public int getPendingCount() {
+        return pendingChunks.size();
+    }
+
+    /**
+     * Stops the workers, if they were created by this streamer. Chunks still loading are dropped.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) executorService.shutdownNow();
+        pendingChunks.clear();
+        loadedChunks.clear();
+    }
+
+    /**
+     * Loads a chunk and calculates its bitmasks. Runs on a worker thread, and only touches the loaded families.
+     * Failures are handed to the main thread in the loaded chunk, so the chunk is never left pending.
+     */
+    private LoadedChunk loadChunk(int chunkX, int chunkY, int request, boolean yUp) {
+        try {
+            int[] families = chunkSource.loadFamilies(chunkX, chunkY);
+            if (families == null) return new LoadedChunk(chunkX, chunkY, request, null, null);
+            return new LoadedChunk(chunkX, chunkY, request, calculateTiles(families, yUp), null);
+        } catch (IOException | RuntimeException exception) {
+            return new LoadedChunk(chunkX, chunkY, request, null, exception);
+        }
+    }
+
+    /**
+     * Calculates the tiles of a loaded chunk. Cells outside the chunk are treated as empty.
+     */
+    private int[] calculateTiles(int[] families, boolean yUp) {
+        int chunkSize = chunkedTileMap.getChunkSize();
+        if (families.length != chunkSize * chunkSize) {
+            throw new IllegalStateException("The source returned " + families.length + " families instead of "
+                    + chunkSize * chunkSize + ".");
+        }
+
+        // Rows of families with an empty column on each side, so every cell has neighbors to read
+        int columns = chunkSize + 2;
+        int[] previousRow = new int[columns];
+        int[] currentRow = new int[columns];
+        int[] nextRow = new int[columns];
+        System.arraycopy(families, 0, currentRow, 1, chunkSize);
+
+        int[] tiles = new int[chunkSize * chunkSize];
+        for (int y = 0; y < chunkSize; y++) {
+            if (y + 1 < chunkSize) {
+                System.arraycopy(families, (y + 1) * chunkSize, nextRow, 1, chunkSize);
+            } else {
+                Arrays.fill(nextRow, TileId.EMPTY);
+            }
+            int[] northRow = yUp ? nextRow : previousRow;
+            int[] southRow = yUp ? previousRow : nextRow;
+
+            for (int i = 1; i < columns - 1; i++) {
+                int familyId = currentRow[i];
+                BitmaskingType bitmaskingType = autoTiler.getFamilyType(familyId);
+                int bitmask = bitmaskingType == null ? 0 : autoTiler.calculateBitmask(northRow, currentRow, southRow, i);
+                tiles[y * chunkSize + i - 1] = TileId.pack(familyId, bitmask);
+            }
+
+            int[] recycledRow = previousRow;
+            previousRow = currentRow;
+            currentRow = nextRow;
+            nextRow = recycledRow;
+        }
+        return tiles;
+    }
+
+    /**
+     * Resolves the border cells of a newly installed chunk, and the cells of the chunks around it that touch it.
+     */
+    private void resolveBorders(int chunkX, int chunkY) {
+        int chunkSize = chunkedTileMap.getChunkSize();
+        int minX = chunkX * chunkSize;
+        int minY = chunkY * chunkSize;
+        int maxX = minX + chunkSize - 1;
+        int maxY = minY + chunkSize - 1;
+
+        // The inner ring is the border of the chunk, the outer ring is the facing border of its neighbors
+        for (int ring = 0; ring <= 1; ring++) {
+            int ringMinX = minX - ring, ringMinY = minY - ring;
+            int ringMaxX = maxX + ring, ringMaxY = maxY + ring;
+            for (int x = ringMinX; x <= ringMaxX; x++) {
+                resolveCell(x, ringMinY);
+                resolveCell(x, ringMaxY);
+            }
+            for (int y = ringMinY + 1; y < ringMaxY; y++) {
+                resolveCell(ringMinX, y);
+                resolveCell(ringMaxX, y);
+            }
+        }
+    }
+
+    private void resolveCell(int x, int y) {
+        int tileId = chunkedTileMap.getTileId(x, y);
+        int familyId = TileId.getFamilyId(tileId);
+        if (autoTiler.getFamilyType(familyId) == null) return;
+
+        boolean yUp = autoTiler.isYUp();
+        TileBitmasking tileBitmasking = autoTiler.getTileBitmasking(familyId);
+        int bitmask;
+        if (tileBitmasking.getRuleTable().isCrossFamily()) {
+            bitmask = tileBitmasking.calculateBitmask(familyId,
+                    getFamilyId(TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, yUp)),
+                    getFamilyId(TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, yUp)),
+                    getFamilyId(TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, yUp)),
+                    getFamilyId(TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, yUp)),
+                    getFamilyId(TileLocations.NORTH_WEST.getX(x), TileLocations.NORTH_WEST.getY(y, yUp)),
+                    getFamilyId(TileLocations.NORTH_EAST.getX(x), TileLocations.NORTH_EAST.getY(y, yUp)),
+                    getFamilyId(TileLocations.SOUTH_WEST.getX(x), TileLocations.SOUTH_WEST.getY(y, yUp)),
+                    getFamilyId(TileLocations.SOUTH_EAST.getX(x), TileLocations.SOUTH_EAST.getY(y, yUp)));
+        } else {
+            bitmask = calculateBitmask(tileBitmasking, familyId, x, y, yUp);
+        }
+
+        int newTileId = TileId.pack(familyId, bitmask);
+        if (newTileId == tileId) return;
+        chunkedTileMap.setTileId(newTileId, x, y);
+        int chunkShift = chunkedTileMap.getChunkShift();
+        markChanged(ChunkedTileMap.chunkKey(x >> chunkShift, y >> chunkShift));
+    }
+
+    private int calculateBitmask(TileBitmasking tileBitmasking, int familyId, int x, int y, boolean yUp) {
+        boolean northTile = isFamily(familyId, TileLocations.NORTH.getX(x), TileLocations.NORTH.getY(y, yUp));
+        boolean southTile = isFamily(familyId, TileLocations.SOUTH.getX(x), TileLocations.SOUTH.getY(y, yUp));
+        boolean westTile = isFamily(familyId, TileLocations.WEST.getX(x), TileLocations.WEST.getY(y, yUp));
+        boolean eastTile = isFamily(familyId, TileLocations.EAST.getX(x), TileLocations.EAST.getY(y, yUp));
+        boolean northWestTile = isFamily(familyId, TileLocations.NORTH_WEST.getX(x), TileLocations.NORTH_WEST.getY(y, yUp));
+        boolean northEastTile = isFamily(familyId, TileLocations.NORTH_EAST.getX(x), TileLocations.NORTH_EAST.getY(y, yUp));
+        boolean southWestTile = isFamily(familyId, TileLocations.SOUTH_WEST.getX(x), TileLocations.SOUTH_WEST.getY(y, yUp));
+        boolean southEastTile = isFamily(familyId, TileLocations.SOUTH_EAST.getX(x), TileLocations.SOUTH_EAST.getY(y, yUp));
+        return tileBitmasking.calculateBitmask(northTile, southTile, westTile, eastTile,
+                northWestTile, northEastTile, southWestTile, southEastTile);
+    }
+
+    private boolean isFamily(int familyId, int x, int y) {
+        return getFamilyId(x, y) == familyId;
+    }
+
+    private int getFamilyId(int x, int y) {
+        return TileId.getFamilyId(chunkedTileMap.getTileId(x, y));
+    }
+
+    private void markChanged(long chunkKey) {
+        for (int i = 0; i < changedChunkCount; i++) {
+            if (changedChunks[i] == chunkKey) return;
+        }
+        changedChunks[changedChunkCount++] = chunkKey;
+    }
+
+    /**
+     * Creates the worker pool: virtual threads on JVMs that have them, daemon platform threads otherwise.
+     */
+    private static ExecutorService createWorkerPool() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "ChunkStreamer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Supplies the families of streamed chunks. Called from worker threads.
+     */
+    public interface ChunkSource {
+        /**
+         * Loads the families of a chunk.
+         *
+         * @param chunkX The X location of the chunk, in chunks.
+         * @param chunkY The Y location of the chunk, in chunks.
+         * @return The family ID of every cell of the chunk in row-major order, or null if there is no chunk here.
+         * @throws IOException if the chunk can not be loaded
+         */
+        int[] loadFamilies(int chunkX, int chunkY) throws IOException;
+    }
+
+    /**
+     * Told when chunks are installed or changed, so they can be rendered again. Called from the main thread.
+     */
+    public interface ChunkListener {
+        void chunkChanged(int chunkX, int chunkY);
+    }
+
+    /**
+     * A chunk finished by a worker.
+     */
+    private static final class LoadedChunk {
+        private final int chunkX, chunkY;
+        private final int request;
+        private final int[] tiles;
+        /**
+         * The {@link IOException} or unchecked exception the chunk failed with, or null.
+         */
+        private final Exception exception;
+
+        private LoadedChunk(int chunkX, int chunkY, int request, int[] tiles, Exception exception) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.request = request;
+            this.tiles = tiles;
+            this.exception = exception;
+        }
+    }
+}
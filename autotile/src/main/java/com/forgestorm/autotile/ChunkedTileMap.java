@@ -0,0 +1,186 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+/**
+ * The {@link ChunkedTileMap} class is a sparse, unbounded {@link IntTileGetterSetter}. The map is split into square
+ * chunks of packed tile IDs (see {@link TileId}), stored as primitive int arrays in a long keyed open addressing map.
+ * Chunks are created the first time a tile is set in them, so memory is proportional to the painted area, and
+ * negative coordinates are supported.
+ * <p>
+ * Looking up a tile is O(1) and does not box any keys. The last chunk accessed is remembered, so the neighbor
+ * lookups done by the {@link AutoTiler} usually skip the hash map entirely, including lookups that cross into
+ * the next chunk and back.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author unenergizer
+ */
+public class ChunkedTileMap implements IntTileGetterSetter {
+
+    /**
+     * The default chunk size is 32x32 tiles.
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 5;
+
+    /**
+     * The number of bits of a coordinate used inside a chunk.
+     */
+    @Getter
+    private final int chunkShift;
+    /**
+     * The width and height of a chunk in tiles.
+     */
+    @Getter
+    private final int chunkSize;
+    private final int chunkMask;
+    /**
+     * The chunks of the map, keyed by {@link #chunkKey(int, int)}.
+     */
+    private final LongMap<int[]> chunks = new LongMap<>();
+
+    private long lastChunkKey;
+    private int[] lastChunk;
+
+    public ChunkedTileMap() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Creates a map whose chunks are {@code 1 << chunkShift} tiles wide and high.
+     *
+     * @param chunkShift The number of bits of a coordinate used inside a chunk, from 1 to 15.
+     */
+    public ChunkedTileMap(int chunkShift) {
+        if (chunkShift < 1 || chunkShift > 15) throw new IllegalArgumentException("Chunk shift must be between 1 and 15.");
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.chunkMask = chunkSize - 1;
+    }
+
+    @Override
+    public int getTileId(int x, int y) {
+        int[] chunk = findChunk(x >> chunkShift, y >> chunkShift);
+        if (chunk == null) return TileId.EMPTY;
+        return chunk[localIndex(x, y)];
+    }
+
+    @Override
+    public void setTileId(int tileId, int x, int y) {
+        int chunkX = x >> chunkShift;
+        int chunkY = y >> chunkShift;
+        int[] chunk = findChunk(chunkX, chunkY);
+        if (chunk == null) {
+            // Clearing a tile never creates a chunk
+            if (tileId == TileId.EMPTY) return;
+            chunk = new int[chunkSize * chunkSize];
+            setChunk(chunkX, chunkY, chunk);
+        }
+        chunk[localIndex(x, y)] = tileId;
+    }
+
+    /**
+     * Gets the tiles of a chunk. The array is indexed by {@code localY * chunkSize + localX}
+     * and is the live storage of the chunk.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     * @return The tiles of the chunk, or null if the chunk does not exist.
+     */
+    public int[] getChunk(int chunkX, int chunkY) {
+        return findChunk(chunkX, chunkY);
+    }
+
+    /**
+     * Adds or replaces a chunk. The array is used as the live storage of the chunk.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     * @param tiles  The tiles of the chunk, {@code chunkSize * chunkSize} long.
+     */
+    public void setChunk(int chunkX, int chunkY, int[] tiles) {
+        if (tiles.length != chunkSize * chunkSize) throw new IllegalArgumentException("Chunk must hold " + chunkSize * chunkSize + " tiles.");
+        long chunkKey = chunkKey(chunkX, chunkY);
+        chunks.put(chunkKey, tiles);
+        lastChunkKey = chunkKey;
+        lastChunk = tiles;
+    }
+
+    /**
+     * Removes a chunk, freeing its memory.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     * @return The tiles of the removed chunk, or null if the chunk did not exist.
+     */
+    public int[] removeChunk(int chunkX, int chunkY) {
+        long chunkKey = chunkKey(chunkX, chunkY);
+        if (lastChunk != null && lastChunkKey == chunkKey) lastChunk = null;
+        return chunks.remove(chunkKey);
+    }
+
+    /**
+     * Gets the number of chunks currently stored.
+     *
+     * @return The number of chunks.
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Calls the visitor once for every chunk currently stored, in no particular order.
+     * Chunks must not be added or removed while visiting.
+     *
+     * @param chunkVisitor The visitor to call.
+     */
+    public void forEachChunk(ChunkVisitor chunkVisitor) {
+        for (int slot = 0; slot < chunks.getCapacity(); slot++) {
+            int[] chunk = chunks.getValueAt(slot);
+            if (chunk == null) continue;
+            long chunkKey = chunks.getKeyAt(slot);
+            chunkVisitor.visitChunk((int) (chunkKey >> 32), (int) chunkKey, chunk);
+        }
+    }
+
+    /**
+     * Combines chunk coordinates into a single hash map key.
+     *
+     * @param chunkX The X location of the chunk, in chunks.
+     * @param chunkY The Y location of the chunk, in chunks.
+     * @return The key of the chunk.
+     */
+    public static long chunkKey(int chunkX, int chunkY) {
+        return (long) chunkX << 32 | chunkY & 0xFFFFFFFFL;
+    }
+
+    private int[] findChunk(int chunkX, int chunkY) {
+        long chunkKey = chunkKey(chunkX, chunkY);
+        if (lastChunk != null && lastChunkKey == chunkKey) return lastChunk;
+        int[] chunk = chunks.get(chunkKey);
+        if (chunk != null) {
+            lastChunkKey = chunkKey;
+            lastChunk = chunk;
+        }
+        return chunk;
+    }
+
+    private int localIndex(int x, int y) {
+        return (y & chunkMask) << chunkShift | x & chunkMask;
+    }
+
+    /**
+     * Visits the chunks of a {@link ChunkedTileMap}.
+     */
+    public interface ChunkVisitor {
+
+        /**
+         * Called for a chunk of the map.
+         *
+         * @param chunkX The X location of the chunk, in chunks.
+         * @param chunkY The Y location of the chunk, in chunks.
+         * @param tiles  The live tiles of the chunk.
+         */
+        void visitChunk(int chunkX, int chunkY, int[] tiles);
+    }
+}
@@ -0,0 +1,264 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+
+/**
+ * The {@link EditJournal} records the tiles written by an {@link AutoTiler}, so edits can be undone and redone
+ * without keeping snapshots of the map. Attach it with {@link AutoTiler#setEditJournal(EditJournal)}.
+ * <p>
+ * Every auto tile, erase, fill or batch commit becomes one operation, stored as a packed int array of
+ * {@code x, y, before, after} deltas. Each cell appears at most once per operation, keeping the tile it had before
+ * the operation and the tile it had after it, and cells that ended up unchanged are dropped. Undoing an operation
+ * only writes the cells it touched.
+ * <p>
+ * Operations between {@link #beginStroke()} and {@link #endStroke()} are merged into a single operation, so a drag
+ * stroke painting over the same cells many times is undone in one step and stored once.
+ * <p>
+ * The journal keeps its operations within a memory budget. When a new operation goes over the budget, the oldest
+ * operations are forgotten first. The newest operation is always kept, even if it alone is over the budget.
+ * <p>
+ * A journal is meant for a single editing thread and is not thread safe.
+ *
+ * @author unenergizer
+ */
+public class EditJournal {
+
+    /**
+     * The default memory budget of a journal, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+    /**
+     * The number of ints stored for each cell: x, y, the tile before and the tile after.
+     */
+    private static final int STRIDE = 4;
+    /**
+     * The memory an operation takes besides its deltas, in bytes. Roughly the array header and the queue slot.
+     */
+    private static final int OPERATION_OVERHEAD = 24;
+    /**
+     * Index maps grown past this capacity by a large operation are replaced rather than cleared, so small
+     * operations after a large one do not pay for clearing it.
+     */
+    private static final int MAX_RETAINED_INDEX_CAPACITY = 4096;
+
+    /**
+     * The memory budget of the journal, in bytes.
+     */
+    @Getter
+    private final long maxBytes;
+    /**
+     * The memory taken by the undo and redo operations, in bytes.
+     */
+    @Getter
+    private long usedBytes;
+    private final ArrayDeque<int[]> undoOperations = new ArrayDeque<>();
+    private final ArrayDeque<int[]> redoOperations = new ArrayDeque<>();
+
+    /**
+     * The deltas of the operation being recorded.
+     */
+    private int[] deltas = new int[STRIDE * 16];
+    private int deltaLength;
+    /**
+     * The offset in {@link #deltas} of every cell of the operation being recorded, keyed by {@link TileBatch#cellKey(int, int)}.
+     */
+    private LongIntMap deltaOffsets = new LongIntMap();
+    /**
+     * True while a stroke is open, see {@link #beginStroke()}.
+     */
+    @Getter
+    private boolean stroke = false;
+
+    public EditJournal() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes The memory budget of the journal, in bytes.
+     */
+    public EditJournal(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("The memory budget must be positive.");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens a stroke. Until {@link #endStroke()} is called, every operation is merged into one.
+     *
+     * @throws IllegalStateException if a stroke is already open
+     */
+    public void beginStroke() {
+        if (stroke) throw new IllegalStateException("A stroke is already open.");
+        stroke = true;
+    }
+
+    /**
+     * Closes the open stroke, storing everything it changed as a single operation.
+     *
+     * @throws IllegalStateException if no stroke is open
+     */
+    public void endStroke() {
+        if (!stroke) throw new IllegalStateException("No stroke is open.");
+        stroke = false;
+        storeOperation();
+    }
+
+    /**
+     * @return True if there is an operation to undo.
+     */
+    public boolean canUndo() {
+        return !undoOperations.isEmpty();
+    }
+
+    /**
+     * @return True if there is an operation to redo.
+     */
+    public boolean canRedo() {
+        return !redoOperations.isEmpty();
+    }
+
+    /**
+     * @return The number of operations that can be undone.
+     */
+    public int getUndoCount() {
+        return undoOperations.size();
+    }
+
+    /**
+     * @return The number of operations that can be redone.
+     */
+    public int getRedoCount() {
+        return redoOperations.size();
+    }
+
+    /**
+     * Forgets every operation, including the one being recorded.
+     */
+    public void clear() {
+        undoOperations.clear();
+        redoOperations.clear();
+        usedBytes = 0;
+        resetOperation();
+    }
+
+    /**
+     * Records a tile written by the auto tiler.
+     *
+     * @param x      The X location of the tile.
+     * @param y      The Y location of the tile.
+     * @param before The packed tile ID the cell held before the write.
+     * @param after  The packed tile ID written.
+     */
+    void record(int x, int y, int before, int after) {
+        long cellKey = TileBatch.cellKey(x, y);
+        if (deltaOffsets.containsKey(cellKey)) {
+            // Keep the first before and the last after
+            deltas[deltaOffsets.get(cellKey, 0) + 3] = after;
+            return;
+        }
+        if (deltaLength + STRIDE > deltas.length) {
+            int[] newDeltas = new int[deltas.length * 2];
+            System.arraycopy(deltas, 0, newDeltas, 0, deltaLength);
+            deltas = newDeltas;
+        }
+        deltaOffsets.put(cellKey, deltaLength);
+        deltas[deltaLength++] = x;
+        deltas[deltaLength++] = y;
+        deltas[deltaLength++] = before;
+        deltas[deltaLength++] = after;
+    }
+
+    /**
+     * Ends an operation of the auto tiler. Inside a stroke, the operation stays open to be merged with the next one.
+     */
+    void endOperation() {
+        if (!stroke) storeOperation();
+    }
+
+    /**
+     * Undoes the newest operation.
+     *
+     * @param intTileGetterSetter The map to write the previous tiles to.
+     * @return True if an operation was undone, false if there was nothing to undo.
+     * @throws IllegalStateException if a stroke is open
+     */
+    boolean undo(IntTileGetterSetter intTileGetterSetter) {
+        if (stroke) throw new IllegalStateException("Can not undo while a stroke is open.");
+        int[] operation = undoOperations.pollLast();
+        if (operation == null) return false;
+
+        // Restore in reverse, as the operation was applied forward
+        for (int offset = operation.length - STRIDE; offset >= 0; offset -= STRIDE) {
+            intTileGetterSetter.setTileId(operation[offset + 2], operation[offset], operation[offset + 1]);
+        }
+        redoOperations.addLast(operation);
+        return true;
+    }
+
+    /**
+     * Redoes the newest undone operation.
+     *
+     * @param intTileGetterSetter The map to write the tiles to.
+     * @return True if an operation was redone, false if there was nothing to redo.
+     * @throws IllegalStateException if a stroke is open
+     */
+    boolean redo(IntTileGetterSetter intTileGetterSetter) {
+        if (stroke) throw new IllegalStateException("Can not redo while a stroke is open.");
+        int[] operation = redoOperations.pollLast();
+        if (operation == null) return false;
+
+        for (int offset = 0; offset < operation.length; offset += STRIDE) {
+            intTileGetterSetter.setTileId(operation[offset + 3], operation[offset], operation[offset + 1]);
+        }
+        undoOperations.addLast(operation);
+        return true;
+    }
+
+    /**
+     * Stores the operation being recorded, without the cells it left unchanged.
+     */
+    private void storeOperation() {
+        int changedLength = 0;
+        for (int offset = 0; offset < deltaLength; offset += STRIDE) {
+            if (deltas[offset + 2] != deltas[offset + 3]) changedLength += STRIDE;
+        }
+        if (changedLength == 0) {
+            resetOperation();
+            return;
+        }
+
+        int[] operation = new int[changedLength];
+        int operationLength = 0;
+        for (int offset = 0; offset < deltaLength; offset += STRIDE) {
+            if (deltas[offset + 2] == deltas[offset + 3]) continue;
+            System.arraycopy(deltas, offset, operation, operationLength, STRIDE);
+            operationLength += STRIDE;
+        }
+        resetOperation();
+
+        // A new edit makes the undone operations unreachable
+        for (int[] redoOperation : redoOperations) usedBytes -= getBytes(redoOperation);
+        redoOperations.clear();
+
+        undoOperations.addLast(operation);
+        usedBytes += getBytes(operation);
+        while (usedBytes > maxBytes && undoOperations.size() > 1) {
+            usedBytes -= getBytes(undoOperations.pollFirst());
+        }
+    }
+
+    private void resetOperation() {
+        deltaLength = 0;
+        if (deltaOffsets.getCapacity() > MAX_RETAINED_INDEX_CAPACITY) {
+            deltaOffsets = new LongIntMap();
+            deltas = new int[STRIDE * 16];
+        } else {
+            deltaOffsets.clear();
+        }
+    }
+
+    private static long getBytes(int[] operation) {
+        return (long) operation.length * Integer.BYTES + OPERATION_OVERHEAD;
+    }
+}
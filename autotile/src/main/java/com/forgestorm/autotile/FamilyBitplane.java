@@ -0,0 +1,77 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+/**
+ * The {@link FamilyBitplane} class marks which cells of a map belong to a single tile family, using one bit per
+ * cell. Each row is stored as {@link #getWordsPerRow()} longs, where bit {@code i} of word {@code k} is the cell at
+ * X {@code k * 64 + i}. Bits past the width of the map are always 0.
+ *
+ * @author unenergizer
+ * @see BitplaneStore
+ * @see BitboardBitmasking
+ */
+public class FamilyBitplane {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    /**
+     * The number of longs used to store one row.
+     */
+    @Getter
+    private final int wordsPerRow;
+    /**
+     * The bits of every row, indexed by {@code y * wordsPerRow + x / 64}.
+     */
+    private final long[] words;
+
+    public FamilyBitplane(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Checks if a cell belongs to the family. Cells outside the map never do.
+     *
+     * @param x The X location of the map.
+     * @param y The Y location of the map.
+     * @return True if the cell belongs to the family.
+     */
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return (words[y * wordsPerRow + (x >>> 6)] & 1L << x) != 0;
+    }
+
+    /**
+     * Adds a cell to, or removes a cell from, the family. Cells outside the map are ignored.
+     *
+     * @param x     The X location of the map.
+     * @param y     The Y location of the map.
+     * @param value True to add the cell, false to remove it.
+     */
+    public void set(int x, int y, boolean value) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        int index = y * wordsPerRow + (x >>> 6);
+        if (value) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Gets one word of a row. Rows and words outside the map are empty.
+     *
+     * @param y    The row of the map.
+     * @param word The index of the word in the row.
+     * @return The 64 bits of the word.
+     */
+    public long getWord(int y, int word) {
+        if (y < 0 || y >= height || word < 0 || word >= wordsPerRow) return 0L;
+        return words[y * wordsPerRow + word];
+    }
+}
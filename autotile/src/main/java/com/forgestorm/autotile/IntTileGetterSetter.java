@@ -0,0 +1,34 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link IntTileGetterSetter} interface is the primitive alternative to {@link TileGetterSetter}. Instead of tile
+ * names, tiles are represented by packed int tile IDs (see {@link TileId}), made of a family ID and a bitmask.
+ * <p>
+ * When an {@link AutoTiler} is created with an {@link IntTileGetterSetter}, neighbor comparisons are done on family
+ * IDs and new tiles are written as packed ints, so an auto-tile operation does not create any strings. Families are
+ * registered with {@link AutoTiler#registerFamily(BitmaskingType)}.
+ *
+ * @author unenergizer
+ * @see TileId
+ * @see TileGetterSetter
+ */
+public interface IntTileGetterSetter {
+
+    /**
+     * Gets a tile at a location.
+     *
+     * @param x The X location of a map.
+     * @param y The Y (or in case of 3D a Z) location of a map.
+     * @return The packed tile ID at this location, or {@link TileId#EMPTY} if there is no tile.
+     */
+    int getTileId(int x, int y);
+
+    /**
+     * Set a tile at a location. {@link TileId#EMPTY} clears the cell.
+     *
+     * @param tileId The packed tile ID to set.
+     * @param x      The X location of a map.
+     * @param y      The Y (or in case of 3D a Z) location of a map.
+     */
+    void setTileId(int tileId, int x, int y);
+}
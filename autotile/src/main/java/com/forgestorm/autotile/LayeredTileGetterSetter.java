@@ -0,0 +1,41 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link LayeredTileGetterSetter} interface is an {@link IntTileGetterSetter} for maps made of several layers,
+ * such as ground, walls and decoration. Tiles only connect to tiles of the same family on the same layer.
+ * <p>
+ * Implementations should resolve their layers once, rather than on every call, as
+ * {@link AutoTiler#reTileLayers(LayeredTileGetterSetter, int, int)} visits every layer for a single cell.
+ *
+ * @author unenergizer
+ * @see AutoTiler#reTileLayers(LayeredTileGetterSetter, int, int)
+ */
+public interface LayeredTileGetterSetter {
+
+    /**
+     * Gets the number of layers.
+     *
+     * @return The number of layers, indexed from 0.
+     */
+    int getLayerCount();
+
+    /**
+     * Gets a tile at a location of a layer.
+     *
+     * @param layer The layer to read, from 0 to {@link #getLayerCount()} - 1.
+     * @param x     The X location of a map.
+     * @param y     The Y (or in case of 3D a Z) location of a map.
+     * @return The packed tile ID at this location, or {@link TileId#EMPTY} if there is no tile.
+     */
+    int getTileId(int layer, int x, int y);
+
+    /**
+     * Set a tile at a location of a layer.
+     *
+     * @param layer  The layer to write, from 0 to {@link #getLayerCount()} - 1.
+     * @param tileId The packed tile ID to set.
+     * @param x      The X location of a map.
+     * @param y      The Y (or in case of 3D a Z) location of a map.
+     */
+    void setTileId(int layer, int tileId, int x, int y);
+}
@@ -0,0 +1,126 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link LongIntMap} class is a small open addressing hash map from primitive long keys to primitive int values.
+ * It uses linear probing and never boxes keys or values.
+ * <p>
+ * Entries can be iterated by slot: every slot from 0 to {@link #getCapacity()} - 1 for which {@link #isOccupied(int)}
+ * is true holds an entry.
+ *
+ * @author unenergizer
+ * @see LongMap
+ */
+class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] occupied;
+    private int size;
+
+    LongIntMap() {
+        this(16);
+    }
+
+    LongIntMap(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity * 2) capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        occupied = new boolean[capacity];
+    }
+
+    boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    int get(long key, int defaultValue) {
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = LongMap.hash(key) & mask;
+        for (; occupied[slot]; slot = slot + 1 & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        occupied[slot] = true;
+        if (++size * 2 > keys.length) resize(keys.length << 1);
+    }
+
+    void remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) return;
+        size--;
+
+        // Shift the following entries of the probe sequence back into the hole
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = hole + 1 & mask; occupied[next]; next = next + 1 & mask) {
+            int home = LongMap.hash(keys[next]) & mask;
+            if ((next - home & mask) >= (next - hole & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        occupied[hole] = false;
+    }
+
+    void clear() {
+        if (size == 0) return;
+        for (int slot = 0; slot < occupied.length; slot++) occupied[slot] = false;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return keys.length;
+    }
+
+    boolean isOccupied(int slot) {
+        return occupied[slot];
+    }
+
+    long getKeyAt(int slot) {
+        return keys[slot];
+    }
+
+    int getValueAt(int slot) {
+        return values[slot];
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        for (int slot = LongMap.hash(key) & mask; occupied[slot]; slot = slot + 1 & mask) {
+            if (keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldOccupied = occupied;
+        keys = new long[capacity];
+        values = new int[capacity];
+        occupied = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldOccupied[i]) continue;
+            int slot = LongMap.hash(oldKeys[i]) & mask;
+            while (occupied[slot]) slot = slot + 1 & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            occupied[slot] = true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link LongMap} class is a small open addressing hash map from primitive long keys to object values. It uses
+ * linear probing and backward shift deletion, so keys are never boxed and removing an entry leaves no tombstones.
+ * Null values are not allowed, because an empty slot is marked by a null value.
+ * <p>
+ * Entries can be iterated by slot: every slot from 0 to {@link #getCapacity()} - 1 whose {@link #getValueAt(int)}
+ * is not null holds an entry.
+ *
+ * @param <V> The type of the values.
+ * @author unenergizer
+ */
+class LongMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    LongMap() {
+        this(16);
+    }
+
+    LongMap(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity * 2) capacity <<= 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != null; slot = slot + 1 & mask) {
+            if (keys[slot] == key) return (V) values[slot];
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed.");
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; values[slot] != null; slot = slot + 1 & mask) {
+            if (keys[slot] == key) {
+                V previousValue = (V) values[slot];
+                values[slot] = value;
+                return previousValue;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) resize(keys.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) slot = slot + 1 & mask;
+        if (values[slot] == null) return null;
+
+        V previousValue = (V) values[slot];
+        size--;
+
+        // Shift the following entries of the probe sequence back into the hole
+        int hole = slot;
+        for (int next = hole + 1 & mask; values[next] != null; next = next + 1 & mask) {
+            int home = hash(keys[next]) & mask;
+            if ((next - home & mask) >= (next - hole & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        return previousValue;
+    }
+
+    void clear() {
+        for (int slot = 0; slot < values.length; slot++) values[slot] = null;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return keys.length;
+    }
+
+    long getKeyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (values[slot] != null) slot = slot + 1 & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Spreads the bits of a key, so nearby coordinates land in different slots.
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
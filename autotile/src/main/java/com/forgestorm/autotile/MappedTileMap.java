@@ -0,0 +1,384 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@link MappedTileMap} class is a binary map file of packed tile IDs, read and written through memory mapped
+ * buffers. Opening a map only maps the file, so even very large maps open instantly. Pages of the file are loaded
+ * by the operating system when they are first touched, and nothing is parsed or allocated per tile.
+ * <p>
+ * The map is stored auto tiled, so it does not need to be auto tiled again after loading. It implements
+ * {@link IntTileGetterSetter} and {@link TileGrid}, so the mapped file can be edited by an {@link AutoTiler} or
+ * processed by bulk operations directly. Cells outside the map read as {@link TileId#EMPTY} and writes to them are
+ * ignored.
+ * <p>
+ * The file is made of three parts, all little endian:
+ * <ul>
+ *     <li>A header of {@value #HEADER_BYTES} bytes: the magic number, the format version, the width and height of
+ *     the map in tiles, the chunk shift and the number of chunks stored.</li>
+ *     <li>A chunk index with one int per chunk of the map, in row-major order. It is the record number of the
+ *     chunk in the data part, or -1 if the chunk is empty and not stored.</li>
+ *     <li>The chunk records. Each is a square of {@code 1 << chunkShift} by {@code 1 << chunkShift} cells in
+ *     row-major order, and each cell is a fixed width 4 byte packed tile ID: the family ID in the upper 24 bits and
+ *     the bitmask in the lower 8 bits (see {@link TileId}).</li>
+ * </ul>
+ * Empty chunks are not stored. Writing a tile to an empty chunk appends a record to the file, which grows in steps
+ * so that appending is cheap. Allocating a chunk is not thread safe.
+ * <p>
+ * This class needs NIO and is not available on GWT.
+ *
+ * @author unenergizer
+ * @see TileId
+ */
+public class MappedTileMap implements IntTileGetterSetter, TileGrid, Closeable {
+
+    /**
+     * The magic number at the start of every map file, "JATM".
+     */
+    public static final int MAGIC = 0x4A41544D;
+    /**
+     * The version of the file format written by this class.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The default chunk shift, for chunks of 64 by 64 tiles.
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 6;
+    /**
+     * The size of the header, in bytes.
+     */
+    public static final int HEADER_BYTES = 64;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int WIDTH_OFFSET = 8;
+    private static final int HEIGHT_OFFSET = 12;
+    private static final int CHUNK_SHIFT_OFFSET = 16;
+    private static final int CHUNK_COUNT_OFFSET = 20;
+    private static final int NO_CHUNK = -1;
+    /**
+     * The largest part of the file mapped by a single buffer. Mapped buffers are limited to 2 GB.
+     */
+    private static final long SEGMENT_BYTES = 1L << 30;
+    /**
+     * The smallest number of chunk records the file grows by when a chunk is appended.
+     */
+    private static final int MIN_GROWTH_CHUNKS = 16;
+
+    private final FileChannel fileChannel;
+    private final boolean readOnly;
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final int chunkShift;
+    private final int chunkMask;
+    private final int chunksWide;
+    private final int chunkBytes;
+    /**
+     * The offset of the first chunk record in the file.
+     */
+    private final long dataOffset;
+    /**
+     * The number of chunk records mapped by each segment.
+     */
+    private final int segmentChunks;
+    /**
+     * The header and the chunk index.
+     */
+    private final MappedByteBuffer indexBuffer;
+    /**
+     * The chunk records, in segments of {@link #segmentChunks} records. Segments are mapped when first used.
+     */
+    private MappedByteBuffer[] segments;
+    /**
+     * The number of chunk records the file has room for.
+     */
+    private int chunkCapacity;
+
+    private MappedTileMap(FileChannel fileChannel, boolean readOnly, int width, int height, int chunkShift) throws IOException {
+        this.fileChannel = fileChannel;
+        this.readOnly = readOnly;
+        this.width = width;
+        this.height = height;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunksWide = (width + chunkMask) >> chunkShift;
+        int chunksHigh = (height + chunkMask) >> chunkShift;
+        this.chunkBytes = 4 << chunkShift * 2;
+        long indexBytes = HEADER_BYTES + (long) chunksWide * chunksHigh * 4;
+        this.dataOffset = (indexBytes + chunkBytes - 1) / chunkBytes * chunkBytes;
+        this.segmentChunks = (int) Math.max(1, SEGMENT_BYTES / chunkBytes);
+
+        FileChannel.MapMode mapMode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        this.indexBuffer = fileChannel.map(mapMode, 0, indexBytes);
+        this.indexBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.chunkCapacity = (int) Math.max(0, (fileChannel.size() - dataOffset) / chunkBytes);
+        this.segments = new MappedByteBuffer[getSegmentCount(chunkCapacity)];
+    }
+
+    /**
+     * Creates a new, empty map file. An existing file is overwritten.
+     *
+     * @param path   The path of the map file.
+     * @param width  The width of the map, in tiles.
+     * @param height The height of the map, in tiles.
+     * @return The map, open for reading and writing.
+     * @throws IOException if the file can not be created
+     */
+    public static MappedTileMap create(Path path, int width, int height) throws IOException {
+        return create(path, width, height, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Creates a new, empty map file. An existing file is overwritten.
+     *
+     * @param path       The path of the map file.
+     * @param width      The width of the map, in tiles.
+     * @param height     The height of the map, in tiles.
+     * @param chunkShift The chunk size as a power of two, from 1 to 10.
+     * @return The map, open for reading and writing.
+     * @throws IOException if the file can not be created
+     */
+    public static MappedTileMap create(Path path, int width, int height, int chunkShift) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("The map size must be positive.");
+        if (chunkShift < 1 || chunkShift > 10) throw new IllegalArgumentException("The chunk shift must be from 1 to 10.");
+
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedTileMap map = new MappedTileMap(fileChannel, false, width, height, chunkShift);
+            map.indexBuffer.putInt(MAGIC_OFFSET, MAGIC);
+            map.indexBuffer.putInt(VERSION_OFFSET, VERSION);
+            map.indexBuffer.putInt(WIDTH_OFFSET, width);
+            map.indexBuffer.putInt(HEIGHT_OFFSET, height);
+            map.indexBuffer.putInt(CHUNK_SHIFT_OFFSET, chunkShift);
+            map.indexBuffer.putInt(CHUNK_COUNT_OFFSET, 0);
+            for (int offset = HEADER_BYTES; offset < map.indexBuffer.capacity(); offset += 4) {
+                map.indexBuffer.putInt(offset, NO_CHUNK);
+            }
+            return map;
+        } catch (IOException | RuntimeException exception) {
+            fileChannel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Writes a {@link TileGrid} to a new map file. Empty chunks of the grid are not stored.
+     *
+     * @param path The path of the map file. An existing file is overwritten.
+     * @param grid The grid to write.
+     * @return The map, open for reading and writing.
+     * @throws IOException if the file can not be written
+     */
+    public static MappedTileMap copyOf(Path path, TileGrid grid) throws IOException {
+        MappedTileMap map = create(path, grid.getWidth(), grid.getHeight());
+        int[] row = new int[grid.getWidth()];
+        for (int y = 0; y < grid.getHeight(); y++) {
+            grid.readRow(y, row, 0);
+            map.writeRow(y, row, 0);
+        }
+        return map;
+    }
+
+    /**
+     * Opens an existing map file. Only the header and chunk index are read. The header is checked against the size
+     * of the file, so a truncated or corrupt file fails here rather than on a later read.
+     *
+     * @param path     The path of the map file.
+     * @param readOnly True to open the map for reading only.
+     * @return The map.
+     * @throws IOException if the file can not be opened or is not a map file
+     */
+    public static MappedTileMap open(Path path, boolean readOnly) throws IOException {
+        FileChannel fileChannel = readOnly
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (fileChannel.size() < HEADER_BYTES) throw new IOException("Not a map file: " + path);
+            MappedByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(MAGIC_OFFSET) != MAGIC) throw new IOException("Not a map file: " + path);
+            if (header.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("Unsupported map file version " + header.getInt(VERSION_OFFSET) + ": " + path);
+            }
+            int width = header.getInt(WIDTH_OFFSET);
+            int height = header.getInt(HEIGHT_OFFSET);
+            int chunkShift = header.getInt(CHUNK_SHIFT_OFFSET);
+            if (width <= 0 || height <= 0) throw new IOException("Invalid map size " + width + "x" + height + ": " + path);
+            if (chunkShift < 1 || chunkShift > 10) throw new IOException("Invalid chunk shift " + chunkShift + ": " + path);
+
+            // The header and chunk index are mapped as a whole, so the file must hold all of the index
+            long chunkMask = (1L << chunkShift) - 1;
+            long indexBytes = HEADER_BYTES + ((width + chunkMask) >> chunkShift) * ((height + chunkMask) >> chunkShift) * 4;
+            if (indexBytes > Integer.MAX_VALUE || fileChannel.size() < indexBytes) {
+                throw new IOException("The chunk index of the map file is truncated: " + path);
+            }
+            MappedTileMap map = new MappedTileMap(fileChannel, readOnly, width, height, chunkShift);
+            int chunkCount = header.getInt(CHUNK_COUNT_OFFSET);
+            if (chunkCount < 0) throw new IOException("Invalid chunk count " + chunkCount + ": " + path);
+            if (chunkCount > map.chunkCapacity) {
+                throw new IOException("The map file holds fewer chunks than its header says: " + path);
+            }
+
+            // Every index entry must name a stored record, so reads never go past the chunks of the file
+            for (int offset = HEADER_BYTES; offset < map.indexBuffer.capacity(); offset += 4) {
+                int record = map.indexBuffer.getInt(offset);
+                if (record != NO_CHUNK && (record < 0 || record >= chunkCount)) {
+                    throw new IOException("Invalid chunk record " + record + " at index "
+                            + (offset - HEADER_BYTES) / 4 + ": " + path);
+                }
+            }
+            return map;
+        } catch (IOException | RuntimeException exception) {
+            fileChannel.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public int getTileId(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return TileId.EMPTY;
+        int record = getChunkRecord(x, y);
+        if (record == NO_CHUNK) return TileId.EMPTY;
+        return getSegment(record).getInt(getCellOffset(record, x, y));
+    }
+
+    @Override
+    public void setTileId(int tileId, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        int record = getChunkRecord(x, y);
+        if (record == NO_CHUNK) {
+            // Empty chunks stay unstored until something is written to them
+            if (tileId == TileId.EMPTY) return;
+            record = appendChunk(x, y);
+        }
+        getSegment(record).putInt(getCellOffset(record, x, y), tileId);
+    }
+
+    @Override
+    public void readRow(int y, int[] destination, int offset) {
+        for (int x = 0; x < width; x++) destination[offset + x] = getTileId(x, y);
+    }
+
+    @Override
+    public void writeRow(int y, int[] source, int offset) {
+        for (int x = 0; x < width; x++) setTileId(source[offset + x], x, y);
+    }
+
+    /**
+     * Gets the number of chunks stored in the file.
+     *
+     * @return The number of chunks that are not empty.
+     */
+    public int getChunkCount() {
+        return indexBuffer.getInt(CHUNK_COUNT_OFFSET);
+    }
+
+    /**
+     * Writes every change to the storage device.
+     */
+    public void force() {
+        if (readOnly) return;
+        indexBuffer.force();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) segment.force();
+        }
+    }
+
+    /**
+     * Closes the file. Changes still reach the file, as mapped buffers are written back by the operating system.
+     *
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    private int getChunkRecord(int x, int y) {
+        int chunkIndex = (y >> chunkShift) * chunksWide + (x >> chunkShift);
+        return indexBuffer.getInt(HEADER_BYTES + chunkIndex * 4);
+    }
+
+    private int getCellOffset(int record, int x, int y) {
+        int cellIndex = (y & chunkMask) << chunkShift | x & chunkMask;
+        return (record % segmentChunks) * chunkBytes + cellIndex * 4;
+    }
+
+    private MappedByteBuffer getSegment(int record) {
+        MappedByteBuffer segment = segments[record / segmentChunks];
+        if (segment != null) return segment;
+        return mapSegment(record / segmentChunks);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int segmentIndex) {
+        MappedByteBuffer segment = segments[segmentIndex];
+        if (segment != null) return segment;
+
+        int firstRecord = segmentIndex * segmentChunks;
+        int recordCount = Math.min(segmentChunks, chunkCapacity - firstRecord);
+        FileChannel.MapMode mapMode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        try {
+            segment = fileChannel.map(mapMode, dataOffset + (long) firstRecord * chunkBytes, (long) recordCount * chunkBytes);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segments[segmentIndex] = segment;
+        return segment;
+    }
+
+    /**
+     * Stores a new, empty chunk for a cell, growing the file if there is no room for it.
+     *
+     * @return The record number of the new chunk.
+     */
+    private synchronized int appendChunk(int x, int y) {
+        if (readOnly) throw new ReadOnlyBufferException();
+        int record = indexBuffer.getInt(CHUNK_COUNT_OFFSET);
+        if (record >= chunkCapacity) growFile(record + 1);
+
+        // Records past the old end of the file read as zeros, which are empty tiles
+        indexBuffer.putInt(CHUNK_COUNT_OFFSET, record + 1);
+        int chunkIndex = (y >> chunkShift) * chunksWide + (x >> chunkShift);
+        indexBuffer.putInt(HEADER_BYTES + chunkIndex * 4, record);
+        return record;
+    }
+
+    private void growFile(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, Math.max(MIN_GROWTH_CHUNKS, chunkCapacity + chunkCapacity / 2));
+        try {
+            // Writing the last byte extends the file. The gap is filled with zeros.
+            long newSize = dataOffset + (long) newCapacity * chunkBytes;
+            fileChannel.write(ByteBuffer.wrap(new byte[1]), newSize - 1);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        // The last segment may have been mapped before it was full, so it is mapped again when next used
+        int oldSegmentCount = getSegmentCount(chunkCapacity);
+        MappedByteBuffer[] newSegments = new MappedByteBuffer[getSegmentCount(newCapacity)];
+        System.arraycopy(segments, 0, newSegments, 0, segments.length);
+        if (oldSegmentCount > 0) newSegments[oldSegmentCount - 1] = null;
+        segments = newSegments;
+        chunkCapacity = newCapacity;
+    }
+
+    private int getSegmentCount(int chunkCapacity) {
+        return (chunkCapacity + segmentChunks - 1) / segmentChunks;
+    }
+}
@@ -0,0 +1,133 @@
+package com.forgestorm.autotile;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@link ParallelReTiler} class recalculates the bitmask of every auto tile in a {@link TileGrid} using a
+ * {@link ForkJoinPool}. This is meant for maps whose families are known but whose bitmasks are not, such as maps
+ * imported from raw terrain data.
+ * <p>
+ * The grid is split into horizontal bands of rows. Each band reads its own rows plus one halo row above and below,
+ * and writes only its own rows, so bands never need to lock each other. Within a band the bitmasks are computed
+ * with the same three row sliding window as {@link AutoTiler#autoTileRegion(int, int, int, int, int)}.
+ * <p>
+ * This class uses {@code java.util.concurrent} and is not part of the GWT module.
+ *
+ * @author unenergizer
+ * @see TileGrid
+ */
+public class ParallelReTiler {
+
+    /**
+     * The smallest band worth handing to its own task.
+     */
+    private static final int MIN_BAND_ROWS = 16;
+
+    /**
+     * The {@link AutoTiler} that provides family types and the coordinate system orientation.
+     */
+    private final AutoTiler autoTiler;
+    /**
+     * The pool the bands are run on.
+     */
+    private final ForkJoinPool forkJoinPool;
+
+    public ParallelReTiler(AutoTiler autoTiler) {
+        this(autoTiler, ForkJoinPool.commonPool());
+    }
+
+    public ParallelReTiler(AutoTiler autoTiler, ForkJoinPool forkJoinPool) {
+        this.autoTiler = autoTiler;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Recalculates the bitmask of every auto tile in the grid. Tiles that are not auto tiles are left as they are.
+     * Cells outside the grid are treated as empty.
+     *
+     * @param tileGrid The grid to re-tile.
+     */
+    public void retileAll(TileGrid tileGrid) {
+        int height = tileGrid.getHeight();
+        if (height <= 0 || tileGrid.getWidth() <= 0) return;
+        int bandRows = Math.max(MIN_BAND_ROWS, height / (forkJoinPool.getParallelism() * 4));
+        forkJoinPool.invoke(new BandTask(tileGrid, 0, height, bandRows));
+    }
+
+    /**
+     * Re-tiles rows {@code startY} (inclusive) to {@code endY} (exclusive) of a grid.
+     */
+    private void retileBand(TileGrid tileGrid, int startY, int endY) {
+        int columns = tileGrid.getWidth() + 2;
+        int[] previousRow = new int[columns];
+        int[] currentRow = new int[columns];
+        int[] nextRow = new int[columns];
+        int[] tileRow = new int[columns];
+        loadFamilies(tileGrid, startY - 1, previousRow);
+        loadFamilies(tileGrid, startY, currentRow);
+
+        for (int rowY = startY; rowY < endY; rowY++) {
+            loadFamilies(tileGrid, rowY + 1, nextRow);
+            int[] northRow = autoTiler.isYUp() ? nextRow : previousRow;
+            int[] southRow = autoTiler.isYUp() ? previousRow : nextRow;
+
+            tileGrid.readRow(rowY, tileRow, 1);
+            for (int i = 1; i < columns - 1; i++) {
+                BitmaskingType bitmaskingType = autoTiler.getFamilyType(currentRow[i]);
+                if (bitmaskingType == null) continue;
+                int bitmask = autoTiler.calculateBitmask(northRow, currentRow, southRow, i);
+                tileRow[i] = TileId.pack(currentRow[i], bitmask);
+            }
+            tileGrid.writeRow(rowY, tileRow, 1);
+
+            // Slide the window down a row
+            int[] recycledRow = previousRow;
+            previousRow = currentRow;
+            currentRow = nextRow;
+            nextRow = recycledRow;
+        }
+    }
+
+    /**
+     * Loads the families of a row, leaving one empty cell on each side. Rows outside the grid are empty.
+     */
+    private void loadFamilies(TileGrid tileGrid, int rowY, int[] row) {
+        if (rowY < 0 || rowY >= tileGrid.getHeight()) {
+            for (int i = 0; i < row.length; i++) row[i] = TileId.EMPTY;
+            return;
+        }
+        tileGrid.readRow(rowY, row, 1);
+        row[0] = TileId.EMPTY;
+        row[row.length - 1] = TileId.EMPTY;
+        for (int i = 1; i < row.length - 1; i++) row[i] = TileId.getFamilyId(row[i]);
+    }
+
+    /**
+     * Splits a range of rows in half until it is small enough to re-tile directly.
+     */
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TileGrid tileGrid;
+        private final int startY, endY, bandRows;
+
+        private BandTask(TileGrid tileGrid, int startY, int endY, int bandRows) {
+            this.tileGrid = tileGrid;
+            this.startY = startY;
+            this.endY = endY;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (endY - startY <= bandRows) {
+                retileBand(tileGrid, startY, endY);
+                return;
+            }
+            int middleY = (startY + endY) >>> 1;
+            invokeAll(new BandTask(tileGrid, startY, middleY, bandRows), new BandTask(tileGrid, middleY, endY, bandRows));
+        }
+    }
+}
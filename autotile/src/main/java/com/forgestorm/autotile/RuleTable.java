@@ -0,0 +1,239 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+/**
+ * The {@link RuleTable} class is a compiled set of auto tile rules: the tile of every combination of neighbors.
+ * Resolving a tile is a single array read, however many rules the table was compiled from.
+ * <p>
+ * Each neighbor is either of the same family as the tile, of one of the other families named by the rules, or of any
+ * other family. Most tables name no other family, and are indexed by the neighbors of the same family, one bit per
+ * direction: {@link #NORTH_WEST} = 1, {@link #NORTH} = 2, {@link #NORTH_EAST} = 4, {@link #WEST} = 8,
+ * {@link #EAST} = 16, {@link #SOUTH_WEST} = 32, {@link #SOUTH} = 64 and {@link #SOUTH_EAST} = 128, so they hold 256
+ * tiles. A table that names other families has a digit per direction instead of a bit, with one value per named
+ * family, so it holds (2 + named families)^8 tiles, see {@link #isCrossFamily()}.
+ * <p>
+ * As with the built-in 8-bit variant, a corner only counts as the same family when both of its sides do. A corner of
+ * the same family without both of its sides is looked up as a neighbor of any other family.
+ * <p>
+ * Tables are compiled by {@link TileRules} and used for a family with {@link AutoTiler#registerRuleFamily(RuleTable)}.
+ * The built-in variants are tables themselves, {@link #TYPE_4} and {@link #TYPE_8}.
+ *
+ * @author unenergizer
+ * @see TileRules
+ */
+public final class RuleTable {
+
+    public static final int NORTH_WEST = 1;
+    public static final int NORTH = 2;
+    public static final int NORTH_EAST = 4;
+    public static final int WEST = 8;
+    public static final int EAST = 16;
+    public static final int SOUTH_WEST = 32;
+    public static final int SOUTH = 64;
+    public static final int SOUTH_EAST = 128;
+    /**
+     * The bits of the four sides.
+     */
+    static final int SIDES = NORTH | WEST | EAST | SOUTH;
+    /**
+     * The bits of the four corners.
+     */
+    static final int CORNERS = NORTH_WEST | NORTH_EAST | SOUTH_WEST | SOUTH_EAST;
+
+    /**
+     * The most other families the rules of one table can name. Each one multiplies the size of the table, up to
+     * 5^8 tiles for three families.
+     */
+    public static final int MAX_NEIGHBOR_FAMILIES = 3;
+    /**
+     * The digit of a neighbor of any other family.
+     */
+    static final int OTHER_DIGIT = 0;
+    /**
+     * The digit of a neighbor of the same family.
+     */
+    static final int SAME_DIGIT = 1;
+
+    /**
+     * The rules of the 4-bit variant, which supports 16 tiles and ignores corners.
+     */
+    public static final RuleTable TYPE_4 = compileType4();
+    /**
+     * The rules of the 8-bit variant, which supports 47 tiles. The tile of every index is the index itself.
+     */
+    public static final RuleTable TYPE_8 = compileType8();
+
+    /**
+     * The tile of every neighbor index, from 0 to {@link TileId#MASK}.
+     */
+    private final byte[] tiles;
+    /**
+     * The other families named by the rules. The digit of a neighbor of {@code neighborFamilies[i]} is {@code 2 + i}.
+     */
+    private final int[] neighborFamilies;
+    /**
+     * The weight of the digit of each direction in an index, in the order of the direction bits.
+     */
+    private final int[] weights;
+    /**
+     * The index of every combination of neighbors of the same family, or null if it is the combination itself.
+     */
+    private final int[] sameIndexes;
+    /**
+     * {@link BitmaskingType#TYPE_4} if no tile depends on the corners, so they do not need to be read,
+     * otherwise {@link BitmaskingType#TYPE_8}.
+     */
+    @Getter
+    private final BitmaskingType bitmaskingType;
+
+    RuleTable(byte[] tiles, int[] neighborFamilies) {
+        int radix = neighborFamilies.length + 2;
+        this.tiles = tiles;
+        this.neighborFamilies = neighborFamilies;
+        this.weights = new int[8];
+        for (int direction = 0, weight = 1; direction < 8; direction++, weight *= radix) weights[direction] = weight;
+        if (neighborFamilies.length == 0) {
+            this.sameIndexes = null;
+        } else {
+            this.sameIndexes = new int[256];
+            for (int neighbors = 0; neighbors < 256; neighbors++) {
+                for (int direction = 0; direction < 8; direction++) {
+                    if ((neighbors & 1 << direction) != 0) sameIndexes[neighbors] += weights[direction] * SAME_DIGIT;
+                }
+            }
+        }
+        this.bitmaskingType = usesCorners() ? BitmaskingType.TYPE_8 : BitmaskingType.TYPE_4;
+    }
+
+    /**
+     * Gets the tile for a combination of neighbors of the same family. Every other neighbor is looked up as a
+     * neighbor of any other family, so tables that name other families need {@link #getTile(int, int, int, int, int,
+     * int, int, int, int)} instead.
+     *
+     * @param neighbors The bits of the neighbors of the same family, from 0 to 255.
+     * @return The tile, which is the bitmask stored in the {@link TileId}.
+     */
+    public int getTile(int neighbors) {
+        return tiles[sameIndexes == null ? neighbors : sameIndexes[neighbors]] & TileId.MASK;
+    }
+
+    /**
+     * Gets the tile for the families of the neighbors.
+     *
+     * @param familyId        The family of the tile itself.
+     * @param northFamily     The family of the north neighbor.
+     * @param southFamily     The family of the south neighbor.
+     * @param westFamily      The family of the west neighbor.
+     * @param eastFamily      The family of the east neighbor.
+     * @param northWestFamily The family of the north-west neighbor.
+     * @param northEastFamily The family of the north-east neighbor.
+     * @param southWestFamily The family of the south-west neighbor.
+     * @param southEastFamily The family of the south-east neighbor.
+     * @return The tile, which is the bitmask stored in the {@link TileId}.
+     */
+    public int getTile(int familyId, int northFamily, int southFamily, int westFamily, int eastFamily,
+                       int northWestFamily, int northEastFamily, int southWestFamily, int southEastFamily) {
+        return tiles[getDigit(familyId, northWestFamily) * weights[0]
+                + getDigit(familyId, northFamily) * weights[1]
+                + getDigit(familyId, northEastFamily) * weights[2]
+                + getDigit(familyId, westFamily) * weights[3]
+                + getDigit(familyId, eastFamily) * weights[4]
+                + getDigit(familyId, southWestFamily) * weights[5]
+                + getDigit(familyId, southFamily) * weights[6]
+                + getDigit(familyId, southEastFamily) * weights[7]] & TileId.MASK;
+    }
+
+    /**
+     * Checks if the rules name other families. Tiles of such a table depend on the family of every neighbor, not
+     * only on whether it matches, and change whenever a neighbor changes family.
+     *
+     * @return True if the table names other families.
+     */
+    public boolean isCrossFamily() {
+        return neighborFamilies.length > 0;
+    }
+
+    /**
+     * Gets the other families named by the rules of the table.
+     *
+     * @return A copy of the family IDs, empty unless the table {@link #isCrossFamily() is cross family}.
+     */
+    public int[] getNeighborFamilies() {
+        return neighborFamilies.clone();
+    }
+
+    /**
+     * Gets the table of a built-in variant.
+     *
+     * @param bitmaskingType The built-in variant.
+     * @return {@link #TYPE_4} or {@link #TYPE_8}.
+     */
+    public static RuleTable of(BitmaskingType bitmaskingType) {
+        return bitmaskingType == BitmaskingType.TYPE_4 ? TYPE_4 : TYPE_8;
+    }
+
+    /**
+     * Clears the corners of an index that do not have both of their sides.
+     *
+     * @param neighbors The bits of the neighbors of the same family.
+     * @return The bits of the neighbors that count.
+     */
+    static int normalize(int neighbors) {
+        if ((neighbors & (NORTH | WEST)) != (NORTH | WEST)) neighbors &= ~NORTH_WEST;
+        if ((neighbors & (NORTH | EAST)) != (NORTH | EAST)) neighbors &= ~NORTH_EAST;
+        if ((neighbors & (SOUTH | WEST)) != (SOUTH | WEST)) neighbors &= ~SOUTH_WEST;
+        if ((neighbors & (SOUTH | EAST)) != (SOUTH | EAST)) neighbors &= ~SOUTH_EAST;
+        return neighbors;
+    }
+
+    /**
+     * Gets the number of tiles of a table naming some other families.
+     */
+    static int getSize(int neighborFamilyCount) {
+        int size = 1;
+        for (int direction = 0; direction < 8; direction++) size *= neighborFamilyCount + 2;
+        return size;
+    }
+
+    private int getDigit(int familyId, int neighborFamilyId) {
+        if (neighborFamilyId == familyId) return SAME_DIGIT;
+        for (int i = 0; i < neighborFamilies.length; i++) {
+            if (neighborFamilies[i] == neighborFamilyId) return i + 2;
+        }
+        return OTHER_DIGIT;
+    }
+
+    private boolean usesCorners() {
+        int radix = neighborFamilies.length + 2;
+        for (int index = 0; index < tiles.length; index++) {
+            int sidesIndex = index;
+            for (int direction = 0; direction < 8; direction++) {
+                if ((CORNERS & 1 << direction) != 0) sidesIndex -= index / weights[direction] % radix * weights[direction];
+            }
+            if (tiles[index] != tiles[sidesIndex]) return true;
+        }
+        return false;
+    }
+
+    private static RuleTable compileType4() {
+        TileRules tileRules = new TileRules();
+        for (int sides = 0; sides < 16; sides++) {
+            int same = ((sides & 1) != 0 ? NORTH : 0) | ((sides & 2) != 0 ? WEST : 0)
+                    | ((sides & 4) != 0 ? EAST : 0) | ((sides & 8) != 0 ? SOUTH : 0);
+            tileRules.rule(same, SIDES & ~same, sides);
+        }
+        return tileRules.compile();
+    }
+
+    private static RuleTable compileType8() {
+        TileRules tileRules = new TileRules();
+        for (int neighbors = 0; neighbors < 256; neighbors++) {
+            if (normalize(neighbors) != neighbors) continue;
+            // The corners that count are the ones with both of their sides
+            int counted = SIDES | normalize(neighbors | CORNERS) & CORNERS;
+            tileRules.rule(neighbors, counted & ~neighbors, neighbors);
+        }
+        return tileRules.compile();
+    }
+}
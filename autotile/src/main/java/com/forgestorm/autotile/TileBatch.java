@@ -0,0 +1,68 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link TileBatch} class collects the changes made to a map while an {@link AutoTiler} batch is open.
+ * <p>
+ * Family changes are kept as pending tiles that shadow the map, and every cell whose bitmask may be affected is
+ * added to a dirty set. Because both are sets keyed by cell, a cell touched by many overlapping operations is
+ * only recorded once, and its bitmask is calculated and written once when the batch is committed.
+ *
+ * @author unenergizer
+ * @see AutoTiler#beginBatch()
+ */
+class TileBatch {
+
+    /**
+     * Tiles placed during the batch, keyed by {@link #cellKey(int, int)}. Their bitmasks are not known yet.
+     */
+    private final LongIntMap pendingTiles = new LongIntMap();
+    /**
+     * Cells whose bitmask must be recalculated when the batch is committed.
+     */
+    private final LongIntMap dirtyCells = new LongIntMap();
+
+    /**
+     * Records a new family for a cell and marks the cell dirty.
+     */
+    void setFamily(int familyId, int x, int y) {
+        long cellKey = cellKey(x, y);
+        pendingTiles.put(cellKey, TileId.pack(familyId, 0));
+        dirtyCells.put(cellKey, 0);
+    }
+
+    void markDirty(int x, int y) {
+        dirtyCells.put(cellKey(x, y), 0);
+    }
+
+    boolean hasPendingTile(long cellKey) {
+        return pendingTiles.containsKey(cellKey);
+    }
+
+    int getPendingTile(long cellKey) {
+        return pendingTiles.get(cellKey, TileId.EMPTY);
+    }
+
+    LongIntMap getDirtyCells() {
+        return dirtyCells;
+    }
+
+    void clear() {
+        pendingTiles.clear();
+        dirtyCells.clear();
+    }
+
+    /**
+     * Combines cell coordinates into a single hash map key.
+     */
+    static long cellKey(int x, int y) {
+        return (long) x << 32 | y & 0xFFFFFFFFL;
+    }
+
+    static int getCellX(long cellKey) {
+        return (int) (cellKey >> 32);
+    }
+
+    static int getCellY(long cellKey) {
+        return (int) cellKey;
+    }
+}
@@ -1,7 +1,5 @@
 package com.forgestorm.autotile;
 
-import java.util.List;
-
 /**
  * The {@link TileBitmasking) interface provides methods for initializing and calculating bitmasks for auto tiles
  * in a game world. Auto tiles are created by analyzing the surrounding tiles and automatically selecting
@@ -13,15 +11,57 @@ import java.util.List;
  */
 interface TileBitmasking {
     /**
-     * Calculates the bitmask for the auto tile at the specified coordinates, using the given stripped tile name
-     * and optional flag to populate a list of neighboring auto tiles.
+     * Calculates the bitmask for the auto tile at the specified coordinates, using the given family ID.
+     *
+     * @param familyId the family ID of the auto tile (see {@link TileId})
+     * @param x        the x-coordinate of the auto tile in the game world
+     * @param y        the y-coordinate of the auto tile in the game world
+     * @return the calculated bitmask for the auto tile
+     */
+    int calculateBitmask(final int familyId, final int x, final int y);
+
+    /**
+     * Calculates a bitmask from the results of the directional checks. Each flag is true if the neighbor
+     * in that direction is of the same family as the auto tile, and every other neighbor is treated as a
+     * family the rules do not name. Variants that do not use corners ignore
+     * the corner flags, and variants that do only count a corner when both adjacent sides match.
      *
-     * @param strippedTileName   the name of the stripped tile to use for the auto tile
-     * @param x                  the x-coordinate of the auto tile in the game world
-     * @param y                  the y-coordinate of the auto tile in the game world
-     * @param populateList       true if a list of neighboring auto tiles should be populated; false otherwise
-     * @param locationUpdateList The list of {@link TileLocations) to be updated after setting the initial auto-tile.
+     * @param northTile     true if the north neighbor matches
+     * @param southTile     true if the south neighbor matches
+     * @param westTile      true if the west neighbor matches
+     * @param eastTile      true if the east neighbor matches
+     * @param northWestTile true if the north-west neighbor matches
+     * @param northEastTile true if the north-east neighbor matches
+     * @param southWestTile true if the south-west neighbor matches
+     * @param southEastTile true if the south-east neighbor matches
      * @return the calculated bitmask for the auto tile
      */
-    int calculateBitmask(final String strippedTileName, final int x, final int y, boolean populateList, List<TileLocations> locationUpdateList);
+    int calculateBitmask(boolean northTile, boolean southTile, boolean westTile, boolean eastTile,
+                         boolean northWestTile, boolean northEastTile, boolean southWestTile, boolean southEastTile);
+
+    /**
+     * Calculates a bitmask from the families of the neighbors. This is needed for the families whose
+     * {@link RuleTable} is {@link RuleTable#isCrossFamily() cross family}, which tell other families apart.
+     * Variants that do not use corners ignore the corner families.
+     *
+     * @param familyId        the family ID of the auto tile
+     * @param northFamily     the family ID of the north neighbor
+     * @param southFamily     the family ID of the south neighbor
+     * @param westFamily      the family ID of the west neighbor
+     * @param eastFamily      the family ID of the east neighbor
+     * @param northWestFamily the family ID of the north-west neighbor
+     * @param northEastFamily the family ID of the north-east neighbor
+     * @param southWestFamily the family ID of the south-west neighbor
+     * @param southEastFamily the family ID of the south-east neighbor
+     * @return the calculated bitmask for the auto tile
+     */
+    int calculateBitmask(int familyId, int northFamily, int southFamily, int westFamily, int eastFamily,
+                         int northWestFamily, int northEastFamily, int southWestFamily, int southEastFamily);
+
+    /**
+     * Gets the {@link RuleTable} that turns the matching neighbors into a bitmask.
+     *
+     * @return the rule table of the auto tile's family
+     */
+    RuleTable getRuleTable();
 }
@@ -27,9 +27,10 @@ public interface TileGetterSetter {
     String getTile(int x, int y);
 
     /**
-     * Set a tile at a location.
+     * Set a tile at a location. The auto tiler passes null to clear a cell, when a tile is removed with
+     * {@link AutoTiler#removeTile(int, int)} or an {@link EditJournal} undoes the placement of a tile.
      *
-     * @param tileName The name of the tile to set.
+     * @param tileName The name of the tile to set, or null to clear the cell.
      * @param x        The X location of a map.
      * @param y        The Y (or in case of 3D a Z) location of a map.
      */
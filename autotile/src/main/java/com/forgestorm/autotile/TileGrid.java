@@ -0,0 +1,47 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link TileGrid} interface is a bounded map of packed tile IDs (see {@link TileId}) that can be read and
+ * written a whole row at a time. It is used by bulk operations, such as {@link ParallelReTiler}, which would spend
+ * most of their time in per-cell {@link IntTileGetterSetter} calls otherwise.
+ * <p>
+ * Bulk operations may read a row on one thread while another thread writes a different row, or rewrites the bitmask
+ * of the same row without changing its families. Implementations backed by plain arrays satisfy this.
+ *
+ * @author unenergizer
+ * @see ArrayTileGrid
+ */
+public interface TileGrid {
+
+    /**
+     * Gets the width of the grid.
+     *
+     * @return The number of columns in the grid.
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the grid.
+     *
+     * @return The number of rows in the grid.
+     */
+    int getHeight();
+
+    /**
+     * Copies one row of packed tile IDs into an array.
+     *
+     * @param y           The row to read, from 0 to {@link #getHeight()} - 1.
+     * @param destination The array to copy {@link #getWidth()} tile IDs into.
+     * @param offset      The index in the destination array of the tile at X 0.
+     */
+    void readRow(int y, int[] destination, int offset);
+
+    /**
+     * Replaces one row of packed tile IDs with the contents of an array.
+     *
+     * @param y      The row to write, from 0 to {@link #getHeight()} - 1.
+     * @param source The array holding {@link #getWidth()} tile IDs.
+     * @param offset The index in the source array of the tile at X 0.
+     */
+    void writeRow(int y, int[] source, int offset);
+}
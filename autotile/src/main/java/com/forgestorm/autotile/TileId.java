@@ -0,0 +1,62 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link TileId} class packs a tile family ID and a bitmask into a single primitive int. This is the tile
+ * representation used by {@link IntTileGetterSetter}, and allows the {@link AutoTiler} to compare and place tiles
+ * without creating or parsing tile name strings.
+ * <p>
+ * The lower {@link #MASK_BITS} bits hold the bitmask (0-15 for the 4-bit variant, 0-255 for the 8-bit variant) and
+ * the remaining upper bits hold the family ID. Family ID 0 is reserved for empty cells, so {@link #EMPTY} is always 0.
+ *
+ * @author unenergizer
+ * @see IntTileGetterSetter
+ */
+public final class TileId {
+
+    /**
+     * The tile ID of an empty map cell.
+     */
+    public static final int EMPTY = 0;
+    /**
+     * The number of bits reserved for the bitmask.
+     */
+    public static final int MASK_BITS = 8;
+    /**
+     * Bit mask used to extract the bitmask from a tile ID.
+     */
+    public static final int MASK = (1 << MASK_BITS) - 1;
+
+    private TileId() {
+    }
+
+    /**
+     * Packs a family ID and a bitmask into a tile ID.
+     *
+     * @param familyId The family ID of the tile.
+     * @param mask     The bitmask (image id) of the tile.
+     * @return The packed tile ID.
+     */
+    public static int pack(int familyId, int mask) {
+        return familyId << MASK_BITS | mask & MASK;
+    }
+
+    /**
+     * Gets the family ID stored in a tile ID.
+     *
+     * @param tileId The packed tile ID.
+     * @return The family ID, or 0 if the tile ID is {@link #EMPTY}.
+     */
+    public static int getFamilyId(int tileId) {
+        return tileId >>> MASK_BITS;
+    }
+
+    /**
+     * Gets the bitmask stored in a tile ID.
+     *
+     * @param tileId The packed tile ID.
+     * @return The bitmask of the tile.
+     */
+    public static int getMask(int tileId) {
+        return tileId & MASK;
+    }
+}
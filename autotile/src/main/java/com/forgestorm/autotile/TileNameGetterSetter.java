@@ -0,0 +1,30 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link TileNameGetterSetter} adapts a name based {@link TileGetterSetter} to an {@link IntTileGetterSetter}.
+ * Tile names are converted to and from packed tile IDs through a {@link TileNameRegistry}, so the {@link AutoTiler}
+ * only ever compares family IDs.
+ *
+ * @author unenergizer
+ * @see TileNameRegistry
+ */
+class TileNameGetterSetter implements IntTileGetterSetter {
+
+    private final TileGetterSetter tileGetterSetter;
+    private final TileNameRegistry tileNameRegistry;
+
+    TileNameGetterSetter(TileGetterSetter tileGetterSetter, TileNameRegistry tileNameRegistry) {
+        this.tileGetterSetter = tileGetterSetter;
+        this.tileNameRegistry = tileNameRegistry;
+    }
+
+    @Override
+    public int getTileId(int x, int y) {
+        return tileNameRegistry.getTileId(tileGetterSetter.getTile(x, y));
+    }
+
+    @Override
+    public void setTileId(int tileId, int x, int y) {
+        tileGetterSetter.setTile(tileNameRegistry.getTileName(tileId), x, y);
+    }
+}
@@ -0,0 +1,219 @@
+package com.forgestorm.autotile;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link TileNameRegistry} parses tile names into a family, a {@link BitmaskingType} and an image id, and caches
+ * the result. Each distinct tile name is only parsed once, after which looking it up is a single hash map access.
+ * <p>
+ * An auto tile name is made of a bitmasking prefix, a family name and an image id, for example
+ * {@code BW16=grass-sand=208}. Everything before the trailing image id is the family, and every family is given a
+ * family ID through {@link AutoTiler#registerFamily(BitmaskingType)}, so names and {@link TileId tile IDs} can be used
+ * side by side. Tile names without a known prefix are registered as plain (non auto tile) families using their full
+ * name, so they can be converted back to the exact same name.
+ * <p>
+ * The composed names returned by {@link #getTileName(int)} are also cached, so writing an auto tile by name does not
+ * concatenate strings once a tile has been seen.
+ * <p>
+ * The registry is safe to use from several threads. Looking up a known name does not lock, only parsing
+ * and registering a new name does.
+ *
+ * @author unenergizer
+ * @see TileId
+ * @see AutoTiler
+ */
+public class TileNameRegistry {
+
+    /**
+     * The {@link AutoTiler} that owns this registry. Used for bitmasking prefixes and family registration.
+     */
+    private final AutoTiler autoTiler;
+    /**
+     * Packed tile IDs of every tile name seen so far.
+     */
+    private final Map<String, Integer> tileIds = new ConcurrentHashMap<>();
+    /**
+     * Family IDs of every plain, 4-bit and 8-bit family name seen so far. A name is registered once per
+     * {@link BitmaskingType}, so changing the prefixes back and forth does not register it again.
+     * Only used while holding the registry lock.
+     */
+    private final Map<String, Integer> plainFamilyIds = new HashMap<>();
+    private final Map<String, Integer> type4FamilyIds = new HashMap<>();
+    private final Map<String, Integer> type8FamilyIds = new HashMap<>();
+    /**
+     * Family names indexed by family ID.
+     */
+    private volatile String[] familyNames = new String[16];
+    /**
+     * Cached tile names indexed by family ID and then by bitmask. Racing threads may both compose
+     * a name, which is harmless as the names are equal.
+     */
+    private volatile String[][] tileNames = new String[16][];
+
+    TileNameRegistry(AutoTiler autoTiler) {
+        this.autoTiler = autoTiler;
+    }
+
+    /**
+     * Gets the packed tile ID of a tile name, parsing the name if it has not been seen before.
+     *
+     * @param tileName The name of the tile. Can be null.
+     * @return The packed tile ID, or {@link TileId#EMPTY} if the tile name is null.
+     */
+    public int getTileId(String tileName) {
+        if (tileName == null) return TileId.EMPTY;
+        Integer tileId = tileIds.get(tileName);
+        if (tileId == null) tileId = parseAndCacheTileName(tileName);
+        return tileId;
+    }
+
+    private synchronized int parseAndCacheTileName(String tileName) {
+        // Another thread may have parsed the name while we waited for the lock
+        Integer tileId = tileIds.get(tileName);
+        if (tileId == null) {
+            tileId = parseTileName(tileName);
+            tileIds.put(tileName, tileId);
+        }
+        return tileId;
+    }
+
+    /**
+     * Gets the family ID of a tile name.
+     *
+     * @param tileName The name of the tile. Can be null.
+     * @return The family ID, or {@link TileId#EMPTY} if the tile name is null.
+     */
+    public int getFamilyId(String tileName) {
+        return TileId.getFamilyId(getTileId(tileName));
+    }
+
+    /**
+     * Gets the {@link BitmaskingType} of a tile name.
+     *
+     * @param tileName The name of the tile. Can be null.
+     * @return The {@link BitmaskingType}, or null if the tile is not an auto tile.
+     */
+    public BitmaskingType getBitmaskingType(String tileName) {
+        return autoTiler.getFamilyType(getFamilyId(tileName));
+    }
+
+    /**
+     * Gets the family name (the tile name with its image id stripped) of a family ID.
+     *
+     * @param familyId The family ID of the tile.
+     * @return The family name, or null if the family was not registered by this registry.
+     */
+    public String getFamilyName(int familyId) {
+        String[] names = familyNames;
+        if (familyId <= 0 || familyId >= names.length) return null;
+        return names[familyId];
+    }
+
+    /**
+     * Gets the tile name of a packed tile ID.
+     *
+     * @param tileId The packed tile ID.
+     * @return The tile name, or null if the tile ID is empty or its family is unknown.
+     */
+    public String getTileName(int tileId) {
+        int familyId = TileId.getFamilyId(tileId);
+        String familyName = getFamilyName(familyId);
+        if (familyName == null) return null;
+
+        // Plain tiles keep their full name as the family name
+        if (autoTiler.getFamilyType(familyId) == null) return familyName;
+
+        String[][] familyTileNames = tileNames;
+        if (familyId >= familyTileNames.length) return familyName + TileId.getMask(tileId);
+        String[] names = familyTileNames[familyId];
+        if (names == null) {
+            names = new String[TileId.MASK + 1];
+            familyTileNames[familyId] = names;
+        }
+        int mask = TileId.getMask(tileId);
+        String tileName = names[mask];
+        if (tileName == null) {
+            tileName = familyName + mask;
+            names[mask] = tileName;
+        }
+        return tileName;
+    }
+
+    /**
+     * Forgets every parsed tile name, so names are parsed again with the new bitmasking prefixes. Registered families
+     * are kept, so tile IDs created before the change still convert back to their tile names.
+     */
+    synchronized void clear() {
+        tileIds.clear();
+    }
+
+    /**
+     * Parses a tile name into a packed tile ID, registering its family if needed.
+     *
+     * @param tileName The name of the tile.
+     * @return The packed tile ID.
+     */
+    private int parseTileName(String tileName) {
+        BitmaskingType bitmaskingType = detectBitmaskingType(tileName);
+
+        // Plain tiles are registered by their full name
+        if (bitmaskingType == null) return TileId.pack(getOrRegisterFamily(tileName, null), 0);
+
+        String familyName = stripImageId(tileName);
+        int imageId = 0;
+        for (int i = familyName.length(); i < tileName.length(); i++) {
+            imageId = imageId * 10 + (tileName.charAt(i) - '0');
+            if (imageId > TileId.MASK) break;
+        }
+        return TileId.pack(getOrRegisterFamily(familyName, bitmaskingType), imageId);
+    }
+
+    private int getOrRegisterFamily(String familyName, BitmaskingType bitmaskingType) {
+        Map<String, Integer> familyIds = bitmaskingType == null ? plainFamilyIds
+                : bitmaskingType == BitmaskingType.TYPE_4 ? type4FamilyIds : type8FamilyIds;
+        Integer familyId = familyIds.get(familyName);
+        if (familyId != null) return familyId;
+
+        familyId = autoTiler.registerFamily(bitmaskingType);
+        familyIds.put(familyName, familyId);
+        if (familyId >= familyNames.length) {
+            int newLength = Math.max(familyNames.length * 2, familyId + 1);
+            String[][] newTileNames = new String[newLength][];
+            System.arraycopy(tileNames, 0, newTileNames, 0, tileNames.length);
+            tileNames = newTileNames;
+            String[] newFamilyNames = new String[newLength];
+            System.arraycopy(familyNames, 0, newFamilyNames, 0, familyNames.length);
+            newFamilyNames[familyId] = familyName;
+            familyNames = newFamilyNames;
+        } else {
+            familyNames[familyId] = familyName;
+        }
+        return familyId;
+    }
+
+    /**
+     * Detects if the supplied texture name is a wang tile.
+     *
+     * @param textureName The name of the texture to check.
+     * @return Returns the {@link BitmaskingType} if it is detected.
+     */
+    private BitmaskingType detectBitmaskingType(String textureName) {
+        if (textureName.startsWith(autoTiler.getPrefixType4())) return BitmaskingType.TYPE_4;
+        if (textureName.startsWith(autoTiler.getPrefixType8())) return BitmaskingType.TYPE_8;
+        return null;
+    }
+
+    /**
+     * Gets the texture name and strips out its wang image id.
+     *
+     * @param textureName The name of the texture.
+     * @return A texture name with the trailing digits stripped out.
+     */
+    static String stripImageId(String textureName) {
+        int end = textureName.length();
+        while (end > 0 && Character.isDigit(textureName.charAt(end - 1))) end--;
+        return end == textureName.length() ? textureName : textureName.substring(0, end);
+    }
+}
@@ -0,0 +1,242 @@
+package com.forgestorm.autotile;
+
+import java.util.Arrays;
+
+/**
+ * The {@link TileRules} class describes how a family is auto tiled with a list of neighbor rules, and compiles them
+ * into a {@link RuleTable}. Rules are checked in the order they were added and the first one that matches picks the
+ * tile, so specific rules go before general ones. The rules are only checked once, when compiling, never while tiling.
+ * <p>
+ * A rule is a 3 by 3 pattern of the neighbors, from the north row to the south row. Whitespace is ignored:
+ * <pre>
+ * tileRules.rule("? # ?"
+ *              + "# * ."
+ *              + "? # ?", 12);
+ * </pre>
+ * {@code #} is a neighbor of the same family, {@code .} is a neighbor of another family or an empty cell and
+ * {@code ?} is any neighbor. The center is the tile itself and is written as {@code *}. The north row is the row
+ * towards lower Y, or higher Y when the {@link AutoTiler} is {@link AutoTiler#isYUp() Y up}.
+ * <p>
+ * Rules can also name other families. A symbol bound to a family with {@link #where(char, int)} is a neighbor of that
+ * family, so water next to sand can pick its own tile:
+ * <pre>
+ * tileRules.where('s', sandFamilyId)
+ *          .rule("? # ?  ? * s  ? ? ?", 37);
+ * </pre>
+ * The rules of one family can name up to {@link RuleTable#MAX_NEIGHBOR_FAMILIES} other families, including
+ * {@link TileId#EMPTY} for empty cells.
+ * <p>
+ * A corner only counts as the same family when both of its sides do, as with the built-in 8-bit variant. A rule that
+ * needs a corner of the same family without both of its sides never matches.
+ *
+ * @author unenergizer
+ * @see RuleTable
+ */
+public class TileRules {
+
+    /**
+     * The direction bit of every cell of a pattern, in reading order. The center has none.
+     */
+    private static final int[] PATTERN_BITS = {
+            RuleTable.NORTH_WEST, RuleTable.NORTH, RuleTable.NORTH_EAST,
+            RuleTable.WEST, 0, RuleTable.EAST,
+            RuleTable.SOUTH_WEST, RuleTable.SOUTH, RuleTable.SOUTH_EAST
+    };
+    /**
+     * The ints stored per rule: the neighbors that must be the same, the ones that must be other, the tile, and the
+     * family each of the 8 directions must be, or -1, in the order of the direction bits.
+     */
+    private static final int RULE_SIZE = 11;
+
+    /**
+     * The rules, {@link #RULE_SIZE} ints each.
+     */
+    private int[] rules = new int[RULE_SIZE * 16];
+    private int ruleCount;
+    /**
+     * The family bound to each pattern symbol, or -1.
+     */
+    private final int[] symbolFamilies = new int[128];
+    /**
+     * The other families named by the rules, in the order they were first named.
+     */
+    private int[] neighborFamilies = new int[0];
+    /**
+     * The tile used when no rule matches.
+     */
+    private int defaultTile;
+
+    public TileRules() {
+        Arrays.fill(symbolFamilies, -1);
+    }
+
+    /**
+     * Binds a pattern symbol to a family, so rules added afterwards can use it for a neighbor of that family.
+     *
+     * @param symbol   A letter or digit.
+     * @param familyId The family of the neighbor, or {@link TileId#EMPTY} for an empty cell.
+     * @return This, to chain rules.
+     */
+    public TileRules where(char symbol, int familyId) {
+        if (symbol >= symbolFamilies.length || !Character.isLetterOrDigit(symbol)) {
+            throw new IllegalArgumentException("The symbol '" + symbol + "' must be a letter or a digit.");
+        }
+        if (familyId < 0) throw new IllegalArgumentException("The family " + familyId + " is not a family ID.");
+        symbolFamilies[symbol] = familyId;
+        return this;
+    }
+
+    /**
+     * Adds a rule from a pattern.
+     *
+     * @param pattern The 9 cells of the pattern, see {@link TileRules}.
+     * @param tile    The tile picked by the rule, from 0 to {@link TileId#MASK}.
+     * @return This, to chain rules.
+     */
+    public TileRules rule(String pattern, int tile) {
+        int same = 0;
+        int other = 0;
+        int[] families = new int[8];
+        Arrays.fill(families, -1);
+        int cell = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            if (cell == PATTERN_BITS.length) {
+                throw new IllegalArgumentException("The pattern \"" + pattern + "\" has more than 9 cells.");
+            }
+            int bit = PATTERN_BITS[cell++];
+            if (bit == 0) {
+                if (c != '*') throw new IllegalArgumentException("The center of the pattern \"" + pattern + "\" must be *.");
+            } else if (c == '#') {
+                same |= bit;
+            } else if (c == '.') {
+                other |= bit;
+            } else if (c < symbolFamilies.length && symbolFamilies[c] >= 0) {
+                families[Integer.numberOfTrailingZeros(bit)] = symbolFamilies[c];
+            } else if (c != '?') {
+                throw new IllegalArgumentException("Unknown cell '" + c + "' in the pattern \"" + pattern + "\".");
+            }
+        }
+        if (cell != PATTERN_BITS.length) {
+            throw new IllegalArgumentException("The pattern \"" + pattern + "\" has less than 9 cells.");
+        }
+        addRule(same, other, families, tile);
+        return this;
+    }
+
+    /**
+     * Adds a rule from direction bits, see {@link RuleTable}.
+     *
+     * @param same  The neighbors that must be of the same family.
+     * @param other The neighbors that must not be of the same family.
+     * @param tile  The tile picked by the rule, from 0 to {@link TileId#MASK}.
+     * @return This, to chain rules.
+     */
+    public TileRules rule(int same, int other, int tile) {
+        if ((same & other) != 0) {
+            throw new IllegalArgumentException("A neighbor can not be both the same and another family.");
+        }
+        int[] families = new int[8];
+        Arrays.fill(families, -1);
+        addRule(same, other, families, tile);
+        return this;
+    }
+
+    /**
+     * Sets the tile used when no rule matches. Defaults to 0.
+     *
+     * @param tile The tile, from 0 to {@link TileId#MASK}.
+     * @return This, to chain rules.
+     */
+    public TileRules otherwise(int tile) {
+        checkTile(tile);
+        this.defaultTile = tile;
+        return this;
+    }
+
+    /**
+     * Compiles the rules into a table. The rules can still be changed and compiled again afterwards.
+     *
+     * @return The table of the rules.
+     */
+    public RuleTable compile() {
+        int radix = neighborFamilies.length + 2;
+        byte[] tiles = new byte[RuleTable.getSize(neighborFamilies.length)];
+        int[] digits = new int[8];
+        for (int index = 0; index < tiles.length; index++) {
+            int same = 0;
+            for (int direction = 0, rest = index; direction < 8; direction++, rest /= radix) {
+                digits[direction] = rest % radix;
+                if (digits[direction] == RuleTable.SAME_DIGIT) same |= 1 << direction;
+            }
+            int counted = RuleTable.normalize(same);
+            for (int direction = 0; direction < 8; direction++) {
+                // A corner of the same family that does not count is any other family
+                if ((same & ~counted & 1 << direction) != 0) digits[direction] = RuleTable.OTHER_DIGIT;
+            }
+
+            int tile = defaultTile;
+            for (int i = 0; i < ruleCount * RULE_SIZE; i += RULE_SIZE) {
+                if (matches(i, counted, digits)) {
+                    tile = rules[i + 2];
+                    break;
+                }
+            }
+            tiles[index] = (byte) tile;
+        }
+        return new RuleTable(tiles, neighborFamilies.clone());
+    }
+
+    private boolean matches(int rule, int counted, int[] digits) {
+        if ((counted & rules[rule]) != rules[rule] || (counted & rules[rule + 1]) != 0) return false;
+        for (int direction = 0; direction < 8; direction++) {
+            int familyId = rules[rule + 3 + direction];
+            if (familyId >= 0 && digits[direction] != getDigit(familyId)) return false;
+        }
+        return true;
+    }
+
+    private void addRule(int same, int other, int[] families, int tile) {
+        checkTile(tile);
+        int[] named = neighborFamilies;
+        for (int familyId : families) {
+            if (familyId < 0 || indexOf(named, familyId) >= 0) continue;
+            if (named.length == RuleTable.MAX_NEIGHBOR_FAMILIES) {
+                throw new IllegalArgumentException("The rules can not name more than "
+                        + RuleTable.MAX_NEIGHBOR_FAMILIES + " other families.");
+            }
+            named = Arrays.copyOf(named, named.length + 1);
+            named[named.length - 1] = familyId;
+        }
+        neighborFamilies = named;
+        if (ruleCount * RULE_SIZE == rules.length) rules = Arrays.copyOf(rules, rules.length * 2);
+        int i = ruleCount * RULE_SIZE;
+        rules[i] = same & 0xFF;
+        rules[i + 1] = other & 0xFF;
+        rules[i + 2] = tile;
+        System.arraycopy(families, 0, rules, i + 3, 8);
+        ruleCount++;
+    }
+
+    /**
+     * Gets the digit of a neighbor of a named family in the indexes of the table, or -1 if it is not named yet.
+     */
+    private int getDigit(int familyId) {
+        int i = indexOf(neighborFamilies, familyId);
+        return i < 0 ? -1 : i + 2;
+    }
+
+    private static int indexOf(int[] familyIds, int familyId) {
+        for (int i = 0; i < familyIds.length; i++) {
+            if (familyIds[i] == familyId) return i;
+        }
+        return -1;
+    }
+
+    private static void checkTile(int tile) {
+        if (tile < 0 || tile > TileId.MASK) {
+            throw new IllegalArgumentException("The tile " + tile + " does not fit in a tile ID.");
+        }
+    }
+}
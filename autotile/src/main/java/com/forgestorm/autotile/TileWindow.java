@@ -0,0 +1,123 @@
+package com.forgestorm.autotile;
+
+import java.util.Arrays;
+
+/**
+ * The {@link TileWindow} class caches the tiles of a small rectangle of the map for the length of one operation of
+ * an {@link AutoTiler}, such as the 5x5 neighborhood of a placed or erased tile.
+ * <p>
+ * Each cell is read from the map the first time it is needed, and every later read of it is served from the window.
+ * Tiles placed by the operation are stored in the window before they are written, so bitmasks are calculated
+ * against the map as it will be, and cells placed before they are read are never read at all. However many bitmasks
+ * an operation calculates, no cell of the window is read from the map more than once.
+ * <p>
+ * A window can be {@link #reset(int, int, int, int) reset} over another rectangle and reused. Its arrays only grow,
+ * and cells are marked loaded with a generation number, so resetting it allocates and clears nothing.
+ *
+ * @author unenergizer
+ */
+final class TileWindow {
+
+    private final AutoTiler autoTiler;
+    private int minX, minY;
+    private int width, height;
+    private int[] tileIds = new int[0];
+    /**
+     * The generation in which each cell was loaded. A cell is loaded if it matches {@link #generation}.
+     */
+    private int[] loadedGenerations = new int[0];
+    private int generation;
+
+    /**
+     * Creates a window over a rectangle of the map. Nothing is read until it is needed.
+     */
+    TileWindow(AutoTiler autoTiler, int minX, int minY, int maxX, int maxY) {
+        this.autoTiler = autoTiler;
+        reset(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Moves the window over another rectangle of the map and forgets every cell it has loaded.
+     */
+    void reset(int minX, int minY, int maxX, int maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.width = maxX - minX + 1;
+        this.height = maxY - minY + 1;
+        int cellCount = width * height;
+        if (cellCount > tileIds.length) {
+            tileIds = new int[cellCount];
+            loadedGenerations = new int[cellCount];
+            generation = 0;
+        }
+        if (++generation == 0) {
+            // The generation wrapped, so old marks could match again
+            Arrays.fill(loadedGenerations, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Gets the tile at a location, reading it from the map the first time. Locations outside the window are
+     * always read from the map.
+     */
+    int getTileId(int x, int y) {
+        int localX = x - minX;
+        int localY = y - minY;
+        if (localX < 0 || localY < 0 || localX >= width || localY >= height) return autoTiler.readTileId(x, y);
+
+        int index = localY * width + localX;
+        if (loadedGenerations[index] == generation) {
+            AutoTileMetrics metrics = autoTiler.getMetrics();
+            if (metrics != null) metrics.countCacheHit();
+            return tileIds[index];
+        }
+        int tileId = autoTiler.readTileId(x, y);
+        tileIds[index] = tileId;
+        loadedGenerations[index] = generation;
+        return tileId;
+    }
+
+    int getFamilyId(int x, int y) {
+        return TileId.getFamilyId(getTileId(x, y));
+    }
+
+    /**
+     * Stores a tile in the window, without writing it to the map. The location must be inside the window.
+     */
+    void setTileId(int tileId, int x, int y) {
+        int index = (y - minY) * width + x - minX;
+        tileIds[index] = tileId;
+        loadedGenerations[index] = generation;
+    }
+
+    /**
+     * Calculates the bitmask of a tile from the window. Corners are only read when both of their sides match, unless
+     * the rules of the family name other families.
+     */
+    int calculateBitmask(BitmaskingType bitmaskingType, int familyId, int x, int y) {
+        int northY = TileLocations.NORTH.getY(y, autoTiler.isYUp());
+        int southY = TileLocations.SOUTH.getY(y, autoTiler.isYUp());
+        TileBitmasking tileBitmasking = autoTiler.getTileBitmasking(familyId);
+        if (tileBitmasking.getRuleTable().isCrossFamily()) {
+            return tileBitmasking.calculateBitmask(familyId,
+                    getFamilyId(x, northY), getFamilyId(x, southY), getFamilyId(x - 1, y), getFamilyId(x + 1, y),
+                    getFamilyId(x - 1, northY), getFamilyId(x + 1, northY),
+                    getFamilyId(x - 1, southY), getFamilyId(x + 1, southY));
+        }
+
+        boolean northTile = getFamilyId(x, northY) == familyId;
+        boolean southTile = getFamilyId(x, southY) == familyId;
+        boolean westTile = getFamilyId(x - 1, y) == familyId;
+        boolean eastTile = getFamilyId(x + 1, y) == familyId;
+        if (bitmaskingType == BitmaskingType.TYPE_4) {
+            return tileBitmasking.calculateBitmask(northTile, southTile, westTile, eastTile, false, false, false, false);
+        }
+
+        return tileBitmasking.calculateBitmask(northTile, southTile, westTile, eastTile,
+                northTile && westTile && getFamilyId(x - 1, northY) == familyId,
+                northTile && eastTile && getFamilyId(x + 1, northY) == familyId,
+                southTile && westTile && getFamilyId(x - 1, southY) == familyId,
+                southTile && eastTile && getFamilyId(x + 1, southY) == familyId);
+    }
+}
@@ -0,0 +1,229 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The {@link WorldGenerator} class turns generated terrain into auto tiled chunks in bulk. It is a two stage
+ * pipeline: a {@link FamilyGenerator}, such as a noise function, decides the family of every cell, and the mask stage
+ * resolves the bitmask of every auto tile with the {@link RuleTable} of its family. The finished tiles of each
+ * chunk are handed to a {@link ChunkSink}.
+ * <p>
+ * Chunks are generated in parallel, but always reach the sink in order, row of chunks by row of chunks, on the thread
+ * that called {@link #generate(int, int, int, int, FamilyGenerator, ChunkSink)}. Only a few chunks are in flight at a
+ * time and their buffers are reused, so the memory used does not grow with the size of the world.
+ * <p>
+ * Each chunk is generated with a border of one cell, so its edges are tiled against the chunks around it without
+ * waiting for them. No tile names, strings or per cell calls to the map are involved.
+ * <p>
+ * This class uses {@code java.util.concurrent} and is not part of the GWT module.
+ *
+ * @author unenergizer
+ * @see ChunkedTileMap
+ */
+public class WorldGenerator {
+
+    /**
+     * The {@link AutoTiler} that provides family types and the coordinate system orientation.
+     */
+    private final AutoTiler autoTiler;
+    /**
+     * The width and height of a chunk in tiles.
+     */
+    @Getter
+    private final int chunkSize;
+    /**
+     * The pool the chunks are generated on.
+     */
+    private final ExecutorService executorService;
+    /**
+     * The number of chunks generated ahead of the sink.
+     */
+    private final int maxChunksInFlight;
+
+    public WorldGenerator(AutoTiler autoTiler, int chunkSize) {
+        this(autoTiler, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    public WorldGenerator(AutoTiler autoTiler, int chunkSize, ExecutorService executorService) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("The size of a chunk must be positive.");
+        this.autoTiler = autoTiler;
+        this.chunkSize = chunkSize;
+        this.executorService = executorService;
+        int parallelism = executorService instanceof ForkJoinPool
+                ? ((ForkJoinPool) executorService).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.maxChunksInFlight = Math.max(2, parallelism * 2);
+    }
+
+    /**
+     * Generates a rectangle of chunks. The families of every auto tile must be registered beforehand.
+     *
+     * @param minChunkX       The X location of the first chunk, in chunks.
+     * @param minChunkY       The Y location of the first chunk, in chunks.
+     * @param chunksWide      The number of chunks to generate along X.
+     * @param chunksHigh      The number of chunks to generate along Y.
+     * @param familyGenerator Decides the family of every cell. Called from worker threads.
+     * @param chunkSink       Receives the tiles of every chunk, in order. Called from the calling thread.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a chunk
+     */
+    public void generate(int minChunkX, int minChunkY, int chunksWide, int chunksHigh,
+                         FamilyGenerator familyGenerator, ChunkSink chunkSink) throws InterruptedException {
+        int chunkCount = chunksWide * chunksHigh;
+        ArrayDeque<Future<ChunkBuffer>> chunksInFlight = new ArrayDeque<>();
+        ArrayDeque<ChunkBuffer> freeBuffers = new ArrayDeque<>();
+        int submitted = 0;
+
+        try {
+            for (int published = 0; published < chunkCount; published++) {
+                while (submitted < chunkCount && chunksInFlight.size() < maxChunksInFlight) {
+                    ChunkBuffer chunkBuffer = freeBuffers.poll();
+                    if (chunkBuffer == null) chunkBuffer = new ChunkBuffer(chunkSize);
+                    chunkBuffer.chunkX = minChunkX + submitted % chunksWide;
+                    chunkBuffer.chunkY = minChunkY + submitted / chunksWide;
+                    ChunkBuffer task = chunkBuffer;
+                    chunksInFlight.add(executorService.submit(() -> generateChunk(task, familyGenerator)));
+                    submitted++;
+                }
+
+                ChunkBuffer chunkBuffer = getChunk(chunksInFlight.poll());
+                chunkSink.acceptChunk(chunkBuffer.chunkX, chunkBuffer.chunkY, chunkBuffer.tiles);
+                freeBuffers.add(chunkBuffer);
+            }
+        } finally {
+            // Only left over when the sink or a generator failed
+            for (Future<ChunkBuffer> future : chunksInFlight) future.cancel(true);
+        }
+    }
+
+    /**
+     * Generates the families of a chunk and its border, then resolves the tiles of the chunk. Runs on a worker thread.
+     */
+    private ChunkBuffer generateChunk(ChunkBuffer chunkBuffer, FamilyGenerator familyGenerator) {
+        int columns = chunkSize + 2;
+        int[] families = chunkBuffer.families;
+        int[] tiles = chunkBuffer.tiles;
+        familyGenerator.generateFamilies(chunkBuffer.chunkX * chunkSize - 1, chunkBuffer.chunkY * chunkSize - 1,
+                columns, columns, families);
+
+        // The offset from a cell to its north neighbor in the families
+        int north = autoTiler.isYUp() ? columns : -columns;
+        int lastFamilyId = TileId.EMPTY;
+        TileBitmasking tileBitmasking = null;
+        boolean crossFamily = false;
+
+        for (int y = 0; y < chunkSize; y++) {
+            int index = (y + 1) * columns + 1;
+            int tileIndex = y * chunkSize;
+            for (int x = 0; x < chunkSize; x++, index++, tileIndex++) {
+                int familyId = families[index];
+
+                // Neighboring cells are usually of the same family
+                if (familyId != lastFamilyId) {
+                    lastFamilyId = familyId;
+                    tileBitmasking = autoTiler.getFamilyType(familyId) == null ? null : autoTiler.getTileBitmasking(familyId);
+                    crossFamily = tileBitmasking != null && tileBitmasking.getRuleTable().isCrossFamily();
+                }
+                if (tileBitmasking == null) {
+                    tiles[tileIndex] = TileId.pack(familyId, 0);
+                    continue;
+                }
+                if (crossFamily) {
+                    tiles[tileIndex] = TileId.pack(familyId, tileBitmasking.calculateBitmask(familyId,
+                            families[index + north], families[index - north], families[index - 1], families[index + 1],
+                            families[index + north - 1], families[index + north + 1],
+                            families[index - north - 1], families[index - north + 1]));
+                    continue;
+                }
+
+                int bitmask = tileBitmasking.calculateBitmask(
+                        families[index + north] == familyId, families[index - north] == familyId,
+                        families[index - 1] == familyId, families[index + 1] == familyId,
+                        families[index + north - 1] == familyId, families[index + north + 1] == familyId,
+                        families[index - north - 1] == familyId, families[index - north + 1] == familyId);
+                tiles[tileIndex] = TileId.pack(familyId, bitmask);
+            }
+        }
+        return chunkBuffer;
+    }
+
+    /**
+     * Waits for a chunk, passing on the failure of its generator.
+     */
+    private static ChunkBuffer getChunk(Future<ChunkBuffer> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("A chunk could not be generated.", cause);
+        }
+    }
+
+    /**
+     * Creates a sink that stores every chunk in a {@link ChunkedTileMap}, replacing the chunks already there.
+     *
+     * @param chunkedTileMap The map to store the chunks in. Its chunks must be as large as the generated chunks.
+     * @return The sink.
+     */
+    public ChunkSink into(ChunkedTileMap chunkedTileMap) {
+        if (chunkedTileMap.getChunkSize() != chunkSize) {
+            throw new IllegalArgumentException("The chunks of the map are not " + chunkSize + " tiles wide.");
+        }
+        return (chunkX, chunkY, tiles) -> chunkedTileMap.setChunk(chunkX, chunkY, tiles.clone());
+    }
+
+    /**
+     * Decides the family of every cell of the world, for example from noise. Called from worker threads, so it must
+     * be thread safe. The family of a cell must only depend on its location, as the cells on the border of a chunk
+     * are also generated for the chunks next to it.
+     */
+    public interface FamilyGenerator {
+        /**
+         * Generates the families of a rectangle of the world.
+         *
+         * @param x        The X location of the first cell.
+         * @param y        The Y location of the first cell.
+         * @param width    The width of the rectangle.
+         * @param height   The height of the rectangle.
+         * @param families The array to fill with the family ID of every cell, or {@link TileId#EMPTY}, indexed by
+         *                 {@code row * width + column} for the cell at {@code x + column, y + row}.
+         */
+        void generateFamilies(int x, int y, int width, int height, int[] families);
+    }
+
+    /**
+     * Receives the tiles of generated chunks, in order. Called from the thread generating the world.
+     */
+    public interface ChunkSink {
+        /**
+         * Receives the tiles of a chunk.
+         *
+         * @param chunkX The X location of the chunk, in chunks.
+         * @param chunkY The Y location of the chunk, in chunks.
+         * @param tiles  The packed tile ID of every cell of the chunk in row-major order. The array is reused for
+         *               later chunks, so it must be copied to be kept.
+         */
+        void acceptChunk(int chunkX, int chunkY, int[] tiles);
+    }
+
+    /**
+     * The buffers a chunk is generated in, reused once the sink is done with the chunk.
+     */
+    private static final class ChunkBuffer {
+        private final int[] families;
+        private final int[] tiles;
+        private int chunkX, chunkY;
+
+        private ChunkBuffer(int chunkSize) {
+            this.families = new int[(chunkSize + 2) * (chunkSize + 2)];
+            this.tiles = new int[chunkSize * chunkSize];
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.forgestorm.autotile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a tile family placed by {@link AutoTiler#autoTile(int, int, int, Brush)},
+ * {@link AutoTiler#autoTileRegion(int, int, int, int, int)} or {@link AutoTiler#floodFill(int, int, int, int)}, or
+ * for a cell re-tiled by {@link AutoTiler#reTileLayers(LayeredTileGetterSetter, int, int)}. Disabled by default.
+ *
+ * @author unenergizer
+ */
+@Name("com.forgestorm.autotile.AutoTile")
+@Label("Auto Tile")
+@Description("Tiles placed and auto tiled")
+@Category({"ForgeStorm", "Auto Tile"})
+@Enabled(false)
+@StackTrace(false)
+final class AutoTileEvent extends Event {
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Bitmasking Type")
+    String bitmaskingType;
+
+    @Label("Brush")
+    @Description("The brush stamped, the region or flood fill, or the layers re-tiled")
+    String brush;
+
+    @Label("Cells Touched")
+    int cellsTouched;
+}
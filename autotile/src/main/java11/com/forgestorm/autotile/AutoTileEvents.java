@@ -0,0 +1,95 @@
+package com.forgestorm.autotile;
+
+/**
+ * The {@link AutoTileEvents} class emits Java Flight Recorder events for the operations of an {@link AutoTiler}.
+ * <p>
+ * This is the Java 11 version, packaged in the multi-release jar. Events are only created when they are enabled
+ * in the running recording, which is checked on an idle instance of each event, so a disabled event costs a single
+ * check and no allocation.
+ *
+ * @author unenergizer
+ */
+final class AutoTileEvents {
+
+    private static final AutoTileEvent AUTO_TILE = new AutoTileEvent();
+    private static final EraseTileEvent ERASE_TILE = new EraseTileEvent();
+    private static final NeighborFixEvent NEIGHBOR_FIX = new NeighborFixEvent();
+    private static final BatchCommitEvent BATCH_COMMIT = new BatchCommitEvent();
+
+    private AutoTileEvents() {
+    }
+
+    static Object beginAutoTile() {
+        if (!AUTO_TILE.isEnabled()) return null;
+        AutoTileEvent event = new AutoTileEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitAutoTile(Object event, int x, int y, BitmaskingType bitmaskingType, String brush, int cellsTouched) {
+        AutoTileEvent autoTileEvent = (AutoTileEvent) event;
+        autoTileEvent.end();
+        if (!autoTileEvent.shouldCommit()) return;
+        autoTileEvent.x = x;
+        autoTileEvent.y = y;
+        autoTileEvent.bitmaskingType = getName(bitmaskingType);
+        autoTileEvent.brush = brush;
+        autoTileEvent.cellsTouched = cellsTouched;
+        autoTileEvent.commit();
+    }
+
+    static Object beginEraseTile() {
+        if (!ERASE_TILE.isEnabled()) return null;
+        EraseTileEvent event = new EraseTileEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitEraseTile(Object event, int x, int y, boolean removed) {
+        EraseTileEvent eraseTileEvent = (EraseTileEvent) event;
+        eraseTileEvent.end();
+        if (!eraseTileEvent.shouldCommit()) return;
+        eraseTileEvent.x = x;
+        eraseTileEvent.y = y;
+        eraseTileEvent.removed = removed;
+        eraseTileEvent.cellsTouched = 1;
+        eraseTileEvent.commit();
+    }
+
+    static Object beginNeighborFix() {
+        if (!NEIGHBOR_FIX.isEnabled()) return null;
+        NeighborFixEvent event = new NeighborFixEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitNeighborFix(Object event, int x, int y, BitmaskingType bitmaskingType, int cellsTouched) {
+        NeighborFixEvent neighborFixEvent = (NeighborFixEvent) event;
+        neighborFixEvent.end();
+        if (!neighborFixEvent.shouldCommit()) return;
+        neighborFixEvent.x = x;
+        neighborFixEvent.y = y;
+        neighborFixEvent.bitmaskingType = getName(bitmaskingType);
+        neighborFixEvent.cellsTouched = cellsTouched;
+        neighborFixEvent.commit();
+    }
+
+    static Object beginBatchCommit() {
+        if (!BATCH_COMMIT.isEnabled()) return null;
+        BatchCommitEvent event = new BatchCommitEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitBatchCommit(Object event, int cellsTouched) {
+        BatchCommitEvent batchCommitEvent = (BatchCommitEvent) event;
+        batchCommitEvent.end();
+        if (!batchCommitEvent.shouldCommit()) return;
+        batchCommitEvent.cellsTouched = cellsTouched;
+        batchCommitEvent.commit();
+    }
+
+    private static String getName(BitmaskingType bitmaskingType) {
+        return bitmaskingType == null ? null : bitmaskingType.name();
+    }
+}
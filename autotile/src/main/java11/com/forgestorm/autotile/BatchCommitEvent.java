@@ -0,0 +1,27 @@
+package com.forgestorm.autotile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a batch written by {@link AutoTiler#commit()}. Disabled by default.
+ *
+ * @author unenergizer
+ */
+@Name("com.forgestorm.autotile.BatchCommit")
+@Label("Batch Commit")
+@Description("A batch of edits auto tiled and written")
+@Category({"ForgeStorm", "Auto Tile"})
+@Enabled(false)
+@StackTrace(false)
+final class BatchCommitEvent extends Event {
+
+    @Label("Cells Touched")
+    @Description("The number of tiles written")
+    int cellsTouched;
+}
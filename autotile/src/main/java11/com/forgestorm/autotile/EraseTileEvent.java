@@ -0,0 +1,37 @@
+package com.forgestorm.autotile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a tile erased by {@link AutoTiler#eraseTile(int, int)} or
+ * {@link AutoTiler#removeTile(int, int)}. Disabled by default.
+ *
+ * @author unenergizer
+ */
+@Name("com.forgestorm.autotile.EraseTile")
+@Label("Erase Tile")
+@Description("A tile erased and its neighbors updated")
+@Category({"ForgeStorm", "Auto Tile"})
+@Enabled(false)
+@StackTrace(false)
+final class EraseTileEvent extends Event {
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Removed")
+    @Description("True if the auto tiler cleared the tile itself")
+    boolean removed;
+
+    @Label("Cells Touched")
+    int cellsTouched;
+}
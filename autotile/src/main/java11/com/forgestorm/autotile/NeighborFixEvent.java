@@ -0,0 +1,38 @@
+package com.forgestorm.autotile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the neighbors re-tiled around a placed brush, a flood fill or an erased tile.
+ * Disabled by default.
+ *
+ * @author unenergizer
+ */
+@Name("com.forgestorm.autotile.NeighborFix")
+@Label("Neighbor Fix")
+@Description("Neighboring tiles re-tiled after an edit")
+@Category({"ForgeStorm", "Auto Tile"})
+@Enabled(false)
+@StackTrace(false)
+final class NeighborFixEvent extends Event {
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Bitmasking Type")
+    @Description("The type of the placed family, or null for an erase")
+    String bitmaskingType;
+
+    @Label("Cells Touched")
+    @Description("The number of neighbors re-tiled")
+    int cellsTouched;
+}
@@ -0,0 +1,51 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that single threaded edits of an int map do not allocate, by counting the bytes allocated by the test
+ * thread. Skipped on JVMs that can not count them.
+ */
+public class AllocationTest {
+
+    private static final int OPERATIONS = 20000;
+
+    @Test
+    public void editsDoNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) return;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) return;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(new int[64][64]));
+        int type4 = autoTiler.registerFamily(BitmaskingType.TYPE_4);
+        int type8 = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        Brush brush = Brush.square(3);
+
+        // The first round grows the scratch arrays and loads every class used
+        edit(autoTiler, type4, type8, brush);
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        edit(autoTiler, type4, type8, brush);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Three operations per round. A single allocation per operation would be far more than a byte each.
+        assertTrue(allocated + " bytes allocated by " + OPERATIONS * 3 + " operations", allocated < OPERATIONS);
+    }
+
+    private static void edit(AutoTiler autoTiler, int type4, int type8, Brush brush) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            int x = 2 + i * 7 % 60;
+            int y = 2 + i * 13 % 60;
+            autoTiler.autoTile((i & 1) == 0 ? type4 : type8, x, y);
+            autoTiler.autoTile(type8, x, y, brush);
+            autoTiler.eraseTile(x, y);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the counts of a brush stamp against the cells it must read and write, and the bucket and percentile
+ * boundaries of {@link AutoTileMetrics.LatencyHistogram} with known latencies.
+ */
+public class AutoTileMetricsTest {
+
+    @Test
+    public void brushStampIsCounted() {
+        AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(new int[20][20]));
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        AutoTileMetrics metrics = new AutoTileMetrics();
+        List<AutoTileMetrics.OperationSample> samples = new ArrayList<>();
+        metrics.setOperationListener(samples::add);
+        autoTiler.setMetrics(metrics);
+
+        // A 3x3 brush on an empty map reads its 9 cells and the ring of 16 around it once each. The 8 edge cells
+        // read 32 neighbors back from the window, and fixing the ring reads the 12 ring cells next to an edge again.
+        autoTiler.autoTile(familyId, 10, 10, Brush.square(3));
+        assertEquals(25, metrics.getReads());
+        assertEquals(9, metrics.getWrites());
+        assertEquals(0, metrics.getSuppressedWrites());
+        assertEquals(0, metrics.getNeighborFixes());
+        assertEquals(32 + 12, metrics.getCacheHits());
+        assertEquals(9, metrics.getCellsTouched());
+
+        AutoTileMetrics.OperationSample sample = samples.get(0);
+        assertEquals(AutoTileMetrics.Operation.AUTO_TILE, sample.getOperation());
+        assertEquals(25, sample.getReads());
+        assertEquals(9, sample.getWrites());
+        assertEquals(44, sample.getCacheHits());
+        assertEquals(9, sample.getCellsTouched());
+        assertEquals(1, metrics.getHistogram(AutoTileMetrics.Operation.AUTO_TILE).getCount());
+
+        // Stamping it again reads the same cells, and every write is skipped
+        autoTiler.autoTile(familyId, 10, 10, Brush.square(3));
+        sample = samples.get(1);
+        assertEquals(25, sample.getReads());
+        assertEquals(0, sample.getWrites());
+        assertEquals(9, sample.getSuppressedWrites());
+        assertEquals(44, sample.getCacheHits());
+        assertEquals(9, metrics.getWrites());
+        assertEquals(9, metrics.getSuppressedWrites());
+
+        metrics.reset();
+        assertEquals(0, metrics.getReads());
+        assertEquals(0, metrics.getHistogram(AutoTileMetrics.Operation.AUTO_TILE).getCount());
+    }
+
+    @Test
+    public void histogramBucketsArePowersOfTwo() {
+        AutoTileMetrics.LatencyHistogram histogram = new AutoTileMetrics.LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0, histogram.getMeanNanos());
+
+        // Bucket i holds 2^i up to 2^(i + 1) - 1. Zero and negative latencies count as the first bucket.
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(1023);
+        histogram.record(1024);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(3, histogram.getBucketCount(0));
+        assertEquals(2, histogram.getBucketCount(1));
+        assertEquals(1, histogram.getBucketCount(2));
+        assertEquals(1, histogram.getBucketCount(9));
+        assertEquals(1, histogram.getBucketCount(10));
+        assertEquals(1, histogram.getBucketCount(62));
+        assertEquals(9, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        AutoTileMetrics.LatencyHistogram histogram = new AutoTileMetrics.LatencyHistogram();
+        for (long nanos : new long[]{1, 2, 3, 5, 1000}) histogram.record(nanos);
+        assertEquals(5, histogram.getCount());
+        assertEquals(1011, histogram.getTotalNanos());
+        assertEquals(1011 / 5, histogram.getMeanNanos());
+
+        // The rank of a percentile is rounded up, and its bucket reports its upper bound
+        assertEquals(1, histogram.getPercentileNanos(0));
+        assertEquals(1, histogram.getPercentileNanos(20));
+        assertEquals(3, histogram.getPercentileNanos(21));
+        assertEquals(3, histogram.getPercentileNanos(60));
+        assertEquals(7, histogram.getPercentileNanos(80));
+        // The last bucket is capped by the highest latency, 1000 rather than 1023
+        assertEquals(1000, histogram.getPercentileNanos(99));
+        assertEquals(1000, histogram.getPercentileNanos(100));
+        assertEquals(1000, histogram.getPercentileNanos(150));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getBucketCount(0));
+    }
+}
@@ -0,0 +1,245 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the {@link AutoTiler} against the {@link ReferenceTiler} after random mixes of edits.
+ */
+public class AutoTilerReferenceTest {
+
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 40;
+
+    @Test
+    public void randomEditsMatchReference() {
+        for (boolean yUp : new boolean[]{false, true}) {
+            int[][] map = new int[WIDTH][HEIGHT];
+            AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+            autoTiler.setYUp(yUp);
+            int[] families = {autoTiler.registerFamily(BitmaskingType.TYPE_4),
+                    autoTiler.registerFamily(BitmaskingType.TYPE_8), autoTiler.registerFamily(BitmaskingType.TYPE_8)};
+
+            Random random = new Random(7);
+            for (int step = 0; step < 3000; step++) {
+                boolean batch = random.nextBoolean();
+                if (batch) autoTiler.beginBatch();
+                for (int edit = random.nextInt(30); edit >= 0; edit--) {
+                    int x = random.nextInt(WIDTH);
+                    int y = random.nextInt(HEIGHT);
+                    int familyId = families[random.nextInt(families.length)];
+                    int kind = random.nextInt(10);
+                    autoTiler.setBrushType(BrushType.values()[random.nextInt(BrushType.values().length)]);
+                    if (kind == 0) {
+                        int width = 1 + random.nextInt(8);
+                        int height = 1 + random.nextInt(8);
+                        autoTiler.autoTileRegion(familyId, Math.min(x, WIDTH - width), Math.min(y, HEIGHT - height), width, height);
+                    } else if (kind == 1) {
+                        // The caller clears the cell, eraseTile fixes its neighbors
+                        map[x][y] = TileId.EMPTY;
+                        autoTiler.eraseTile(x, y);
+                    } else {
+                        autoTiler.autoTile(familyId, Math.min(x, WIDTH - 3), Math.min(y, HEIGHT - 3));
+                    }
+                }
+                if (batch) autoTiler.commit();
+                assertNull("yUp=" + yUp + " step " + step, ReferenceTiler.findMismatch(map, autoTiler));
+            }
+        }
+    }
+
+    @Test
+    public void unchangedTilesAreNotWritten() {
+        int[][] map = new int[WIDTH][HEIGHT];
+        IntTileGetterSetter grid = ReferenceTiler.grid(map);
+        int[] changelessWrites = new int[1];
+        AutoTiler autoTiler = new AutoTiler(new IntTileGetterSetter() {
+            @Override
+            public int getTileId(int x, int y) {
+                return grid.getTileId(x, y);
+            }
+
+            @Override
+            public void setTileId(int tileId, int x, int y) {
+                if (grid.getTileId(x, y) == tileId) changelessWrites[0]++;
+                grid.setTileId(tileId, x, y);
+            }
+        });
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        autoTiler.autoTileRegion(familyId, 10, 10, 10, 10);
+
+        // Placing the tile again on the edge of the area changes nothing, not even the placed cell
+        changelessWrites[0] = 0;
+        autoTiler.autoTile(familyId, 10, 15);
+        autoTiler.eraseTile(30, 30);
+        assertEquals(0, changelessWrites[0]);
+
+        // Stamping a brush or filling a region again only rewrites the tiles that change, interior ones included
+        autoTiler.autoTile(familyId, 40, 40, Brush.square(8));
+        autoTiler.autoTile(familyId, 50, 20, Brush.circle(4));
+        changelessWrites[0] = 0;
+        autoTiler.autoTile(familyId, 40, 40, Brush.square(8));
+        autoTiler.autoTile(familyId, 50, 20, Brush.circle(4));
+        autoTiler.autoTileRegion(familyId, 10, 10, 10, 10);
+        autoTiler.autoTileRegion(familyId, 12, 12, 4, 4);
+        assertEquals(0, changelessWrites[0]);
+
+        // With a journal attached, removing an empty tile writes nothing either
+        autoTiler.setEditJournal(new EditJournal());
+        autoTiler.autoTile(familyId, 40, 40, Brush.square(8));
+        autoTiler.removeTile(60, 60);
+        assertEquals(0, changelessWrites[0]);
+    }
+
+    @Test
+    public void reTileLayersMatchesReference() {
+        int[][][] layers = new int[2][WIDTH][HEIGHT];
+        AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(new int[1][1]));
+        int[] families = {TileId.EMPTY, autoTiler.registerFamily(BitmaskingType.TYPE_8),
+                autoTiler.registerFamily(BitmaskingType.TYPE_4), autoTiler.registerFamily(null)};
+        Random random = new Random(7);
+        for (int[][] layer : layers) {
+            for (int x = 0; x < WIDTH; x++) {
+                for (int y = 0; y < HEIGHT; y++) layer[x][y] = TileId.pack(families[random.nextInt(families.length)], 0);
+            }
+        }
+        LayeredTileGetterSetter layeredTileGetterSetter = new LayeredTileGetterSetter() {
+            @Override
+            public int getLayerCount() {
+                return layers.length;
+            }
+
+            @Override
+            public int getTileId(int layer, int x, int y) {
+                return ReferenceTiler.grid(layers[layer]).getTileId(x, y);
+            }
+
+            @Override
+            public void setTileId(int layer, int tileId, int x, int y) {
+                ReferenceTiler.grid(layers[layer]).setTileId(tileId, x, y);
+            }
+        };
+        AutoTileMetrics metrics = new AutoTileMetrics();
+        autoTiler.setMetrics(metrics);
+
+        // Families never change, so re-tiling every cell leaves every layer tiled
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) autoTiler.reTileLayers(layeredTileGetterSetter, x, y);
+        }
+        assertNull("layer 0", ReferenceTiler.findMismatch(layers[0], autoTiler));
+        assertNull("layer 1", ReferenceTiler.findMismatch(layers[1], autoTiler));
+
+        // Each call re-tiles the cell and its neighbors on both layers
+        assertEquals((long) WIDTH * HEIGHT * 2 * 9, metrics.getCellsTouched());
+        assertEquals(0, autoTiler.reTileLayers(layeredTileGetterSetter, 10, 10));
+    }
+
+    @Test
+    public void concurrentEditsMatchReference() throws Exception {
+        for (int round = 0; round < 4; round++) {
+            int size = 200;
+            int[][] map = new int[size][size];
+            AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+            autoTiler.setThreadSafe(true);
+            autoTiler.setYUp(round % 2 == 1);
+            int[] families = {autoTiler.registerFamily(BitmaskingType.TYPE_4), autoTiler.registerFamily(BitmaskingType.TYPE_8)};
+
+            ExecutorService executorService = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    long seed = thread + round * 10L;
+                    futures.add(executorService.submit(() -> {
+                        Random random = new Random(seed);
+                        for (int edit = 0; edit < 20000; edit++) {
+                            int x = 1 + random.nextInt(size - 4);
+                            int y = 1 + random.nextInt(size - 4);
+                            int familyId = families[random.nextInt(families.length)];
+                            if (random.nextInt(10) == 0) {
+                                autoTiler.autoTileRegion(familyId, x, y, Math.min(5, size - 1 - x), Math.min(5, size - 1 - y));
+                            } else {
+                                autoTiler.autoTile(familyId, x, y);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) future.get();
+            } finally {
+                executorService.shutdown();
+            }
+            assertNull("round " + round, ReferenceTiler.findMismatch(map, autoTiler));
+        }
+    }
+
+    @Test
+    public void floodFillMatchesReference() {
+        Random random = new Random(3);
+        for (boolean yUp : new boolean[]{false, true}) {
+            for (int fill = 0; fill < 200; fill++) {
+                int width = 40, height = 30;
+                int[][] map = new int[width][height];
+                AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+                autoTiler.setYUp(yUp);
+                int[] families = {autoTiler.registerFamily(BitmaskingType.TYPE_4),
+                        autoTiler.registerFamily(BitmaskingType.TYPE_8), autoTiler.registerFamily(BitmaskingType.TYPE_8)};
+                for (int region = 0; region < 40; region++) {
+                    int regionWidth = 1 + random.nextInt(10);
+                    int regionHeight = 1 + random.nextInt(10);
+                    autoTiler.autoTileRegion(families[random.nextInt(families.length)], random.nextInt(width - regionWidth + 1),
+                            random.nextInt(height - regionHeight + 1), regionWidth, regionHeight);
+                }
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                if (map[x][y] == TileId.EMPTY) continue;
+
+                int targetFamilyId = TileId.getFamilyId(map[x][y]);
+                int familyId = families[random.nextInt(families.length)];
+                boolean[][] area = findArea(map, x, y);
+                int expectedCount = 0;
+                if (familyId != targetFamilyId) {
+                    for (boolean[] column : area) for (boolean cell : column) if (cell) expectedCount++;
+                }
+                assertEquals(expectedCount, autoTiler.floodFill(familyId, x, y, Integer.MAX_VALUE));
+                for (int areaX = 0; areaX < width; areaX++) {
+                    for (int areaY = 0; areaY < height; areaY++) {
+                        if (area[areaX][areaY]) assertEquals(familyId, TileId.getFamilyId(map[areaX][areaY]));
+                    }
+                }
+                assertNull("yUp=" + yUp + " fill " + fill, ReferenceTiler.findMismatch(map, autoTiler));
+            }
+        }
+    }
+
+    /**
+     * Finds the cells of the same family connected to a cell through their sides.
+     */
+    private static boolean[][] findArea(int[][] map, int x, int y) {
+        int familyId = TileId.getFamilyId(map[x][y]);
+        boolean[][] visited = new boolean[map.length][map[0].length];
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{x, y});
+        visited[x][y] = true;
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            for (TileLocations side : new TileLocations[]{TileLocations.NORTH, TileLocations.SOUTH, TileLocations.WEST, TileLocations.EAST}) {
+                int nextX = side.getX(cell[0]);
+                int nextY = side.getY(cell[1], false);
+                if (nextX < 0 || nextY < 0 || nextX >= map.length || nextY >= map[0].length || visited[nextX][nextY]) continue;
+                if (TileId.getFamilyId(map[nextX][nextY]) != familyId) continue;
+                visited[nextX][nextY] = true;
+                queue.add(new int[]{nextX, nextY});
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,187 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that streamed chunks are tiled like the {@link ReferenceTiler} tiles the whole world once their borders are
+ * resolved, and that stale and failed requests are handed back. Workers run on the calling thread, so every
+ * requested chunk is loaded before the next call.
+ */
+public class ChunkStreamerTest {
+
+    private static final int CHUNK_SHIFT = 3;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNKS = 4;
+
+    @Test
+    public void resolvedBordersMatchReference() {
+        for (boolean yUp : new boolean[]{false, true}) {
+            int size = CHUNKS * CHUNK_SIZE;
+            int[][] map = new int[size][size];
+            AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+            autoTiler.setYUp(yUp);
+            int[] families = {TileId.EMPTY, autoTiler.registerFamily(BitmaskingType.TYPE_8),
+                    autoTiler.registerFamily(BitmaskingType.TYPE_4), autoTiler.registerFamily(null)};
+            ChunkedTileMap chunkedTileMap = new ChunkedTileMap(CHUNK_SHIFT);
+            List<String> changedChunks = new ArrayList<>();
+            ChunkStreamer chunkStreamer = new ChunkStreamer(autoTiler, chunkedTileMap,
+                    (chunkX, chunkY) -> generateFamilies(families, chunkX, chunkY), new DirectExecutor());
+            chunkStreamer.setChunkListener((chunkX, chunkY) -> changedChunks.add(chunkX + "," + chunkY));
+
+            // Chunks arrive in any order, and each one is published before the next is requested
+            List<Integer> chunks = new ArrayList<>();
+            for (int chunk = 0; chunk < CHUNKS * CHUNKS; chunk++) chunks.add(chunk);
+            Collections.shuffle(chunks, new Random(yUp ? 2 : 1));
+            for (int chunk : chunks) {
+                assertTrue(chunkStreamer.requestChunk(chunk % CHUNKS, chunk / CHUNKS));
+                assertEquals(1, chunkStreamer.getPendingCount());
+                changedChunks.clear();
+                assertEquals(1, chunkStreamer.publish(10));
+                assertEquals(0, chunkStreamer.getPendingCount());
+                assertTrue(changedChunks.contains(chunk % CHUNKS + "," + chunk / CHUNKS));
+            }
+            assertFalse(chunkStreamer.requestChunk(0, 0));
+
+            // The whole world, as placed by hand and tiled by the reference
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    map[x][y] = chunkedTileMap.getTileId(x, y);
+                    int familyId = generateFamilies(families, x / CHUNK_SIZE, y / CHUNK_SIZE)[y % CHUNK_SIZE * CHUNK_SIZE + x % CHUNK_SIZE];
+                    assertEquals(familyId, TileId.getFamilyId(map[x][y]));
+                }
+            }
+            assertNull("yUp=" + yUp, ReferenceTiler.findMismatch(map, autoTiler));
+        }
+    }
+
+    @Test
+    public void unloadedChunksAreDropped() {
+        AutoTiler autoTiler = new AutoTiler(new ArrayTileGrid(1, 1));
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        ChunkedTileMap chunkedTileMap = new ChunkedTileMap(CHUNK_SHIFT);
+        int[] loads = new int[1];
+        ChunkStreamer chunkStreamer = new ChunkStreamer(autoTiler, chunkedTileMap, (chunkX, chunkY) -> {
+            int[] families = new int[CHUNK_SIZE * CHUNK_SIZE];
+            if (++loads[0] > 1) Arrays.fill(families, familyId);
+            return families;
+        }, new DirectExecutor());
+
+        // The first load is unloaded before it is published, then the chunk is requested again
+        assertTrue(chunkStreamer.requestChunk(0, 0));
+        chunkStreamer.unloadChunk(0, 0);
+        assertEquals(0, chunkStreamer.getPendingCount());
+        assertTrue(chunkStreamer.requestChunk(0, 0));
+        assertEquals(1, chunkStreamer.publish(10));
+        assertEquals(TileId.pack(familyId, 255), chunkedTileMap.getTileId(3, 3));
+
+        // A chunk unloaded while loading is never installed
+        assertTrue(chunkStreamer.requestChunk(1, 0));
+        chunkStreamer.unloadChunk(1, 0);
+        assertEquals(0, chunkStreamer.publish(10));
+        assertNull(chunkedTileMap.getChunk(1, 0));
+        assertEquals(1, chunkedTileMap.getChunkCount());
+    }
+
+    @Test
+    public void failuresAreHandedBack() {
+        AutoTiler autoTiler = new AutoTiler(new ArrayTileGrid(1, 1));
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        ChunkedTileMap chunkedTileMap = new ChunkedTileMap(CHUNK_SHIFT);
+        boolean[] failing = {true};
+        DirectExecutor directExecutor = new DirectExecutor();
+        ChunkStreamer chunkStreamer = new ChunkStreamer(autoTiler, chunkedTileMap, (chunkX, chunkY) -> {
+            if (failing[0]) throw new IOException("Disk error");
+            if (chunkX == 1) return new int[3];
+            int[] families = new int[CHUNK_SIZE * CHUNK_SIZE];
+            Arrays.fill(families, familyId);
+            return families;
+        }, directExecutor);
+
+        // A failed load reaches the main thread, and the chunk can be requested again
+        assertTrue(chunkStreamer.requestChunk(0, 0));
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class, () -> chunkStreamer.publish(10));
+        assertEquals("Disk error", exception.getCause().getMessage());
+        assertEquals(0, chunkStreamer.getPendingCount());
+        failing[0] = false;
+        assertTrue(chunkStreamer.requestChunk(0, 0));
+        assertEquals(1, chunkStreamer.publish(10));
+
+        // So does a chunk of the wrong size
+        assertTrue(chunkStreamer.requestChunk(1, 0));
+        assertThrows(IllegalStateException.class, () -> chunkStreamer.publish(10));
+        assertEquals(0, chunkStreamer.getPendingCount());
+
+        // A rejected worker does not leave the chunk pending
+        directExecutor.rejecting = true;
+        assertThrows(RejectedExecutionException.class, () -> chunkStreamer.requestChunk(2, 0));
+        assertEquals(0, chunkStreamer.getPendingCount());
+        directExecutor.rejecting = false;
+        assertTrue(chunkStreamer.requestChunk(2, 0));
+        assertEquals(1, chunkStreamer.publish(10));
+        assertEquals(2, chunkedTileMap.getChunkCount());
+    }
+
+    /**
+     * Generates the families of a chunk, the same every time for the same chunk.
+     */
+    private static int[] generateFamilies(int[] families, int chunkX, int chunkY) {
+        Random random = new Random(chunkY * 1000L + chunkX);
+        int[] generated = new int[CHUNK_SIZE * CHUNK_SIZE];
+        for (int i = 0; i < generated.length; i++) generated[i] = families[random.nextInt(families.length)];
+        return generated;
+    }
+
+    /**
+     * Runs every worker on the calling thread, or rejects it.
+     */
+    private static final class DirectExecutor extends AbstractExecutorService {
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) throw new RejectedExecutionException("Rejected");
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
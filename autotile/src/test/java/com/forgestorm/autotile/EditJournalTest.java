@@ -0,0 +1,139 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link EditJournal} merges strokes, drops unchanged cells, forgets undone operations on a new
+ * edit and evicts the oldest operations first.
+ */
+public class EditJournalTest {
+
+    @Test
+    public void strokeIsUndoneInOneStep() {
+        int[][] map = new int[20][20];
+        AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        EditJournal editJournal = new EditJournal();
+        autoTiler.setEditJournal(editJournal);
+        autoTiler.autoTile(familyId, 2, 2);
+        int[][] before = copy(map);
+
+        // Painting over the same cells again and again is one operation, storing each cell once
+        editJournal.beginStroke();
+        for (int x = 4; x < 12; x++) {
+            autoTiler.autoTile(familyId, x, 5);
+            autoTiler.autoTile(familyId, x, 5);
+            autoTiler.autoTile(familyId, x, 6);
+        }
+        autoTiler.removeTile(11, 6);
+        editJournal.endStroke();
+        int[][] after = copy(map);
+        assertEquals(2, editJournal.getUndoCount());
+        // The first operation holds one cell. The stroke holds the 15 cells still painted, as the removed cell ended
+        // up unchanged, each once with an x, y, before and after.
+        assertEquals(2 * 24 + (1 + 15) * 4 * Integer.BYTES, editJournal.getUsedBytes());
+
+        assertTrue(autoTiler.undo());
+        assertMapEquals(before, map);
+        assertTrue(autoTiler.redo());
+        assertMapEquals(after, map);
+    }
+
+    @Test
+    public void unchangedCellsAreDropped() {
+        int[][] map = new int[4][4];
+        IntTileGetterSetter grid = ReferenceTiler.grid(map);
+        EditJournal editJournal = new EditJournal();
+
+        // A cell written back to what it held is not stored, nor is an operation with no other change
+        editJournal.record(1, 1, 0, 5);
+        editJournal.record(1, 1, 5, 0);
+        editJournal.endOperation();
+        assertEquals(0, editJournal.getUndoCount());
+        assertEquals(0, editJournal.getUsedBytes());
+
+        editJournal.record(1, 1, 0, 5);
+        editJournal.record(2, 2, 7, 7);
+        editJournal.endOperation();
+        assertEquals(1, editJournal.getUndoCount());
+        assertEquals(24 + 4 * Integer.BYTES, editJournal.getUsedBytes());
+
+        // Undoing only writes the cell that changed
+        map[1][1] = 5;
+        map[2][2] = 9;
+        assertTrue(editJournal.undo(grid));
+        assertEquals(0, map[1][1]);
+        assertEquals(9, map[2][2]);
+    }
+
+    @Test
+    public void newEditDiscardsRedo() {
+        int[][] map = new int[4][4];
+        IntTileGetterSetter grid = ReferenceTiler.grid(map);
+        EditJournal editJournal = new EditJournal();
+        recordOperation(editJournal, grid, 0, 1);
+        recordOperation(editJournal, grid, 1, 2);
+        long oneOperationBytes = editJournal.getUsedBytes() / 2;
+
+        assertTrue(editJournal.undo(grid));
+        assertTrue(editJournal.canRedo());
+        assertEquals(2 * oneOperationBytes, editJournal.getUsedBytes());
+
+        recordOperation(editJournal, grid, 2, 3);
+        assertFalse(editJournal.canRedo());
+        assertFalse(editJournal.redo(grid));
+        assertEquals(2, editJournal.getUndoCount());
+        assertEquals(2 * oneOperationBytes, editJournal.getUsedBytes());
+    }
+
+    @Test
+    public void oldestOperationsAreEvictedFirst() {
+        int[][] map = new int[4][4];
+        IntTileGetterSetter grid = ReferenceTiler.grid(map);
+        long oneOperationBytes = 24 + 4 * Integer.BYTES;
+        EditJournal editJournal = new EditJournal(oneOperationBytes * 2);
+        for (int x = 0; x < 4; x++) recordOperation(editJournal, grid, x, 1);
+        assertEquals(2, editJournal.getUndoCount());
+        assertEquals(oneOperationBytes * 2, editJournal.getUsedBytes());
+
+        // The two newest operations are kept, the first two are gone
+        assertTrue(editJournal.undo(grid));
+        assertTrue(editJournal.undo(grid));
+        assertFalse(editJournal.undo(grid));
+        assertEquals(1, map[0][0]);
+        assertEquals(1, map[1][0]);
+        assertEquals(0, map[2][0]);
+        assertEquals(0, map[3][0]);
+
+        // The newest operation is kept even when it alone is over the budget
+        EditJournal tinyJournal = new EditJournal(1);
+        recordOperation(tinyJournal, grid, 0, 2);
+        recordOperation(tinyJournal, grid, 1, 2);
+        assertEquals(1, tinyJournal.getUndoCount());
+    }
+
+    /**
+     * Writes a tile to the first row of the map as the auto tiler would, as an operation of its own.
+     */
+    private static void recordOperation(EditJournal editJournal, IntTileGetterSetter grid, int x, int tileId) {
+        editJournal.record(x, 0, grid.getTileId(x, 0), tileId);
+        grid.setTileId(tileId, x, 0);
+        editJournal.endOperation();
+    }
+
+    private static int[][] copy(int[][] map) {
+        int[][] copy = new int[map.length][];
+        for (int x = 0; x < map.length; x++) copy[x] = map[x].clone();
+        return copy;
+    }
+
+    private static void assertMapEquals(int[][] expected, int[][] map) {
+        for (int x = 0; x < map.length; x++) {
+            for (int y = 0; y < map[0].length; y++) assertEquals(x + "," + y, expected[x][y], map[x][y]);
+        }
+    }
+}
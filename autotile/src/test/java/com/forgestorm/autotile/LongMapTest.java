@@ -0,0 +1,85 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the open addressing maps against {@link HashMap} with random puts and removes. Keys are drawn from a small
+ * range of packed cell keys, so probe sequences collide and removals shift entries back often.
+ */
+public class LongMapTest {
+
+    @Test
+    public void longMapMatchesHashMap() {
+        Random random = new Random(11);
+        LongMap<Integer> longMap = new LongMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200000; step++) {
+            long key = randomKey(random);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                assertEquals(expected.remove(key), longMap.remove(key));
+            } else if (operation == 1) {
+                assertEquals(expected.put(key, step), longMap.put(key, step));
+            } else {
+                assertEquals(expected.get(key), longMap.get(key));
+            }
+            assertEquals(expected.size(), longMap.size());
+            if (step % 50000 == 0) {
+                longMap.clear();
+                expected.clear();
+            }
+        }
+
+        // Every entry is reachable by iterating the slots
+        int entries = 0;
+        for (int slot = 0; slot < longMap.getCapacity(); slot++) {
+            if (longMap.getValueAt(slot) == null) continue;
+            assertEquals(expected.get(longMap.getKeyAt(slot)), longMap.getValueAt(slot));
+            entries++;
+        }
+        assertEquals(expected.size(), entries);
+    }
+
+    @Test
+    public void longIntMapMatchesHashMap() {
+        Random random = new Random(12);
+        LongIntMap longIntMap = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200000; step++) {
+            long key = randomKey(random);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                expected.remove(key);
+                longIntMap.remove(key);
+            } else if (operation == 1) {
+                expected.put(key, step);
+                longIntMap.put(key, step);
+            } else {
+                assertEquals(expected.containsKey(key), longIntMap.containsKey(key));
+                assertEquals((int) expected.getOrDefault(key, -1), longIntMap.get(key, -1));
+            }
+            assertEquals(expected.size(), longIntMap.size());
+        }
+
+        int entries = 0;
+        for (int slot = 0; slot < longIntMap.getCapacity(); slot++) {
+            if (!longIntMap.isOccupied(slot)) continue;
+            assertEquals((int) expected.get(longIntMap.getKeyAt(slot)), longIntMap.getValueAt(slot));
+            entries++;
+        }
+        assertEquals(expected.size(), entries);
+    }
+
+    /**
+     * A cell key of a 40 by 40 area around the origin.
+     */
+    private static long randomKey(Random random) {
+        return TileBatch.cellKey(random.nextInt(40) - 20, random.nextInt(40) - 20);
+    }
+}
@@ -0,0 +1,131 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that map files read back what was written to them, and that corrupt files fail when opened rather than on
+ * a later read.
+ */
+public class MappedTileMapTest {
+
+    @Test
+    public void reopenedMapReadsBackWrites() throws IOException {
+        Path path = Files.createTempFile("autotile", ".map");
+        try {
+            try (MappedTileMap map = MappedTileMap.create(path, 100, 70)) {
+                map.setTileId(TileId.pack(3, 17), 0, 0);
+                map.setTileId(TileId.pack(4, 255), 99, 69);
+                map.setTileId(TileId.pack(5, 1), 64, 10);
+                // Writes outside the map and empty writes to empty chunks store nothing
+                map.setTileId(TileId.pack(6, 1), 100, 0);
+                map.setTileId(TileId.EMPTY, 10, 68);
+                assertEquals(3, map.getChunkCount());
+            }
+
+            try (MappedTileMap map = MappedTileMap.open(path, true)) {
+                assertEquals(100, map.getWidth());
+                assertEquals(70, map.getHeight());
+                assertEquals(MappedTileMap.DEFAULT_CHUNK_SHIFT, map.getChunkShift());
+                assertEquals(3, map.getChunkCount());
+                assertEquals(TileId.pack(3, 17), map.getTileId(0, 0));
+                assertEquals(TileId.pack(4, 255), map.getTileId(99, 69));
+                assertEquals(TileId.pack(5, 1), map.getTileId(64, 10));
+                assertEquals(TileId.EMPTY, map.getTileId(1, 0));
+                assertEquals(TileId.EMPTY, map.getTileId(10, 68));
+                assertEquals(TileId.EMPTY, map.getTileId(-1, 0));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void appendingChunksGrowsTheFile() throws IOException {
+        Path path = Files.createTempFile("autotile", ".map");
+        try {
+            // Chunks of 2 by 2 tiles, so every other cell of a row starts a new chunk
+            int size = 40;
+            long emptySize;
+            try (MappedTileMap map = MappedTileMap.create(path, size, size, 1)) {
+                emptySize = Files.size(path);
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) map.setTileId(tileId(x, y), x, y);
+                }
+                assertEquals(size * size / 4, map.getChunkCount());
+            }
+            assertTrue(Files.size(path) > emptySize);
+
+            try (MappedTileMap map = MappedTileMap.open(path, false)) {
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) assertEquals(tileId(x, y), map.getTileId(x, y));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void corruptHeaderFailsToOpen() throws IOException {
+        Path path = Files.createTempFile("autotile", ".map");
+        try {
+            MappedTileMap.create(path, 100, 100).close();
+            putInt(path, 20, -1);
+            IOException exception = assertThrows(IOException.class, () -> MappedTileMap.open(path, true));
+            assertTrue(exception.getMessage(), exception.getMessage().startsWith("Invalid chunk count"));
+
+            putInt(path, 20, 5);
+            exception = assertThrows(IOException.class, () -> MappedTileMap.open(path, true));
+            assertTrue(exception.getMessage(), exception.getMessage().startsWith("The map file holds fewer chunks"));
+
+            putInt(path, 0, 0);
+            exception = assertThrows(IOException.class, () -> MappedTileMap.open(path, true));
+            assertTrue(exception.getMessage(), exception.getMessage().startsWith("Not a map file"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void corruptIndexFailsToOpen() throws IOException {
+        Path path = Files.createTempFile("autotile", ".map");
+        try {
+            try (MappedTileMap map = MappedTileMap.create(path, 100, 100)) {
+                map.setTileId(TileId.pack(1, 0), 0, 0);
+            }
+            // The second entry of the chunk index names a record the file does not hold
+            putInt(path, MappedTileMap.HEADER_BYTES + 4, 999999);
+            IOException exception = assertThrows(IOException.class, () -> MappedTileMap.open(path, true));
+            assertTrue(exception.getMessage(), exception.getMessage().startsWith("Invalid chunk record 999999"));
+
+            putInt(path, MappedTileMap.HEADER_BYTES + 4, -2);
+            assertThrows(IOException.class, () -> MappedTileMap.open(path, false));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static int tileId(int x, int y) {
+        return TileId.pack(1 + (x * 7 + y) % 5, (x + y * 3) & TileId.MASK);
+    }
+
+    private static void putInt(Path path, long position, int value) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, value);
+            fileChannel.write(buffer, position);
+        }
+    }
+}
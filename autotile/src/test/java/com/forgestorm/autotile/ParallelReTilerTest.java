@@ -0,0 +1,63 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that re-tiling a whole grid in parallel bands gives the same tiles as the {@link ReferenceTiler}.
+ */
+public class ParallelReTilerTest {
+
+    @Test
+    public void retileAllMatchesReference() {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (boolean yUp : new boolean[]{false, true}) {
+                int width = 300, height = 517;
+                AutoTiler autoTiler = new AutoTiler(new ArrayTileGrid(1, 1));
+                autoTiler.setYUp(yUp);
+                int[] families = {TileId.EMPTY, autoTiler.registerFamily(BitmaskingType.TYPE_4),
+                        autoTiler.registerFamily(BitmaskingType.TYPE_8), autoTiler.registerFamily(null)};
+
+                // Blobs of families with untiled bitmasks
+                ArrayTileGrid tileGrid = new ArrayTileGrid(width, height);
+                Random random = new Random(yUp ? 2 : 1);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int familyId = families[(x / 4 * 31 + y / 3 * 17 + random.nextInt(3)) % families.length];
+                        if (familyId != TileId.EMPTY) tileGrid.setTileId(TileId.pack(familyId, random.nextInt(256)), x, y);
+                    }
+                }
+                int[][] plainTiles = toArray(tileGrid);
+
+                new ParallelReTiler(autoTiler, forkJoinPool).retileAll(tileGrid);
+                int[][] map = toArray(tileGrid);
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        // Plain tiles and empty cells are left alone
+                        if (autoTiler.getFamilyType(TileId.getFamilyId(map[x][y])) == null && map[x][y] != plainTiles[x][y]) {
+                            throw new AssertionError("The plain tile at " + x + "," + y + " was changed.");
+                        }
+                    }
+                }
+                assertNull("yUp=" + yUp, ReferenceTiler.findMismatch(map, autoTiler));
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    private static int[][] toArray(TileGrid tileGrid) {
+        int[][] map = new int[tileGrid.getWidth()][tileGrid.getHeight()];
+        int[] row = new int[tileGrid.getWidth()];
+        for (int y = 0; y < tileGrid.getHeight(); y++) {
+            tileGrid.readRow(y, row, 0);
+            for (int x = 0; x < row.length; x++) map[x][y] = row[x];
+        }
+        return map;
+    }
+}
@@ -0,0 +1,93 @@
+package com.forgestorm.autotile;
+
+/**
+ * A slow, obviously correct auto tiler used to check the results of the real one. It recalculates the bitmask of a
+ * cell straight from the neighbors in a plain array, with none of the caching, batching or write skipping of the
+ * {@link AutoTiler}.
+ */
+final class ReferenceTiler {
+
+    private ReferenceTiler() {
+    }
+
+    /**
+     * Creates a map backed by an array indexed by {@code [x][y]}. Cells outside the array read as empty.
+     */
+    static IntTileGetterSetter grid(int[][] map) {
+        return new IntTileGetterSetter() {
+            @Override
+            public int getTileId(int x, int y) {
+                if (x < 0 || y < 0 || x >= map.length || y >= map[0].length) return TileId.EMPTY;
+                return map[x][y];
+            }
+
+            @Override
+            public void setTileId(int tileId, int x, int y) {
+                if (x < 0 || y < 0 || x >= map.length || y >= map[0].length) return;
+                map[x][y] = tileId;
+            }
+        };
+    }
+
+    /**
+     * Calculates the bitmask the tile at a location should have.
+     */
+    static int expectedMask(int[][] map, AutoTiler autoTiler, int x, int y) {
+        int familyId = TileId.getFamilyId(map[x][y]);
+        int north = autoTiler.isYUp() ? 1 : -1;
+        int neighbors = 0;
+        if (isFamily(map, familyId, x - 1, y + north)) neighbors |= RuleTable.NORTH_WEST;
+        if (isFamily(map, familyId, x, y + north)) neighbors |= RuleTable.NORTH;
+        if (isFamily(map, familyId, x + 1, y + north)) neighbors |= RuleTable.NORTH_EAST;
+        if (isFamily(map, familyId, x - 1, y)) neighbors |= RuleTable.WEST;
+        if (isFamily(map, familyId, x + 1, y)) neighbors |= RuleTable.EAST;
+        if (isFamily(map, familyId, x - 1, y - north)) neighbors |= RuleTable.SOUTH_WEST;
+        if (isFamily(map, familyId, x, y - north)) neighbors |= RuleTable.SOUTH;
+        if (isFamily(map, familyId, x + 1, y - north)) neighbors |= RuleTable.SOUTH_EAST;
+        return expectedMask(autoTiler.getFamilyType(familyId), neighbors);
+    }
+
+    /**
+     * Calculates the built-in bitmask of a combination of matching neighbors with the formulas of the tutorial,
+     * independently of the {@link RuleTable} used by the {@link AutoTiler}.
+     */
+    static int expectedMask(BitmaskingType bitmaskingType, int neighbors) {
+        boolean north = (neighbors & RuleTable.NORTH) != 0;
+        boolean west = (neighbors & RuleTable.WEST) != 0;
+        boolean east = (neighbors & RuleTable.EAST) != 0;
+        boolean south = (neighbors & RuleTable.SOUTH) != 0;
+        if (bitmaskingType == BitmaskingType.TYPE_4) {
+            return (north ? 1 : 0) + (west ? 2 : 0) + (east ? 4 : 0) + (south ? 8 : 0);
+        }
+        boolean northWest = (neighbors & RuleTable.NORTH_WEST) != 0 && north && west;
+        boolean northEast = (neighbors & RuleTable.NORTH_EAST) != 0 && north && east;
+        boolean southWest = (neighbors & RuleTable.SOUTH_WEST) != 0 && south && west;
+        boolean southEast = (neighbors & RuleTable.SOUTH_EAST) != 0 && south && east;
+        return (northWest ? 1 : 0) + (north ? 2 : 0) + (northEast ? 4 : 0) + (west ? 8 : 0) + (east ? 16 : 0)
+                + (southWest ? 32 : 0) + (south ? 64 : 0) + (southEast ? 128 : 0);
+    }
+
+    /**
+     * Finds the first auto tile of the map whose bitmask is not the one it should have.
+     *
+     * @return The location of the tile as "x,y", or null if every tile is correct.
+     */
+    static String findMismatch(int[][] map, AutoTiler autoTiler) {
+        for (int x = 0; x < map.length; x++) {
+            for (int y = 0; y < map[0].length; y++) {
+                int tileId = map[x][y];
+                if (autoTiler.getFamilyType(TileId.getFamilyId(tileId)) == null) continue;
+                int expected = expectedMask(map, autoTiler, x, y);
+                if (TileId.getMask(tileId) != expected) {
+                    return x + "," + y + " is " + TileId.getMask(tileId) + " instead of " + expected;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFamily(int[][] map, int familyId, int x, int y) {
+        if (x < 0 || y < 0 || x >= map.length || y >= map[0].length) return false;
+        return TileId.getFamilyId(map[x][y]) == familyId;
+    }
+}
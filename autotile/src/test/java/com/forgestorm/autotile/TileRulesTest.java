@@ -0,0 +1,273 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Checks that {@link TileRules} compile to tables picking the tiles their rules describe, including rules naming other
+ * families, and that every way of tiling a map follows them.
+ */
+public class TileRulesTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    @Test
+    public void builtInTablesMatchTheTutorial() {
+        for (int neighbors = 0; neighbors < 256; neighbors++) {
+            assertEquals(ReferenceTiler.expectedMask(BitmaskingType.TYPE_4, neighbors), RuleTable.TYPE_4.getTile(neighbors));
+            assertEquals(ReferenceTiler.expectedMask(BitmaskingType.TYPE_8, neighbors), RuleTable.TYPE_8.getTile(neighbors));
+        }
+        assertEquals(BitmaskingType.TYPE_4, RuleTable.TYPE_4.getBitmaskingType());
+        assertEquals(BitmaskingType.TYPE_8, RuleTable.TYPE_8.getBitmaskingType());
+    }
+
+    @Test
+    public void rulesNamingOtherFamiliesPickTheirTile() {
+        int[][] map = new int[WIDTH][HEIGHT];
+        AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+        int water = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        int sand = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        int shore = autoTiler.registerRuleFamily(new TileRules()
+                .where('w', water)
+                .where('s', sand)
+                .rule("? w ?  ? * s  ? ? ?", 37)
+                .otherwise(0)
+                .compile());
+
+        // North is towards lower Y
+        autoTiler.autoTile(water, 5, 4);
+        autoTiler.autoTile(shore, 5, 5);
+        assertEquals(TileId.pack(shore, 0), map[5][5]);
+        autoTiler.autoTile(sand, 6, 5);
+        assertEquals(TileId.pack(shore, 37), map[5][5]);
+        autoTiler.removeTile(6, 5);
+        assertEquals(TileId.pack(shore, 0), map[5][5]);
+    }
+
+    @Test
+    public void compiledTablesMatchTheRules() {
+        int water = 3, sand = 5, grass = 6;
+        RuleTable waterTable = waterRules(sand).compile();
+        RuleTable sandTable = sandRules(water).compile();
+        assertEquals(BitmaskingType.TYPE_8, waterTable.getBitmaskingType());
+        assertEquals(BitmaskingType.TYPE_4, sandTable.getBitmaskingType());
+
+        int[] families = {TileId.EMPTY, water, sand, grass};
+        Random random = new Random(3);
+        int[] neighbors = new int[8];
+        for (int i = 0; i < 200000; i++) {
+            for (int direction = 0; direction < 8; direction++) neighbors[direction] = families[random.nextInt(families.length)];
+            assertEquals(expectedWaterTile(water, sand, neighbors), getTile(waterTable, water, neighbors));
+            assertEquals(expectedSandTile(sand, water, neighbors), getTile(sandTable, sand, neighbors));
+        }
+    }
+
+    @Test
+    public void randomEditsMatchTheRules() throws InterruptedException {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (boolean yUp : new boolean[]{false, true}) {
+                int[][] map = new int[WIDTH][HEIGHT];
+                AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+                autoTiler.setYUp(yUp);
+                // The rules of water and sand name each other, so water gets its rules once sand has an ID
+                int water = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+                int sand = autoTiler.registerRuleFamily(sandRules(water).compile());
+                autoTiler.setRuleTable(water, waterRules(sand).compile());
+                int[] families = {water, sand, autoTiler.registerFamily(BitmaskingType.TYPE_4),
+                        autoTiler.registerFamily(BitmaskingType.TYPE_8)};
+
+                Random random = new Random(yUp ? 11 : 10);
+                for (int step = 0; step < 1500; step++) {
+                    boolean batch = random.nextInt(4) == 0;
+                    if (batch) autoTiler.beginBatch();
+                    for (int edit = random.nextInt(12); edit >= 0; edit--) {
+                        int x = random.nextInt(WIDTH);
+                        int y = random.nextInt(HEIGHT);
+                        int familyId = families[random.nextInt(families.length)];
+                        int kind = random.nextInt(12);
+                        autoTiler.setBrushType(BrushType.values()[random.nextInt(BrushType.values().length)]);
+                        if (kind == 0) {
+                            int width = 1 + random.nextInt(6);
+                            int height = 1 + random.nextInt(6);
+                            autoTiler.autoTileRegion(familyId, Math.min(x, WIDTH - width), Math.min(y, HEIGHT - height), width, height);
+                        } else if (kind == 1 && map[x][y] != TileId.EMPTY) {
+                            // Empty areas run past the edges of the map, which reads as empty
+                            autoTiler.floodFill(familyId, x, y, 60);
+                        } else if (kind < 4) {
+                            autoTiler.removeTile(x, y);
+                        } else {
+                            autoTiler.autoTile(familyId, Math.min(x, WIDTH - 3), Math.min(y, HEIGHT - 3));
+                        }
+                    }
+                    if (batch) autoTiler.commit();
+                    assertNull("yUp=" + yUp + " step " + step, findMismatch(map, autoTiler, water, sand));
+                }
+
+                // Tiling the whole map from its families gives the same tiles
+                ArrayTileGrid tileGrid = untiledGrid(map);
+                new ParallelReTiler(autoTiler, forkJoinPool).retileAll(tileGrid);
+                assertNull("yUp=" + yUp + " parallel", findDifference(map, tileGrid));
+
+                tileGrid = untiledGrid(map);
+                new BitboardBitmasking(autoTiler).retileAll(BitplaneStore.fromGrid(tileGrid), tileGrid);
+                assertNull("yUp=" + yUp + " bitboard", findDifference(map, tileGrid));
+
+                ArrayTileGrid generated = new ArrayTileGrid(WIDTH, HEIGHT);
+                new WorldGenerator(autoTiler, 8, forkJoinPool).generate(0, 0, (WIDTH + 7) / 8, (HEIGHT + 7) / 8,
+                        (x, y, width, height, generatedFamilies) -> {
+                            for (int i = 0; i < generatedFamilies.length; i++) {
+                                int cellX = x + i % width;
+                                int cellY = y + i / width;
+                                boolean inside = cellX >= 0 && cellY >= 0 && cellX < WIDTH && cellY < HEIGHT;
+                                generatedFamilies[i] = inside ? TileId.getFamilyId(map[cellX][cellY]) : TileId.EMPTY;
+                            }
+                        },
+                        (chunkX, chunkY, tiles) -> {
+                            // Cells past the edges of the grid are ignored
+                            for (int i = 0; i < tiles.length; i++) generated.setTileId(tiles[i], chunkX * 8 + i % 8, chunkY * 8 + i / 8);
+                        });
+                assertNull("yUp=" + yUp + " generated", findDifference(map, generated));
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidRulesAreRejected() {
+        TileRules tileRules = new TileRules().where('a', 1).where('b', 2).where('c', 3).where('d', 4);
+        tileRules.rule("a b c  ? * ?  ? ? ?", 1);
+        assertThrows(IllegalArgumentException.class, () -> tileRules.rule("? d ?  ? * ?  ? ? ?", 2));
+        // The rejected rule did not name its family
+        assertEquals(3, tileRules.compile().getNeighborFamilies().length);
+
+        assertThrows(IllegalArgumentException.class, () -> tileRules.rule("? x ?  ? * ?  ? ? ?", 2));
+        assertThrows(IllegalArgumentException.class, () -> tileRules.where('#', 1));
+        assertThrows(IllegalArgumentException.class, () -> new AutoTiler(new ArrayTileGrid(1, 1)).setRuleTable(1, RuleTable.TYPE_8));
+    }
+
+    private static TileRules waterRules(int sand) {
+        return new TileRules()
+                .where('s', sand)
+                .rule("? # ?  ? * s  ? ? ?", 37)
+                .rule("? ? ?  s * ?  ? ? ?", 38)
+                .rule("s ? ?  ? * ?  ? ? ?", 39)
+                .rule("# # #  # * #  # # #", 40)
+                .rule("# # ?  # * ?  ? ? ?", 43)
+                .rule("? # ?  ? * ?  ? ? ?", 41)
+                .otherwise(42);
+    }
+
+    private static TileRules sandRules(int water) {
+        return new TileRules()
+                .where('w', water)
+                .where('e', TileId.EMPTY)
+                .rule("? w ?  ? * ?  ? ? ?", 1)
+                .rule("? ? ?  ? * ?  ? e ?", 2)
+                .rule("? . ?  . * .  ? . ?", 3)
+                .otherwise(4);
+    }
+
+    /**
+     * The tile of {@link #waterRules(int)}, from the families of the neighbors in the order of the direction bits.
+     */
+    private static int expectedWaterTile(int water, int sand, int[] neighbors) {
+        boolean north = neighbors[1] == water, west = neighbors[3] == water;
+        boolean east = neighbors[4] == water, south = neighbors[6] == water;
+        boolean northWest = neighbors[0] == water && north && west;
+        if (north && neighbors[4] == sand) return 37;
+        if (neighbors[3] == sand) return 38;
+        if (neighbors[0] == sand) return 39;
+        if (northWest && neighbors[2] == water && north && east && neighbors[5] == water && south && west
+                && neighbors[7] == water && south && east) {
+            return 40;
+        }
+        if (northWest) return 43;
+        if (north) return 41;
+        return 42;
+    }
+
+    /**
+     * The tile of {@link #sandRules(int)}, from the families of the neighbors in the order of the direction bits.
+     */
+    private static int expectedSandTile(int sand, int water, int[] neighbors) {
+        if (neighbors[1] == water) return 1;
+        if (neighbors[6] == TileId.EMPTY) return 2;
+        if (neighbors[1] != sand && neighbors[3] != sand && neighbors[4] != sand && neighbors[6] != sand) return 3;
+        return 4;
+    }
+
+    private static int getTile(RuleTable ruleTable, int familyId, int[] neighbors) {
+        return ruleTable.getTile(familyId, neighbors[1], neighbors[6], neighbors[3], neighbors[4],
+                neighbors[0], neighbors[2], neighbors[5], neighbors[7]);
+    }
+
+    /**
+     * Finds the first tile of the map that is not the one its rules, or the {@link ReferenceTiler}, pick.
+     *
+     * @return The location of the tile as "x,y", or null if every tile is correct.
+     */
+    private static String findMismatch(int[][] map, AutoTiler autoTiler, int water, int sand) {
+        int north = autoTiler.isYUp() ? 1 : -1;
+        int[] neighbors = new int[8];
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                int familyId = TileId.getFamilyId(map[x][y]);
+                if (autoTiler.getFamilyType(familyId) == null) continue;
+                neighbors[0] = getFamilyId(map, x - 1, y + north);
+                neighbors[1] = getFamilyId(map, x, y + north);
+                neighbors[2] = getFamilyId(map, x + 1, y + north);
+                neighbors[3] = getFamilyId(map, x - 1, y);
+                neighbors[4] = getFamilyId(map, x + 1, y);
+                neighbors[5] = getFamilyId(map, x - 1, y - north);
+                neighbors[6] = getFamilyId(map, x, y - north);
+                neighbors[7] = getFamilyId(map, x + 1, y - north);
+                int expected;
+                if (familyId == water) {
+                    expected = expectedWaterTile(water, sand, neighbors);
+                } else if (familyId == sand) {
+                    expected = expectedSandTile(sand, water, neighbors);
+                } else {
+                    expected = ReferenceTiler.expectedMask(map, autoTiler, x, y);
+                }
+                if (TileId.getMask(map[x][y]) != expected) return x + "," + y;
+            }
+        }
+        return null;
+    }
+
+    private static int getFamilyId(int[][] map, int x, int y) {
+        if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) return TileId.EMPTY;
+        return TileId.getFamilyId(map[x][y]);
+    }
+
+    /**
+     * Copies the families of a map to a grid, with every bitmask cleared.
+     */
+    private static ArrayTileGrid untiledGrid(int[][] map) {
+        ArrayTileGrid tileGrid = new ArrayTileGrid(WIDTH, HEIGHT);
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) tileGrid.setTileId(TileId.pack(TileId.getFamilyId(map[x][y]), 0), x, y);
+        }
+        return tileGrid;
+    }
+
+    private static String findDifference(int[][] map, TileGrid tileGrid) {
+        int[] row = new int[WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            tileGrid.readRow(y, row, 0);
+            for (int x = 0; x < WIDTH; x++) {
+                if (row[x] != map[x][y]) return x + "," + y;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that worlds generated in parallel chunks are tiled like the {@link ReferenceTiler} tiles the whole world.
+ */
+public class WorldGeneratorTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 70;
+    private static final int CHUNK_SIZE = 16;
+
+    @Test
+    public void chunksMatchReference() throws InterruptedException {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (boolean yUp : new boolean[]{false, true}) {
+                int[][] map = new int[WIDTH][HEIGHT];
+                AutoTiler autoTiler = new AutoTiler(ReferenceTiler.grid(map));
+                autoTiler.setYUp(yUp);
+                int[] families = {TileId.EMPTY, autoTiler.registerFamily(BitmaskingType.TYPE_8),
+                        autoTiler.registerFamily(BitmaskingType.TYPE_4), autoTiler.registerFamily(null)};
+
+                int[] lastChunk = {-1};
+                new WorldGenerator(autoTiler, CHUNK_SIZE, forkJoinPool).generate(0, 0,
+                        (WIDTH + CHUNK_SIZE - 1) / CHUNK_SIZE, (HEIGHT + CHUNK_SIZE - 1) / CHUNK_SIZE,
+                        (x, y, width, height, generated) -> generateFamilies(families, x, y, width, height, generated),
+                        (chunkX, chunkY, tiles) -> {
+                            // Chunks arrive row of chunks by row of chunks
+                            int chunk = chunkY * 100 + chunkX;
+                            assertTrue("Chunk " + chunkX + ", " + chunkY + " arrived out of order.", chunk > lastChunk[0]);
+                            lastChunk[0] = chunk;
+                            for (int i = 0; i < tiles.length; i++) {
+                                int x = chunkX * CHUNK_SIZE + i % CHUNK_SIZE;
+                                int y = chunkY * CHUNK_SIZE + i / CHUNK_SIZE;
+                                if (x < WIDTH && y < HEIGHT) map[x][y] = tiles[i];
+                            }
+                        });
+                assertNull("yUp=" + yUp, ReferenceTiler.findMismatch(map, autoTiler));
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    public void intoStoresChunks() throws InterruptedException {
+        AutoTiler autoTiler = new AutoTiler(new ArrayTileGrid(1, 1));
+        int familyId = autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        ChunkedTileMap chunkedTileMap = new ChunkedTileMap(4);
+        WorldGenerator worldGenerator = new WorldGenerator(autoTiler, chunkedTileMap.getChunkSize());
+        worldGenerator.generate(0, 0, 2, 2,
+                (x, y, width, height, generated) -> Arrays.fill(generated, familyId),
+                worldGenerator.into(chunkedTileMap));
+
+        assertEquals(4, chunkedTileMap.getChunkCount());
+        assertEquals(TileId.pack(familyId, 255), chunkedTileMap.getTileId(5, 5));
+    }
+
+    @Test
+    public void generatorFailuresReachTheCaller() {
+        AutoTiler autoTiler = new AutoTiler(new ArrayTileGrid(1, 1));
+        autoTiler.registerFamily(BitmaskingType.TYPE_8);
+        WorldGenerator worldGenerator = new WorldGenerator(autoTiler, 64);
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> worldGenerator.generate(0, 0, 4, 4,
+                (x, y, width, height, generated) -> {
+                    if (x > 100) throw new IllegalStateException("Out of terrain");
+                },
+                (chunkX, chunkY, tiles) -> {
+                }));
+        // The fork join pool may rethrow a copy of the exception, caused by the original one
+        Throwable original = exception;
+        while (original.getCause() != null) original = original.getCause();
+        assertEquals("Out of terrain", original.getMessage());
+    }
+
+    /**
+     * Blobs of families that only depend on the location of a cell, and empty outside the world.
+     */
+    private static void generateFamilies(int[] families, int x, int y, int width, int height, int[] generated) {
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                int cellX = x + column;
+                int cellY = y + row;
+                if (cellX < 0 || cellY < 0 || cellX >= WIDTH || cellY >= HEIGHT) {
+                    generated[row * width + column] = TileId.EMPTY;
+                    continue;
+                }
+                long hash = cellX * 73856093L ^ cellY * 19349663L ^ cellX / 5 * 7 + cellY / 4 * 3;
+                generated[row * width + column] = families[(int) (hash & 0xFFFF) % families.length];
+            }
+        }
+    }
+}
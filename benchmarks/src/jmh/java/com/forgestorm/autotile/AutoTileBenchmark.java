@@ -0,0 +1,61 @@
+package com.forgestorm.autotile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single {@link AutoTiler#autoTile(String, int, int)} call for each {@link BrushType}.
+ * <p>
+ * The map starts filled with grass, and each call paints the next cell of a walk over the map with the family
+ * the cell does not hold yet. Every call therefore replaces a tile, re-tiles its neighbors and fixes the
+ * neighbors of the replaced family, which is the common case when painting over an existing map.
+ *
+ * @author unenergizer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AutoTileBenchmark {
+
+    @Param({"SINGLE", "DOUBLE", "TRIPLE"})
+    private BrushType brushType;
+
+    private AutoTiler autoTiler;
+    private String tileName = BenchmarkTiles.SAND;
+    private int x = 1;
+    private int y = 1;
+
+    @Setup
+    public void setup() {
+        InMemoryTileMap map = new InMemoryTileMap(BenchmarkTiles.MAP_SIZE, BenchmarkTiles.MAP_SIZE);
+        map.fill(BenchmarkTiles.GRASS);
+        autoTiler = new AutoTiler(map);
+        autoTiler.setBrushType(brushType);
+    }
+
+    @Benchmark
+    public boolean autoTile() {
+        boolean autoTiled = autoTiler.autoTile(tileName, x, y);
+
+        // Step 3 cells at a time, so the next brush does not overlap this one
+        x += 3;
+        if (x >= BenchmarkTiles.MAP_SIZE - 3) {
+            x = 1;
+            y += 3;
+            if (y >= BenchmarkTiles.MAP_SIZE - 3) {
+                // Swap the family after each pass, so every call replaces a different family
+                y = 1;
+                tileName = tileName.equals(BenchmarkTiles.SAND) ? BenchmarkTiles.GRASS : BenchmarkTiles.SAND;
+            }
+        }
+        return autoTiled;
+    }
+}
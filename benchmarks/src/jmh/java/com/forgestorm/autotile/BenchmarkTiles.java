@@ -0,0 +1,21 @@
+package com.forgestorm.autotile;
+
+/**
+ * Tile names shared by the benchmarks. They use the default bitmasking prefixes of {@link BitmaskingType}.
+ *
+ * @author unenergizer
+ */
+final class BenchmarkTiles {
+
+    static final String GRASS = BitmaskingType.TYPE_8.getPrefix() + "grass=0";
+    static final String SAND = BitmaskingType.TYPE_8.getPrefix() + "sand=0";
+    static final String WATER = BitmaskingType.TYPE_4.getPrefix() + "water=0";
+
+    /**
+     * The width and height of the maps edited one tile at a time.
+     */
+    static final int MAP_SIZE = 256;
+
+    private BenchmarkTiles() {
+    }
+}
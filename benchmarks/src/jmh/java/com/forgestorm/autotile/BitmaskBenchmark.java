@@ -0,0 +1,67 @@
+package com.forgestorm.autotile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the 4-bit and 8-bit mask calculations of {@link Bitmask4Bit} and {@link Bitmask8Bit}.
+ * <p>
+ * Each invocation calculates the bitmask of every cell of a randomly filled {@link ArrayTileGrid}, so the
+ * reported time is the average cost of one cell. Nothing is written, only the neighbor reads and the
+ * bitmask calculation are measured. This benchmark lives in the library package to reach the
+ * package-private bitmasking classes.
+ *
+ * @author unenergizer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitmaskBenchmark {
+
+    private static final int SIZE = 64;
+
+    @Param({"TYPE_4", "TYPE_8"})
+    private BitmaskingType bitmaskingType;
+
+    private TileBitmasking tileBitmasking;
+    private int familyId;
+
+    @Setup
+    public void setup() {
+        ArrayTileGrid grid = new ArrayTileGrid(SIZE, SIZE);
+        AutoTiler autoTiler = new AutoTiler(grid);
+        familyId = autoTiler.registerFamily(bitmaskingType);
+        int otherFamilyId = autoTiler.registerFamily(bitmaskingType);
+
+        // Two families at random, so all bitmask values show up
+        Random random = new Random(1);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                grid.setTileId(TileId.pack(random.nextInt(3) == 0 ? otherFamilyId : familyId, 0), x, y);
+            }
+        }
+        tileBitmasking = autoTiler.getTileBitmasking(familyId);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public int calculateBitmask() {
+        int sum = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                sum += tileBitmasking.calculateBitmask(familyId, x, y);
+            }
+        }
+        return sum;
+    }
+}
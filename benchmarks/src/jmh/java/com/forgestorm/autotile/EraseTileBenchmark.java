@@ -0,0 +1,61 @@
+package com.forgestorm.autotile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AutoTiler#eraseTile(int, int)} with neighbor fixing enabled and disabled.
+ * <p>
+ * The map is a checkerboard of grass and sand blocks, so erased cells have neighbors of both families.
+ * After each erase the cell is put back directly on the map, without auto tiling, so the map keeps the
+ * same shape for the whole run.
+ *
+ * @author unenergizer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EraseTileBenchmark {
+
+    @Param({"true", "false"})
+    private boolean fixNeighborTiles;
+
+    private InMemoryTileMap map;
+    private AutoTiler autoTiler;
+    private int x;
+    private int y;
+
+    @Setup
+    public void setup() {
+        map = new InMemoryTileMap(BenchmarkTiles.MAP_SIZE, BenchmarkTiles.MAP_SIZE);
+        autoTiler = new AutoTiler(map);
+        for (int tileY = 0; tileY < BenchmarkTiles.MAP_SIZE; tileY += 4) {
+            for (int tileX = 0; tileX < BenchmarkTiles.MAP_SIZE; tileX += 4) {
+                String tileName = ((tileX + tileY) / 4 & 1) == 0 ? BenchmarkTiles.GRASS : BenchmarkTiles.SAND;
+                autoTiler.autoTileRegion(tileName, tileX, tileY, 4, 4);
+            }
+        }
+        autoTiler.setFixNeighborTiles(fixNeighborTiles);
+    }
+
+    @Benchmark
+    public void eraseTile() {
+        String tileName = map.getTile(x, y);
+        map.setTile(null, x, y);
+        autoTiler.eraseTile(x, y);
+        map.setTile(tileName, x, y);
+
+        if (++x == BenchmarkTiles.MAP_SIZE) {
+            x = 0;
+            if (++y == BenchmarkTiles.MAP_SIZE) y = 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.forgestorm.autotile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling a whole map at several sizes.
+ * <p>
+ * {@link #autoTileEachCell()} paints the map one {@link AutoTiler#autoTile(String, int, int)} call at a time,
+ * the way an editor would, and {@link #autoTileRegion()} fills it with a single
+ * {@link AutoTiler#autoTileRegion(String, int, int, int, int)} call. Each invocation fills the map with the
+ * family it does not hold yet, so every fill replaces every tile.
+ *
+ * @author unenergizer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FillMapBenchmark {
+
+    @Param({"32", "128", "512"})
+    private int size;
+
+    private AutoTiler autoTiler;
+    private boolean sand;
+
+    @Setup
+    public void setup() {
+        InMemoryTileMap map = new InMemoryTileMap(size, size);
+        map.fill(BenchmarkTiles.GRASS);
+        autoTiler = new AutoTiler(map);
+    }
+
+    @Benchmark
+    public void autoTileEachCell() {
+        String tileName = nextTileName();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                autoTiler.autoTile(tileName, x, y);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean autoTileRegion() {
+        return autoTiler.autoTileRegion(nextTileName(), 0, 0, size, size);
+    }
+
+    private String nextTileName() {
+        sand = !sand;
+        return sand ? BenchmarkTiles.SAND : BenchmarkTiles.GRASS;
+    }
+}
@@ -0,0 +1,47 @@
+package com.forgestorm.autotile;
+
+import java.util.Arrays;
+
+/**
+ * The {@link InMemoryTileMap} class is the {@link TileGetterSetter} fixture used by the benchmarks. Tile names are
+ * kept in a single row-major array, so the cost measured is the cost of the auto tiler and not of the map. Cells
+ * outside the map read as null and writes to them are ignored, like the edge of a real map.
+ *
+ * @author unenergizer
+ */
+public class InMemoryTileMap implements TileGetterSetter {
+
+    private final int width;
+    private final int height;
+    /**
+     * The tile names of the map, indexed by {@code y * width + x}.
+     */
+    private final String[] tiles;
+
+    public InMemoryTileMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tiles = new String[width * height];
+    }
+
+    @Override
+    public String getTile(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return null;
+        return tiles[y * width + x];
+    }
+
+    @Override
+    public void setTile(String tileName, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        tiles[y * width + x] = tileName;
+    }
+
+    /**
+     * Sets every cell of the map to the same tile without auto tiling it.
+     *
+     * @param tileName The tile name, or null to empty the map.
+     */
+    public void fill(String tileName) {
+        Arrays.fill(tiles, tileName);
+    }
+}
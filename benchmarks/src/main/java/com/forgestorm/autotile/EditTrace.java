@@ -0,0 +1,258 @@
+package com.forgestorm.autotile;
+
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The {@link EditTrace} class is a recorded sequence of edits, replayed by the {@link SoakRunner}. A trace is a text
+ * file with one edit per line:
+ * <pre>
+ * # Lines starting with # are comments
+ * map &lt;width&gt; &lt;height&gt; &lt;layers&gt;
+ * tile &lt;layer&gt; &lt;x&gt; &lt;y&gt; &lt;brush&gt; &lt;tileName&gt;
+ * erase &lt;layer&gt; &lt;x&gt; &lt;y&gt;
+ * </pre>
+ * The {@code map} line comes first and gives the size of the map the edits were made on. A brush is the name of a
+ * {@link BrushType}, {@code square:<size>} or {@code circle:<radius>}. Tile names can not contain spaces.
+ *
+ * @author unenergizer
+ */
+public class EditTrace {
+
+    /**
+     * Places a tile with {@link AutoTiler#autoTile(String, int, int, Brush)}.
+     */
+    static final int TILE = 0;
+    /**
+     * Erases a tile with {@link AutoTiler#removeTile(int, int)}, which clears the cell and fixes its neighbors.
+     */
+    static final int ERASE = 1;
+
+    private static final TileLocations[] STEPS = TileLocations.values();
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final int layerCount;
+    private int size;
+    private int[] operations = new int[64];
+    private int[] layers = new int[64];
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private Brush[] brushes = new Brush[64];
+    private String[] tileNames = new String[64];
+
+    public EditTrace(int width, int height, int layerCount) {
+        if (width <= 0 || height <= 0 || layerCount <= 0) {
+            throw new IllegalArgumentException("The map of a trace must have a positive size and layer count.");
+        }
+        this.width = width;
+        this.height = height;
+        this.layerCount = layerCount;
+    }
+
+    /**
+     * Adds a placed tile to the end of the trace.
+     */
+    public void addTile(int layer, int x, int y, Brush brush, String tileName) {
+        add(TILE, layer, x, y, brush, tileName);
+    }
+
+    /**
+     * Adds an erased tile to the end of the trace.
+     */
+    public void addErase(int layer, int x, int y) {
+        add(ERASE, layer, x, y, null, null);
+    }
+
+    /**
+     * @return The number of edits in the trace.
+     */
+    public int size() {
+        return size;
+    }
+
+    int getOperation(int index) {
+        return operations[index];
+    }
+
+    int getLayer(int index) {
+        return layers[index];
+    }
+
+    int getX(int index) {
+        return xs[index];
+    }
+
+    int getY(int index) {
+        return ys[index];
+    }
+
+    Brush getBrush(int index) {
+        return brushes[index];
+    }
+
+    String getTileName(int index) {
+        return tileNames[index];
+    }
+
+    private void add(int operation, int layer, int x, int y, Brush brush, String tileName) {
+        if (layer < 0 || layer >= layerCount) {
+            throw new IllegalArgumentException("Layer " + layer + " is not a layer of the trace.");
+        }
+        if (size == operations.length) {
+            int capacity = size * 2;
+            operations = Arrays.copyOf(operations, capacity);
+            layers = Arrays.copyOf(layers, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            brushes = Arrays.copyOf(brushes, capacity);
+            tileNames = Arrays.copyOf(tileNames, capacity);
+        }
+        operations[size] = operation;
+        layers[size] = layer;
+        xs[size] = x;
+        ys[size] = y;
+        brushes[size] = brush;
+        tileNames[size] = tileName;
+        size++;
+    }
+
+    /**
+     * Reads a trace.
+     *
+     * @param reader The text of the trace.
+     * @return The trace.
+     * @throws IOException              if the trace can not be read
+     * @throws IllegalArgumentException if a line of the trace is not valid
+     */
+    public static EditTrace read(BufferedReader reader) throws IOException {
+        EditTrace editTrace = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] fields = line.split("\\s+");
+            try {
+                if (editTrace == null) {
+                    if (!fields[0].equals("map") || fields.length != 4) {
+                        throw new IllegalArgumentException("The trace must start with a map line.");
+                    }
+                    editTrace = new EditTrace(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]));
+                } else if (fields[0].equals("tile") && fields.length == 6) {
+                    editTrace.addTile(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]), parseBrush(fields[4]), fields[5]);
+                } else if (fields[0].equals("erase") && fields.length == 4) {
+                    editTrace.addErase(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]));
+                } else {
+                    throw new IllegalArgumentException("Unknown edit.");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + " of the trace is not valid: " + line, e);
+            }
+        }
+        if (editTrace == null) throw new IllegalArgumentException("The trace is empty.");
+        return editTrace;
+    }
+
+    /**
+     * Writes the trace in the format read by {@link #read(BufferedReader)}.
+     *
+     * @param writer Where to write the trace.
+     * @throws IOException if the trace can not be written
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("map " + width + " " + height + " " + layerCount + "\n");
+        for (int i = 0; i < size; i++) {
+            if (operations[i] == TILE) {
+                writer.write("tile " + layers[i] + " " + xs[i] + " " + ys[i] + " " + formatBrush(brushes[i]) + " "
+                        + tileNames[i] + "\n");
+            } else {
+                writer.write("erase " + layers[i] + " " + xs[i] + " " + ys[i] + "\n");
+            }
+        }
+    }
+
+    /**
+     * Parses a brush of a trace.
+     *
+     * @param brush The name of a {@link BrushType}, {@code square:<size>} or {@code circle:<radius>}.
+     * @return The brush.
+     */
+    static Brush parseBrush(String brush) {
+        if (brush.startsWith("square:")) return Brush.square(Integer.parseInt(brush.substring(7)));
+        if (brush.startsWith("circle:")) return Brush.circle(Integer.parseInt(brush.substring(7)));
+        return BrushType.valueOf(brush).getBrush();
+    }
+
+    private static String formatBrush(Brush brush) {
+        // Brushes are named "square 3" or "circle 2", see Brush#toString()
+        String name = brush.toString();
+        if (name.startsWith("square ") || name.startsWith("circle ")) return name.replace(' ', ':');
+        throw new IllegalArgumentException("Only square and circle brushes can be written to a trace.");
+    }
+
+    /**
+     * Generates a trace of random strokes, like an artist painting a map. Each stroke walks a random path with a
+     * single family or erases it, and strokes on the higher layers are shorter and sparser. The same seed always
+     * generates the same trace.
+     *
+     * @param width      The width of the map.
+     * @param height     The height of the map.
+     * @param layerCount The number of layers of the map.
+     * @param edits      The number of edits to generate.
+     * @param seed       The seed of the random strokes.
+     * @return The trace.
+     */
+    public static EditTrace generate(int width, int height, int layerCount, int edits, long seed) {
+        String[] groundTiles = {
+                BitmaskingType.TYPE_8.getPrefix() + "grass=0",
+                BitmaskingType.TYPE_8.getPrefix() + "sand=0",
+                BitmaskingType.TYPE_4.getPrefix() + "water=0"
+        };
+        String[] upperTiles = {
+                BitmaskingType.TYPE_4.getPrefix() + "wall=0",
+                BitmaskingType.TYPE_8.getPrefix() + "hedge=0"
+        };
+        Brush[] brushes = {Brush.square(1), Brush.square(1), Brush.square(1), Brush.square(2), Brush.square(3),
+                Brush.circle(2)};
+
+        Random random = new Random(seed);
+        EditTrace editTrace = new EditTrace(width, height, layerCount);
+        while (editTrace.size() < edits) {
+            int layer = random.nextInt(4) == 0 ? random.nextInt(layerCount) : 0;
+            String[] tiles = layer == 0 ? groundTiles : upperTiles;
+            String tileName = tiles[random.nextInt(tiles.length)];
+            Brush brush = brushes[random.nextInt(brushes.length)];
+            boolean erase = random.nextInt(8) == 0;
+            int strokeLength = (layer == 0 ? 10 : 4) + random.nextInt(30);
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+
+            for (int step = 0; step < strokeLength && editTrace.size() < edits; step++) {
+                if (erase) {
+                    editTrace.addErase(layer, x, y);
+                } else {
+                    editTrace.addTile(layer, x, y, brush, tileName);
+                }
+                // Step to one of the 8 neighbors
+                TileLocations tileLocation = STEPS[random.nextInt(STEPS.length)];
+                x = Math.max(0, Math.min(width - 1, tileLocation.getX(x)));
+                y = Math.max(0, Math.min(height - 1, tileLocation.getY(y, false)));
+            }
+        }
+        return editTrace;
+    }
+}
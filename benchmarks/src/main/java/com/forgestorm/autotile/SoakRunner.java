@@ -0,0 +1,254 @@
+package com.forgestorm.autotile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link SoakRunner} replays an {@link EditTrace} against in-memory maps, without libGDX or a display, and
+ * reports the throughput, the latency of single edits, the allocation rate and a checksum of the final map.
+ * <p>
+ * The trace is replayed a few times to warm up the JVM, and then measured over several passes. Every pass starts on
+ * an empty map, with one {@link AutoTiler} per layer, so every pass must end with the same checksum. The checksum is
+ * computed from tile names rather than tile IDs, so it does not change when families are registered in another
+ * order, and can be compared between builds with {@code --expect}.
+ * <pre>
+ * ./gradlew :benchmarks:soak -PsoakArgs="--generate build/soak.trace --edits 200000"
+ * ./gradlew :benchmarks:soak -PsoakArgs="build/soak.trace --passes 10"
+ * </pre>
+ *
+ * @author unenergizer
+ */
+public class SoakRunner {
+
+    private final EditTrace editTrace;
+    private final AutoTiler[] autoTilers;
+    private final ArrayTileGrid[] tileGrids;
+
+    public SoakRunner(EditTrace editTrace) {
+        this.editTrace = editTrace;
+        this.autoTilers = new AutoTiler[editTrace.getLayerCount()];
+        this.tileGrids = new ArrayTileGrid[editTrace.getLayerCount()];
+    }
+
+    /**
+     * Replays the trace once on empty maps.
+     *
+     * @param latencies Where to store the latency of each edit, in nanoseconds, or null to not measure them.
+     */
+    public void replay(long[] latencies) {
+        for (int layer = 0; layer < autoTilers.length; layer++) {
+            tileGrids[layer] = new ArrayTileGrid(editTrace.getWidth(), editTrace.getHeight());
+            autoTilers[layer] = new AutoTiler(tileGrids[layer]);
+        }
+
+        for (int i = 0; i < editTrace.size(); i++) {
+            long start = latencies == null ? 0 : System.nanoTime();
+
+            AutoTiler autoTiler = autoTilers[editTrace.getLayer(i)];
+            if (editTrace.getOperation(i) == EditTrace.TILE) {
+                autoTiler.autoTile(editTrace.getTileName(i), editTrace.getX(i), editTrace.getY(i),
+                        editTrace.getBrush(i));
+            } else {
+                autoTiler.removeTile(editTrace.getX(i), editTrace.getY(i));
+            }
+
+            if (latencies != null) latencies[i] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Gets the checksum of a layer after the last replay.
+     *
+     * @param layer The layer.
+     * @return The CRC-32 of the tile names of the layer, row by row.
+     */
+    public long getChecksum(int layer) {
+        TileNameRegistry tileNameRegistry = autoTilers[layer].getTileNameRegistry();
+        CRC32 crc32 = new CRC32();
+        for (int tileId : tileGrids[layer].getTiles()) {
+            String tileName = tileNameRegistry.getTileName(tileId);
+            if (tileName != null) crc32.update(tileName.getBytes(StandardCharsets.UTF_8));
+            // Separates the names, and marks empty cells
+            crc32.update(0);
+        }
+        return crc32.getValue();
+    }
+
+    /**
+     * Gets the checksum of every layer after the last replay.
+     *
+     * @return The CRC-32 of the checksums of the layers.
+     */
+    public long getChecksum() {
+        CRC32 crc32 = new CRC32();
+        for (int layer = 0; layer < autoTilers.length; layer++) {
+            long checksum = getChecksum(layer);
+            for (int shift = 0; shift < 32; shift += 8) crc32.update((int) (checksum >>> shift));
+        }
+        return crc32.getValue();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String tracePath = null;
+        String generatePath = null;
+        int width = 256;
+        int height = 256;
+        int layerCount = 2;
+        int edits = 100_000;
+        long seed = 1;
+        int warmupPasses = 2;
+        int passes = 5;
+        String expectedChecksum = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generate":
+                    generatePath = args[++i];
+                    break;
+                case "--width":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "--height":
+                    height = Integer.parseInt(args[++i]);
+                    break;
+                case "--layers":
+                    layerCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--edits":
+                    edits = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupPasses = Integer.parseInt(args[++i]);
+                    break;
+                case "--passes":
+                    passes = Integer.parseInt(args[++i]);
+                    break;
+                case "--expect":
+                    expectedChecksum = args[++i];
+                    break;
+                default:
+                    if (args[i].startsWith("--") || tracePath != null) {
+                        printUsage();
+                        System.exit(2);
+                    }
+                    tracePath = args[i];
+            }
+        }
+
+        if (generatePath != null) {
+            EditTrace editTrace = EditTrace.generate(width, height, layerCount, edits, seed);
+            try (Writer writer = Files.newBufferedWriter(Paths.get(generatePath), StandardCharsets.UTF_8)) {
+                editTrace.write(writer);
+            }
+            System.out.println("Generated " + editTrace.size() + " edits into " + generatePath);
+            return;
+        }
+        if (tracePath == null || passes <= 0) {
+            printUsage();
+            System.exit(2);
+        }
+
+        EditTrace editTrace;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(tracePath), StandardCharsets.UTF_8)) {
+            editTrace = EditTrace.read(reader);
+        }
+        SoakRunner soakRunner = new SoakRunner(editTrace);
+
+        for (int pass = 0; pass < warmupPasses; pass++) soakRunner.replay(null);
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int size = editTrace.size();
+        long[] latencies = new long[size * passes];
+        long[] passLatencies = new long[size];
+        long checksum = 0;
+        boolean deterministic = true;
+        long nanos = 0;
+        long allocatedBytes = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            // Only the replay is measured, the checksum is not part of the workload
+            long passAllocatedBytes = getAllocatedBytes(threadMXBean, threadId);
+            long passStart = System.nanoTime();
+            soakRunner.replay(passLatencies);
+            nanos += System.nanoTime() - passStart;
+            long passEndAllocatedBytes = getAllocatedBytes(threadMXBean, threadId);
+            if (passAllocatedBytes < 0 || passEndAllocatedBytes < 0) {
+                allocatedBytes = -1;
+            } else if (allocatedBytes >= 0) {
+                allocatedBytes += passEndAllocatedBytes - passAllocatedBytes;
+            }
+            System.arraycopy(passLatencies, 0, latencies, pass * size, size);
+
+            long passChecksum = soakRunner.getChecksum();
+            if (pass > 0 && passChecksum != checksum) deterministic = false;
+            checksum = passChecksum;
+        }
+
+        Arrays.sort(latencies);
+        long edited = (long) size * passes;
+        double seconds = nanos / 1e9;
+        System.out.println("trace       : " + tracePath + " (" + size + " edits, " + editTrace.getWidth() + "x"
+                + editTrace.getHeight() + ", " + editTrace.getLayerCount() + " layers)");
+        System.out.println("passes      : " + passes + " (" + warmupPasses + " warmup)");
+        System.out.println("edits/sec   : " + Math.round(edited / seconds));
+        System.out.println("latency p50 : " + getPercentile(latencies, 50) + " ns");
+        System.out.println("latency p99 : " + getPercentile(latencies, 99) + " ns");
+        System.out.println("latency max : " + latencies[latencies.length - 1] + " ns");
+        if (allocatedBytes < 0) {
+            System.out.println("allocation  : not supported by this JVM");
+        } else {
+            System.out.println("allocation  : " + Math.round(allocatedBytes / seconds / (1024 * 1024)) + " MB/sec ("
+                    + allocatedBytes / edited + " bytes/edit, including the empty maps of each pass)");
+        }
+        StringBuilder layerChecksums = new StringBuilder();
+        for (int layer = 0; layer < editTrace.getLayerCount(); layer++) {
+            if (layer > 0) layerChecksums.append(", ");
+            layerChecksums.append("layer ").append(layer).append(' ').append(Long.toHexString(soakRunner.getChecksum(layer)));
+        }
+        System.out.println("checksum    : " + Long.toHexString(checksum) + " (" + layerChecksums + ")");
+
+        if (!deterministic) {
+            System.err.println("The passes did not end with the same map.");
+            System.exit(1);
+        }
+        if (expectedChecksum != null && Long.parseLong(expectedChecksum, 16) != checksum) {
+            System.err.println("Expected the checksum " + expectedChecksum + ".");
+            System.exit(1);
+        }
+    }
+
+    private static long getPercentile(long[] sortedLatencies, double percentile) {
+        int rank = (int) Math.ceil(sortedLatencies.length * percentile / 100);
+        return sortedLatencies[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Gets the bytes allocated by a thread so far, using the HotSpot extension of {@link ThreadMXBean}.
+     *
+     * @return The allocated bytes, or -1 if the JVM does not count them.
+     */
+    private static long getAllocatedBytes(ThreadMXBean threadMXBean, long threadId) {
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!hotSpotThreadMXBean.isThreadAllocatedMemorySupported()) return -1;
+        if (!hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) hotSpotThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return hotSpotThreadMXBean.getThreadAllocatedBytes(threadId);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: SoakRunner <trace> [--warmup passes] [--passes passes] [--expect checksum]");
+        System.err.println("       SoakRunner --generate <trace> [--width width] [--height height] [--layers layers]"
+                + " [--edits edits] [--seed seed]");
+    }
+}
@@ -0,0 +1,56 @@
+package com.forgestorm.autotile;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that replaying a trace gives the map its edits describe.
+ */
+public class SoakRunnerTest {
+
+    private static final String GRASS = BitmaskingType.TYPE_8.getPrefix() + "grass=0";
+
+    @Test
+    public void eraseChangesTheMap() throws IOException {
+        long painted = replay("map 8 8 1\n"
+                + "tile 0 2 2 square:3 " + GRASS + "\n");
+        long erased = replay("map 8 8 1\n"
+                + "tile 0 2 2 square:3 " + GRASS + "\n"
+                + "erase 0 2 2\n");
+        assertTrue("Erasing a tile did not change the map.", painted != erased);
+    }
+
+    @Test
+    public void eraseMatchesAMapNeverPainted() throws IOException {
+        long empty = replay("map 8 8 1\n");
+        long erased = replay("map 8 8 1\n"
+                + "tile 0 4 4 SINGLE " + GRASS + "\n"
+                + "erase 0 4 4\n");
+        assertEquals(empty, erased);
+    }
+
+    @Test
+    public void writtenTracesReplayTheSame() throws IOException {
+        EditTrace editTrace = EditTrace.generate(32, 24, 2, 2000, 5);
+        StringWriter writer = new StringWriter();
+        editTrace.write(writer);
+        assertEquals(replay(editTrace), replay(writer.toString()));
+    }
+
+    private static long replay(String trace) throws IOException {
+        return replay(EditTrace.read(new BufferedReader(new StringReader(trace))));
+    }
+
+    private static long replay(EditTrace editTrace) {
+        SoakRunner soakRunner = new SoakRunner(editTrace);
+        soakRunner.replay(null);
+        return soakRunner.getChecksum();
+    }
+}
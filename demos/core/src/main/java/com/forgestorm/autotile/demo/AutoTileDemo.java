@@ -16,6 +16,7 @@ public class AutoTileDemo extends ApplicationAdapter {
     private StageHandler stageHandler;
     private MapHandler mapHandler;
     private TileHighlighter tileHighlighter;
+    private BrushStroke brushStroke;
     private Viewport viewport;
 
     @Override
@@ -29,7 +30,13 @@ public class AutoTileDemo extends ApplicationAdapter {
         mapHandler = new MapHandler(camera);
         mapHandler.create();
 
-        GameInput gameInput = new GameInput(camera, mapHandler);
+        brushStroke = new BrushStroke(mapHandler);
+
+        // Record the edits for the soak runner of the benchmarks module, with -Dautotile.trace=<file>
+        String tracePath = System.getProperty("autotile.trace");
+        if (tracePath != null) brushStroke.recordTrace(Gdx.files.local(tracePath));
+
+        GameInput gameInput = new GameInput(camera, brushStroke);
 
         tileHighlighter = new TileHighlighter(camera, gameInput);
         tileHighlighter.create();
@@ -45,6 +52,7 @@ public class AutoTileDemo extends ApplicationAdapter {
     public void render() {
         viewport.update(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
         ScreenUtils.clear(112 / 255f, 161 / 255f, 94 / 255f, 1);
+        brushStroke.apply();
         mapHandler.render();
         tileHighlighter.render();
         stageHandler.render();
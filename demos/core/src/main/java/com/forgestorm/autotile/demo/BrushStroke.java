@@ -0,0 +1,135 @@
+package com.forgestorm.autotile.demo;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntSet;
+
+/**
+ * Collects the cells painted or erased by a stroke of the mouse, so they can be applied once per frame.
+ * <p>
+ * Drag events are joined with Bresenham lines, so fast strokes do not skip cells. Every cell is only kept once,
+ * however many input events hit it before the next frame, so a tablet sending hundreds of events per second
+ * does not auto tile the same cell over and over.
+ * <p>
+ * The applied cells can also be recorded as an edit trace, the text format replayed by the headless
+ * {@code SoakRunner} of the benchmarks module.
+ */
+public class BrushStroke {
+
+    private final MapHandler mapHandler;
+    /**
+     * Cells waiting to be applied, packed by {@link #packCell(int, int)}, in the order they were hit.
+     */
+    private final IntArray cells = new IntArray();
+    /**
+     * The same cells as {@link #cells}, used to skip the ones already waiting.
+     */
+    private final IntSet cellSet = new IntSet();
+    private boolean eraseTile;
+    private int lastX, lastY;
+    /**
+     * The file the applied cells are recorded to, or null to not record them.
+     */
+    private FileHandle traceFile;
+    private final StringBuilder traceLines = new StringBuilder();
+
+    public BrushStroke(MapHandler mapHandler) {
+        this.mapHandler = mapHandler;
+    }
+
+    /**
+     * Starts recording the applied cells as an edit trace. The file is replaced.
+     *
+     * @param traceFile The file to record to.
+     */
+    public void recordTrace(FileHandle traceFile) {
+        this.traceFile = traceFile;
+        traceFile.writeString("map " + MapHandler.MAP_WIDTH + " " + MapHandler.MAP_HEIGHT + " "
+                + mapHandler.getTiledMap().getLayers().size() + "\n", false);
+    }
+
+    /**
+     * Starts a new stroke. Cells of the previous stroke that were not applied yet are applied first if the new stroke
+     * does something else.
+     *
+     * @param tileX     The X location of the first cell.
+     * @param tileY     The Y location of the first cell.
+     * @param eraseTile True if the stroke erases tiles, false if it paints them.
+     */
+    public void begin(int tileX, int tileY, boolean eraseTile) {
+        if (eraseTile != this.eraseTile) apply();
+        this.eraseTile = eraseTile;
+        lastX = tileX;
+        lastY = tileY;
+        addCell(tileX, tileY);
+    }
+
+    /**
+     * Continues the stroke to a cell, adding every cell on the line from the previous one.
+     *
+     * @param tileX The X location of the cell.
+     * @param tileY The Y location of the cell.
+     */
+    public void lineTo(int tileX, int tileY) {
+        int x = lastX;
+        int y = lastY;
+        int deltaX = Math.abs(tileX - x);
+        int deltaY = -Math.abs(tileY - y);
+        int stepX = x < tileX ? 1 : -1;
+        int stepY = y < tileY ? 1 : -1;
+        int error = deltaX + deltaY;
+
+        while (x != tileX || y != tileY) {
+            int doubleError = error * 2;
+            if (doubleError >= deltaY) {
+                error += deltaY;
+                x += stepX;
+            }
+            if (doubleError <= deltaX) {
+                error += deltaX;
+                y += stepY;
+            }
+            addCell(x, y);
+        }
+
+        lastX = tileX;
+        lastY = tileY;
+    }
+
+    /**
+     * Applies the cells hit since the last call, each one once. Called once per frame.
+     */
+    public void apply() {
+        for (int i = 0; i < cells.size; i++) {
+            int cell = cells.get(i);
+            mapHandler.setTile(cell >> 16, (short) cell, eraseTile);
+            if (traceFile != null) recordCell(cell >> 16, (short) cell);
+        }
+        if (traceFile != null && traceLines.length() > 0) {
+            traceFile.writeString(traceLines.toString(), true);
+            traceLines.setLength(0);
+        }
+        cells.clear();
+        cellSet.clear();
+    }
+
+    private void recordCell(int tileX, int tileY) {
+        if (eraseTile) {
+            traceLines.append("erase ").append(mapHandler.getActiveLayer()).append(' ')
+                    .append(tileX).append(' ').append(tileY).append('\n');
+        } else {
+            // The demo paints with the default brush of the auto tiler
+            traceLines.append("tile ").append(mapHandler.getActiveLayer()).append(' ')
+                    .append(tileX).append(' ').append(tileY).append(" SINGLE ").append(mapHandler.getTileName()).append('\n');
+        }
+    }
+
+    private void addCell(int tileX, int tileY) {
+        int cell = packCell(tileX, tileY);
+        if (cellSet.add(cell)) cells.add(cell);
+    }
+
+    private static int packCell(int tileX, int tileY) {
+        return tileX << 16 | tileY & 0xFFFF;
+    }
+}
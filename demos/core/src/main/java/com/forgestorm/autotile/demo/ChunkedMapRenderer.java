@@ -0,0 +1,173 @@
+package com.forgestorm.autotile.demo;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Draws the tile layers of a {@link TiledMap} from cached geometry, one {@link SpriteCache} block per chunk of
+ * {@link #CHUNK_SIZE} by {@link #CHUNK_SIZE} cells of each layer.
+ * <p>
+ * A chunk is only rebuilt after one of its cells was marked dirty with {@link #markDirty(int, int, int)}, so a frame
+ * costs one draw call per visible chunk no matter how much of the map was painted. Every block is created with room
+ * for every cell of its chunk, padded with empty sprites, so a rebuilt chunk always fits in its block.
+ * <p>
+ * Like the {@code OrthogonalTiledMapRenderer}, tiles are drawn at the size of their region, from the top row down,
+ * so tall tiles overlap the row above them. Flipped and rotated cells are not supported, as the demo has none.
+ */
+public class ChunkedMapRenderer implements Disposable {
+
+    /**
+     * The width and height of a chunk, in cells.
+     */
+    public static final int CHUNK_SIZE = 8;
+
+    private final TiledMap tiledMap;
+    private final OrthographicCamera camera;
+    private final int tileSize;
+    private final int chunksWide, chunksHigh;
+    private final SpriteCache spriteCache;
+    /**
+     * Any region of the map's texture, used to reserve room in the cache.
+     */
+    private final TextureRegion paddingRegion;
+    /**
+     * The cache ID of every chunk, indexed by layer and then by {@code chunkY * chunksWide + chunkX}.
+     */
+    private final int[][] cacheIds;
+    private final boolean[][] dirtyChunks;
+    /**
+     * Dirty chunks waiting to be rebuilt, packed by {@link #packChunk(int, int)}.
+     */
+    private final IntArray dirtyQueue = new IntArray();
+
+    public ChunkedMapRenderer(TiledMap tiledMap, OrthographicCamera camera, TextureRegion paddingRegion,
+                              int mapWidth, int mapHeight, int tileSize) {
+        this.tiledMap = tiledMap;
+        this.camera = camera;
+        this.paddingRegion = paddingRegion;
+        this.tileSize = tileSize;
+        this.chunksWide = (mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunksHigh = (mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        int layerCount = tiledMap.getLayers().size();
+        int chunkCount = chunksWide * chunksHigh;
+        this.spriteCache = new SpriteCache(layerCount * chunkCount * CHUNK_SIZE * CHUNK_SIZE, false);
+        this.cacheIds = new int[layerCount][chunkCount];
+        this.dirtyChunks = new boolean[layerCount][chunkCount];
+
+        for (int layer = 0; layer < layerCount; layer++) {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                spriteCache.beginCache();
+                int cellCount = addChunk(layer, chunk % chunksWide, chunk / chunksWide);
+                padChunk(CHUNK_SIZE * CHUNK_SIZE - cellCount);
+                cacheIds[layer][chunk] = spriteCache.endCache();
+            }
+        }
+    }
+
+    /**
+     * Marks the chunk holding a cell for rebuilding before the next frame. Cells outside the map are ignored.
+     *
+     * @param layer The layer of the cell.
+     * @param tileX The X location of the cell.
+     * @param tileY The Y location of the cell.
+     */
+    public void markDirty(int layer, int tileX, int tileY) {
+        if (tileX < 0 || tileY < 0) return;
+        int chunkX = tileX / CHUNK_SIZE;
+        int chunkY = tileY / CHUNK_SIZE;
+        if (chunkX >= chunksWide || chunkY >= chunksHigh) return;
+
+        int chunk = chunkY * chunksWide + chunkX;
+        if (dirtyChunks[layer][chunk]) return;
+        dirtyChunks[layer][chunk] = true;
+        dirtyQueue.add(packChunk(layer, chunk));
+    }
+
+    /**
+     * Rebuilds the dirty chunks, then draws every visible chunk of every visible layer.
+     */
+    public void render() {
+        for (int i = 0; i < dirtyQueue.size; i++) {
+            int dirtyChunk = dirtyQueue.get(i);
+            int layer = dirtyChunk >>> 16;
+            int chunk = dirtyChunk & 0xFFFF;
+            spriteCache.beginCache(cacheIds[layer][chunk]);
+            addChunk(layer, chunk % chunksWide, chunk / chunksWide);
+            spriteCache.endCache();
+            dirtyChunks[layer][chunk] = false;
+        }
+        dirtyQueue.clear();
+
+        // The chunks overlapping the view of the camera, and one more around them for tiles taller than a cell
+        float viewWidth = camera.viewportWidth * camera.zoom;
+        float viewHeight = camera.viewportHeight * camera.zoom;
+        float chunkPixels = CHUNK_SIZE * tileSize;
+        int minChunkX = Math.max(0, (int) Math.floor((camera.position.x - viewWidth / 2) / chunkPixels) - 1);
+        int minChunkY = Math.max(0, (int) Math.floor((camera.position.y - viewHeight / 2) / chunkPixels) - 1);
+        int maxChunkX = Math.min(chunksWide - 1, (int) Math.floor((camera.position.x + viewWidth / 2) / chunkPixels) + 1);
+        int maxChunkY = Math.min(chunksHigh - 1, (int) Math.floor((camera.position.y + viewHeight / 2) / chunkPixels) + 1);
+
+        spriteCache.setProjectionMatrix(camera.combined);
+        spriteCache.begin();
+        for (int layer = 0; layer < cacheIds.length; layer++) {
+            if (!tiledMap.getLayers().get(layer).isVisible()) continue;
+            for (int chunkY = maxChunkY; chunkY >= minChunkY; chunkY--) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    spriteCache.draw(cacheIds[layer][chunkY * chunksWide + chunkX]);
+                }
+            }
+        }
+        spriteCache.end();
+    }
+
+    @Override
+    public void dispose() {
+        spriteCache.dispose();
+    }
+
+    /**
+     * Adds the tiles of a chunk to the cache being built.
+     *
+     * @return The number of tiles added.
+     */
+    private int addChunk(int layer, int chunkX, int chunkY) {
+        TiledMapTileLayer tiledMapTileLayer = (TiledMapTileLayer) tiledMap.getLayers().get(layer);
+        int minX = chunkX * CHUNK_SIZE;
+        int minY = chunkY * CHUNK_SIZE;
+        int maxX = Math.min(minX + CHUNK_SIZE, tiledMapTileLayer.getWidth());
+        int maxY = Math.min(minY + CHUNK_SIZE, tiledMapTileLayer.getHeight());
+
+        int tileCount = 0;
+        for (int y = maxY - 1; y >= minY; y--) {
+            for (int x = minX; x < maxX; x++) {
+                TiledMapTileLayer.Cell cell = tiledMapTileLayer.getCell(x, y);
+                if (cell == null) continue;
+                TiledMapTile tiledMapTile = cell.getTile();
+                if (tiledMapTile == null) continue;
+
+                spriteCache.add(tiledMapTile.getTextureRegion(), x * tileSize + tiledMapTile.getOffsetX(),
+                        y * tileSize + tiledMapTile.getOffsetY());
+                tileCount++;
+            }
+        }
+        return tileCount;
+    }
+
+    /**
+     * Reserves room in the cache being built for tiles placed later, with sprites that have no area.
+     */
+    private void padChunk(int count) {
+        for (int i = 0; i < count; i++) spriteCache.add(paddingRegion, 0, 0, 0, 0);
+    }
+
+    private static int packChunk(int layer, int chunk) {
+        return layer << 16 | chunk;
+    }
+}
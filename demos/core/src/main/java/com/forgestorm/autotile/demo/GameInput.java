@@ -11,7 +11,7 @@ import lombok.RequiredArgsConstructor;
 public class GameInput extends InputAdapter {
 
     private final OrthographicCamera camera;
-    private final MapHandler mapHandler;
+    private final BrushStroke brushStroke;
     @Getter
     private int mouseX, mouseY;
 
@@ -22,18 +22,20 @@ public class GameInput extends InputAdapter {
     private final Vector3 tempVec = new Vector3();
 
     /**
-     * The button that was pressed on the mouse.
+     * The button that was pressed on the mouse, or -1 if no stroke is being drawn.
      */
-    private int button;
+    private int button = -1;
 
     @Override
     public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+        setMouseCoordinates(screenX, screenY);
+
         if (button == Input.Buttons.LEFT) {
-            mapHandler.setTile(mouseX, mouseY, false);
+            brushStroke.begin(mouseX, mouseY, false);
             this.button = button;
             return true;
         } else if (button == Input.Buttons.RIGHT) {
-            mapHandler.setTile(mouseX, mouseY, true);
+            brushStroke.begin(mouseX, mouseY, true);
             this.button = button;
             return true;
         }
@@ -45,17 +47,21 @@ public class GameInput extends InputAdapter {
     public boolean touchDragged(int screenX, int screenY, int pointer) {
         setMouseCoordinates(screenX, screenY);
 
-        if (button == Input.Buttons.LEFT) {
-            mapHandler.setTile(mouseX, mouseY, false);
-            return true;
-        } else if (button == Input.Buttons.RIGHT) {
-            mapHandler.setTile(mouseX, mouseY, true);
+        // The cells are applied once per frame by the AutoTileDemo
+        if (button == Input.Buttons.LEFT || button == Input.Buttons.RIGHT) {
+            brushStroke.lineTo(mouseX, mouseY);
             return true;
         }
 
         return false;
     }
 
+    @Override
+    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+        this.button = -1;
+        return false;
+    }
+
     @Override
     public boolean mouseMoved(int screenX, int screenY) {
         setMouseCoordinates(screenX, screenY);
@@ -4,10 +4,8 @@ import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
-import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
 import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
 import com.forgestorm.autotile.AutoTiler;
 import lombok.Getter;
@@ -27,12 +25,14 @@ public class MapHandler extends ApplicationAdapter {
 
     @Getter
     private TextureAtlas textureAtlas;
+    @Getter
     @Setter
     private String tileName = "BW4=brick-wall-building-h32=0";
     @Getter
     @Setter
     private int activeLayer = 0;
-    private OrthogonalTiledMapRenderer renderer;
+    private ChunkedMapRenderer renderer;
+    private TiledMapAtlasTileEvaluator tileEvaluator;
 
     public MapHandler(OrthographicCamera camera) {
         this.camera = camera;
@@ -57,12 +57,13 @@ public class MapHandler extends ApplicationAdapter {
         populateLayer(layer0);
         populateLayer(layer1);
 
-        // Setup renderer
-        renderer = new OrthogonalTiledMapRenderer(tiledMap);
-        renderer.setView(camera);
+        // Setup renderer. Chunks are only rebuilt when one of their cells changes.
+        renderer = new ChunkedMapRenderer(tiledMap, camera, textureAtlas.getRegions().first(),
+                MAP_WIDTH, MAP_HEIGHT, TILE_SIZE);
 
         // Setup auto tiler
-        autoTiler = new AutoTiler(new TiledMapAtlasTileEvaluator(this));
+        tileEvaluator = new TiledMapAtlasTileEvaluator(this);
+        autoTiler = new AutoTiler(tileEvaluator);
     }
 
     @Override
@@ -72,6 +73,7 @@ public class MapHandler extends ApplicationAdapter {
 
     @Override
     public void dispose() {
+        renderer.dispose();
         tiledMap.dispose();
         textureAtlas.dispose();
         assetManager.dispose();
@@ -89,18 +91,32 @@ public class MapHandler extends ApplicationAdapter {
 
             // Auto tiling didn't work. So we set the supplied tile texture instead.
             if (!tileSet) {
-                TextureRegion textureRegion = textureAtlas.findRegion(tileName);
-                if (textureRegion != null) cell.setTile(new StaticTiledMapTile(textureRegion));
+                StaticTiledMapTile tiledMapTile = tileEvaluator.getSharedTile(tileName);
+                if (tiledMapTile != null) {
+                    cell.setTile(tiledMapTile);
+                    markDirty(tileX, tileY);
+                }
             }
         } else {
             // Set the cell to null first!
             cell.setTile(null);
+            markDirty(tileX, tileY);
 
             // Now fix surrounding auto-tiles
             autoTiler.eraseTile(tileX, tileY);
         }
     }
 
+    /**
+     * Marks a cell of the active layer as changed, so it is drawn again.
+     *
+     * @param tileX The X location of the cell.
+     * @param tileY The Y location of the cell.
+     */
+    public void markDirty(int tileX, int tileY) {
+        renderer.markDirty(activeLayer, tileX, tileY);
+    }
+
     private void populateLayer(TiledMapTileLayer tileLayer) {
         for (int x = 0; x < tileLayer.getWidth(); x++) {
             for (int y = 0; y < tileLayer.getHeight(); y++) {
@@ -6,6 +6,7 @@ import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTile;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.forgestorm.autotile.TileGetterSetter;
 
 public class TiledMapAtlasTileEvaluator implements TileGetterSetter {
@@ -13,11 +14,23 @@ public class TiledMapAtlasTileEvaluator implements TileGetterSetter {
     private final MapHandler mapHandler;
     private final TiledMap tiledMap;
     private final TextureAtlas textureAtlas;
+    /**
+     * The name of every region of the atlas, so reading a tile does not search the atlas.
+     */
+    private final ObjectMap<TextureRegion, String> regionNames = new ObjectMap<>();
+    /**
+     * One tile per tile name, shared by every cell showing it.
+     */
+    private final ObjectMap<String, StaticTiledMapTile> tiles = new ObjectMap<>();
 
     public TiledMapAtlasTileEvaluator(MapHandler mapHandler) {
         this.mapHandler = mapHandler;
         this.tiledMap = mapHandler.getTiledMap();
         this.textureAtlas = mapHandler.getTextureAtlas();
+
+        for (TextureAtlas.AtlasRegion atlasRegion : textureAtlas.getRegions()) {
+            regionNames.put(atlasRegion, atlasRegion.name);
+        }
     }
 
     @Override
@@ -31,41 +44,45 @@ public class TiledMapAtlasTileEvaluator implements TileGetterSetter {
 
         if (tiledMapTile == null) return null;
 
-        // Try to find the region in the texture atlas
-        return findRegionName(tiledMapTile.getTextureRegion());
+        return regionNames.get(tiledMapTile.getTextureRegion());
     }
 
     @Override
     public void setTile(String tileName, int x, int y) {
         TiledMapTileLayer tiledMapTileLayer = (TiledMapTileLayer) tiledMap.getLayers().get(mapHandler.getActiveLayer());
+        TiledMapTile tiledMapTile = getSharedTile(tileName);
+
+        // Make sure the texture we are trying to get exists!
+        if (tiledMapTile == null) return;
+
         TiledMapTileLayer.Cell cell = tiledMapTileLayer.getCell(x, y);
 
         // Create a new cell if one does not exist.
         if (cell == null) {
-            tiledMapTileLayer.setCell(x, y, new TiledMapTileLayer.Cell());
+            cell = new TiledMapTileLayer.Cell();
+            tiledMapTileLayer.setCell(x, y, cell);
         }
 
-        TiledMapTile tiledMapTile = cell.getTile();
-        TextureRegion textureRegion = textureAtlas.findRegion(tileName);
+        cell.setTile(tiledMapTile);
+        mapHandler.markDirty(x, y);
+    }
 
-        // Make sure the texture we are trying to get exists!
-        if (textureRegion == null) return;
+    /**
+     * Gets the tile shared by every cell showing a tile name. Shared tiles must not be changed.
+     *
+     * @param tileName The name of the tile.
+     * @return The shared tile, or null if the atlas has no region with the name.
+     */
+    public StaticTiledMapTile getSharedTile(String tileName) {
+        if (tileName == null) return null;
+        StaticTiledMapTile tiledMapTile = tiles.get(tileName);
+        if (tiledMapTile != null) return tiledMapTile;
 
-        if (tiledMapTile == null) {
-            cell.setTile(new StaticTiledMapTile(textureRegion));
-        } else {
-            tiledMapTile.setTextureRegion(textureRegion);
-        }
-    }
+        TextureRegion textureRegion = textureAtlas.findRegion(tileName);
+        if (textureRegion == null) return null;
 
-    private String findRegionName(TextureRegion textureRegion) {
-        String foundTileName = null;
-        for (TextureAtlas.AtlasRegion atlasRegion : textureAtlas.getRegions()) {
-            if (atlasRegion.equals(textureRegion)) {
-                foundTileName = atlasRegion.name;
-                break;
-            }
-        }
-        return foundTileName;
+        tiledMapTile = new StaticTiledMapTile(textureRegion);
+        tiles.put(tileName, tiledMapTile);
+        return tiledMapTile;
     }
 }
@@ -0,0 +1,137 @@
+package com.forgestorm.autotile.gdx;
+
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.forgestorm.autotile.AutoTiler;
+import com.forgestorm.autotile.TileId;
+import com.forgestorm.autotile.TileNameRegistry;
+import lombok.Getter;
+
+/**
+ * The {@link AtlasTileSet} class converts between the packed tile IDs of an {@link AutoTiler} (see {@link TileId})
+ * and the tiles of a libGDX {@link TextureAtlas}, in both directions, without searching the atlas.
+ * <p>
+ * Every region of the atlas is indexed by name once, when the tile set is created. Each tile ID is then given a single
+ * {@link StaticTiledMapTile}, created the first time it is needed and shared by every cell showing it. The shared tile
+ * carries its tile ID (see {@link TiledMapTile#getId()}), so reading a cell back is a single map lookup. Tiles created
+ * elsewhere, for example by a map loader, are resolved through the name of their region and remembered.
+ * <p>
+ * The shared tiles must not be changed, as changing one changes every cell showing it. Like libGDX, the tile set
+ * is not safe to use from several threads.
+ *
+ * @author unenergizer
+ * @see TiledMapTileGetterSetter
+ */
+public class AtlasTileSet {
+
+    /**
+     * The atlas holding the tile images.
+     */
+    @Getter
+    private final TextureAtlas textureAtlas;
+    /**
+     * Parses tile names and names tile IDs. Owned by the {@link AutoTiler} the tile IDs belong to.
+     */
+    private final TileNameRegistry tileNameRegistry;
+    /**
+     * The first region of the atlas with each name, the one {@link TextureAtlas#findRegion(String)} would return.
+     */
+    private final ObjectMap<String, TextureRegion> regions = new ObjectMap<>();
+    /**
+     * The name of every region of the atlas.
+     */
+    private final ObjectMap<TextureRegion, String> regionNames = new ObjectMap<>();
+    /**
+     * The shared tile of every tile ID seen so far.
+     */
+    private final IntMap<StaticTiledMapTile> tiles = new IntMap<>();
+    /**
+     * Tile IDs of tiles not created by this tile set.
+     */
+    private final ObjectIntMap<TiledMapTile> foreignTileIds = new ObjectIntMap<>();
+
+    /**
+     * Creates a tile set for the tile IDs of an {@link AutoTiler}.
+     *
+     * @param textureAtlas The atlas holding the tile images, named after the tiles.
+     * @param autoTiler    The auto tiler the tile IDs belong to.
+     */
+    public AtlasTileSet(TextureAtlas textureAtlas, AutoTiler autoTiler) {
+        this.textureAtlas = textureAtlas;
+        this.tileNameRegistry = autoTiler.getTileNameRegistry();
+
+        for (TextureAtlas.AtlasRegion atlasRegion : textureAtlas.getRegions()) {
+            regionNames.put(atlasRegion, atlasRegion.name);
+            if (!regions.containsKey(atlasRegion.name)) regions.put(atlasRegion.name, atlasRegion);
+        }
+    }
+
+    /**
+     * Gets the shared tile of a tile ID.
+     *
+     * @param tileId The packed tile ID.
+     * @return The shared tile, or null if the tile ID is empty or the atlas has no region for it.
+     */
+    public StaticTiledMapTile getTile(int tileId) {
+        if (tileId == TileId.EMPTY) return null;
+        StaticTiledMapTile tile = tiles.get(tileId);
+        if (tile != null) return tile;
+
+        TextureRegion textureRegion = findRegion(tileNameRegistry.getTileName(tileId));
+        if (textureRegion == null) return null;
+
+        tile = new StaticTiledMapTile(textureRegion);
+        tile.setId(tileId);
+        tiles.put(tileId, tile);
+        return tile;
+    }
+
+    /**
+     * Gets the tile ID of a tile.
+     *
+     * @param tile The tile. Can be null.
+     * @return The packed tile ID, or {@link TileId#EMPTY} if the tile is null or its region is not in the atlas.
+     */
+    public int getTileId(TiledMapTile tile) {
+        if (tile == null) return TileId.EMPTY;
+
+        // Shared tiles carry their own tile ID
+        int tileId = tile.getId();
+        if (tiles.get(tileId) == tile) return tileId;
+
+        tileId = foreignTileIds.get(tile, -1);
+        if (tileId != -1) return tileId;
+
+        String regionName = getRegionName(tile.getTextureRegion());
+        tileId = regionName == null ? TileId.EMPTY : tileNameRegistry.getTileId(regionName);
+        foreignTileIds.put(tile, tileId);
+        return tileId;
+    }
+
+    /**
+     * Gets a region of the atlas by name.
+     *
+     * @param regionName The name of the region. Can be null.
+     * @return The first region with the name, or null if there is none.
+     */
+    public TextureRegion findRegion(String regionName) {
+        if (regionName == null) return null;
+        return regions.get(regionName);
+    }
+
+    /**
+     * Gets the name of a region of the atlas.
+     *
+     * @param textureRegion The region. Can be null.
+     * @return The name of the region, or null if the region is not part of the atlas.
+     */
+    public String getRegionName(TextureRegion textureRegion) {
+        if (textureRegion == null) return null;
+        return regionNames.get(textureRegion);
+    }
+}
@@ -0,0 +1,129 @@
+package com.forgestorm.autotile.gdx;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.Array;
+import com.forgestorm.autotile.AutoTiler;
+import com.forgestorm.autotile.IntTileGetterSetter;
+import com.forgestorm.autotile.LayeredTileGetterSetter;
+import com.forgestorm.autotile.TileId;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The {@link TiledMapTileGetterSetter} class lets an {@link AutoTiler} read and write the tile layers of a libGDX
+ * {@link TiledMap}, using an {@link AtlasTileSet} to convert between tile IDs and tiles.
+ * <p>
+ * The tile layers are found once, when the getter setter is created. Single layer operations use the
+ * {@link #getActiveLayer() active layer}, and {@link AutoTiler#reTileLayers(LayeredTileGetterSetter, int, int)} uses
+ * every layer. The tile set needs the auto tiler, so it is set after both are created:
+ * <pre>{@code
+ * TiledMapTileGetterSetter tiles = new TiledMapTileGetterSetter(tiledMap);
+ * AutoTiler autoTiler = new AutoTiler(tiles);
+ * tiles.setTileSet(new AtlasTileSet(textureAtlas, autoTiler));
+ * }</pre>
+ * Cells are created when a tile is written where there is none, and written tiles are the shared tiles of the tile
+ * set, so painting does not allocate once every tile has been seen.
+ *
+ * @author unenergizer
+ * @see AtlasTileSet
+ */
+public class TiledMapTileGetterSetter implements IntTileGetterSetter, LayeredTileGetterSetter {
+
+    private final TiledMapTileLayer[] layers;
+
+    /**
+     * Converts between tile IDs and tiles. Must be set before the map is read or written.
+     */
+    @Getter
+    @Setter
+    private AtlasTileSet tileSet;
+
+    /**
+     * The layer read and written by single layer operations.
+     */
+    @Getter
+    @Setter
+    private int activeLayer;
+
+    /**
+     * Creates a getter setter for every tile layer of a map, in the order of the map. Other kinds of layers are
+     * skipped, so layer indexes only count tile layers.
+     *
+     * @param tiledMap The map.
+     */
+    public TiledMapTileGetterSetter(TiledMap tiledMap) {
+        Array<TiledMapTileLayer> tileLayers = new Array<>();
+        for (MapLayer mapLayer : tiledMap.getLayers()) {
+            if (mapLayer instanceof TiledMapTileLayer) tileLayers.add((TiledMapTileLayer) mapLayer);
+        }
+        this.layers = new TiledMapTileLayer[tileLayers.size];
+        for (int i = 0; i < tileLayers.size; i++) layers[i] = tileLayers.get(i);
+    }
+
+    /**
+     * Creates a getter setter for some tile layers.
+     *
+     * @param layers The tile layers, indexed from 0.
+     */
+    public TiledMapTileGetterSetter(TiledMapTileLayer... layers) {
+        this.layers = layers.clone();
+    }
+
+    /**
+     * Gets a tile layer.
+     *
+     * @param layer The index of the layer, from 0 to {@link #getLayerCount()} - 1.
+     * @return The tile layer.
+     */
+    public TiledMapTileLayer getLayer(int layer) {
+        return layers[layer];
+    }
+
+    @Override
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    @Override
+    public int getTileId(int x, int y) {
+        return getTileId(activeLayer, x, y);
+    }
+
+    @Override
+    public void setTileId(int tileId, int x, int y) {
+        setTileId(activeLayer, tileId, x, y);
+    }
+
+    @Override
+    public int getTileId(int layer, int x, int y) {
+        TiledMapTileLayer.Cell cell = layers[layer].getCell(x, y);
+        if (cell == null) return TileId.EMPTY;
+        return tileSet.getTileId(cell.getTile());
+    }
+
+    @Override
+    public void setTileId(int layer, int tileId, int x, int y) {
+        TiledMapTileLayer tiledMapTileLayer = layers[layer];
+        TiledMapTileLayer.Cell cell = tiledMapTileLayer.getCell(x, y);
+
+        if (tileId == TileId.EMPTY) {
+            if (cell != null) cell.setTile(null);
+            return;
+        }
+
+        // Make sure the texture we are trying to set exists!
+        TiledMapTile tile = tileSet.getTile(tileId);
+        if (tile == null) return;
+
+        // Create a new cell if one does not exist, but only inside the layer
+        if (cell == null) {
+            if (x < 0 || y < 0 || x >= tiledMapTileLayer.getWidth() || y >= tiledMapTileLayer.getHeight()) return;
+            cell = new TiledMapTileLayer.Cell();
+            tiledMapTileLayer.setCell(x, y, cell);
+        }
+        cell.setTile(tile);
+    }
+}
@@ -0,0 +1,152 @@
+package com.forgestorm.autotile.gdx;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.forgestorm.autotile.AutoTiler;
+import com.forgestorm.autotile.BitmaskingType;
+import com.forgestorm.autotile.TileId;
+import com.forgestorm.autotile.TileNameRegistry;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the {@link AtlasTileSet} converts tile IDs to tiles and back, including tiles it did not create, and
+ * that the {@link TiledMapTileGetterSetter} only creates cells for tiles it can show. The atlas is built without a
+ * window: the texture is backed by a GL that does nothing.
+ */
+public class AtlasTileSetTest {
+
+    private static final String GRASS = "BW16=grass=";
+    private static final String STONE = "stone";
+
+    @Test
+    public void tileIdsRoundTrip() {
+        TextureAtlas textureAtlas = createTextureAtlas();
+        TiledMapTileGetterSetter tiles = new TiledMapTileGetterSetter(new TiledMapTileLayer(8, 8, 16, 16));
+        AutoTiler autoTiler = new AutoTiler(tiles);
+        AtlasTileSet tileSet = new AtlasTileSet(textureAtlas, autoTiler);
+        TileNameRegistry tileNameRegistry = autoTiler.getTileNameRegistry();
+
+        // Every tile ID has one shared tile, which carries the tile ID back
+        int grassId = tileNameRegistry.getTileId(GRASS + 208);
+        StaticTiledMapTile grassTile = tileSet.getTile(grassId);
+        assertNotNull(grassTile);
+        assertSame(grassTile, tileSet.getTile(grassId));
+        assertSame(textureAtlas.findRegion(GRASS + 208), grassTile.getTextureRegion());
+        assertEquals(grassId, tileSet.getTileId(grassTile));
+        assertEquals(GRASS + 208, tileSet.getRegionName(grassTile.getTextureRegion()));
+
+        // A tile from elsewhere is resolved through its region, even when its own ID belongs to another tile
+        StaticTiledMapTile stoneTile = new StaticTiledMapTile(textureAtlas.findRegion(STONE));
+        stoneTile.setId(grassId);
+        int stoneId = tileNameRegistry.getTileId(STONE);
+        assertEquals(stoneId, tileSet.getTileId(stoneTile));
+        assertEquals(stoneId, tileSet.getTileId(stoneTile));
+        assertEquals(stoneId, tileSet.getTileId(tileSet.getTile(stoneId)));
+
+        // Nothing, regions outside the atlas and unknown families have no tile
+        assertEquals(TileId.EMPTY, tileSet.getTileId(null));
+        assertEquals(TileId.EMPTY, tileSet.getTileId(new StaticTiledMapTile(new TextureRegion())));
+        assertNull(tileSet.getTile(TileId.EMPTY));
+        assertNull(tileSet.getTile(TileId.pack(autoTiler.registerFamily(BitmaskingType.TYPE_4), 3)));
+    }
+
+    @Test
+    public void emptyTilesDoNotCreateCells() {
+        TextureAtlas textureAtlas = createTextureAtlas();
+        TiledMap tiledMap = new TiledMap();
+        TiledMapTileLayer layer = new TiledMapTileLayer(8, 8, 16, 16);
+        tiledMap.getLayers().add(new MapLayer());
+        tiledMap.getLayers().add(layer);
+        TiledMapTileGetterSetter tiles = new TiledMapTileGetterSetter(tiledMap);
+        AutoTiler autoTiler = new AutoTiler(tiles);
+        tiles.setTileSet(new AtlasTileSet(textureAtlas, autoTiler));
+        assertEquals(1, tiles.getLayerCount());
+        assertSame(layer, tiles.getLayer(0));
+
+        // Painting creates the cell and writes the shared tile
+        autoTiler.autoTile(GRASS + 0, 2, 2);
+        TiledMapTileLayer.Cell cell = layer.getCell(2, 2);
+        assertNotNull(cell);
+        TiledMapTile tile = cell.getTile();
+        assertSame(tiles.getTileSet().getTile(tiles.getTileId(2, 2)), tile);
+        assertEquals(1, countCells(layer));
+
+        // Clearing keeps the cell, and clearing where there is no cell does not create one
+        autoTiler.removeTile(2, 2);
+        assertSame(cell, layer.getCell(2, 2));
+        assertNull(cell.getTile());
+        assertEquals(TileId.EMPTY, tiles.getTileId(2, 2));
+        tiles.setTileId(TileId.EMPTY, 5, 5);
+        assertEquals(1, countCells(layer));
+
+        // Neither do tiles missing from the atlas, nor tiles outside the layer
+        tiles.setTileId(TileId.pack(autoTiler.registerFamily(null), 0), 5, 5);
+        tiles.setTileId(tile.getId(), 8, 0);
+        tiles.setTileId(tile.getId(), -1, 0);
+        assertEquals(1, countCells(layer));
+    }
+
+    /**
+     * Creates an atlas with a region for every 8-bit grass tile and a plain stone tile, sharing one texture.
+     */
+    private static TextureAtlas createTextureAtlas() {
+        if (Gdx.gl == null) {
+            Gdx.gl = Gdx.gl20 = stub(GL20.class, new HashMap<>());
+            Gdx.graphics = stub(Graphics.class, new HashMap<>());
+        }
+        Map<String, Object> textureData = new HashMap<>();
+        textureData.put("getType", TextureData.TextureDataType.Custom);
+        textureData.put("isPrepared", true);
+        textureData.put("getWidth", 16 * 16);
+        textureData.put("getHeight", 16 * 17);
+        Texture texture = new Texture(stub(TextureData.class, textureData));
+
+        TextureAtlas textureAtlas = new TextureAtlas();
+        for (int mask = 0; mask <= TileId.MASK; mask++) {
+            textureAtlas.addRegion(GRASS + mask, texture, mask % 16 * 16, mask / 16 * 16, 16, 16);
+        }
+        textureAtlas.addRegion(STONE, texture, 0, 16 * 16, 16, 16);
+        return textureAtlas;
+    }
+
+    /**
+     * Implements an interface with the supplied answers by method name, and zero, false or null for every other method.
+     */
+    private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (answers.containsKey(method.getName())) return answers.get(method.getName());
+            Class<?> returnType = method.getReturnType();
+            if (!returnType.isPrimitive() || returnType == void.class) return null;
+            return java.lang.reflect.Array.get(java.lang.reflect.Array.newInstance(returnType, 1), 0);
+        }));
+    }
+
+    private static int countCells(TiledMapTileLayer layer) {
+        int cells = 0;
+        for (int x = 0; x < layer.getWidth(); x++) {
+            for (int y = 0; y < layer.getHeight(); y++) {
+                if (layer.getCell(x, y) != null) cells++;
+            }
+        }
+        return cells;
+    }
+}